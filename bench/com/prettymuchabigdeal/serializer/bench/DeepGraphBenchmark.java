@@ -0,0 +1,116 @@
+package com.prettymuchabigdeal.serializer.bench;
+
+import com.prettymuchabigdeal.serializer.Serializable;
+import com.prettymuchabigdeal.serializer.SerializationMethod;
+import com.prettymuchabigdeal.serializer.Serializer;
+import com.prettymuchabigdeal.serializer.impl.BinaryData;
+import com.prettymuchabigdeal.serializer.impl.BinarySerializationMethod;
+import com.prettymuchabigdeal.serializer.impl.JSONSerilizationMethod;
+
+/**
+ * Round trips a very deep object graph through a {@link Serializer} walking
+ * it {@link Serializer#setIterative(boolean) iteratively}, and prints the time
+ * each step takes. Run with the library on the class path:
+ *
+ * <pre>
+ * java -Xmx4g com.prettymuchabigdeal.serializer.bench.DeepGraphBenchmark [list|tree] [nodes] [binary|json] [runs]
+ * </pre>
+ *
+ * A list is a chain of nodes, each holding the next. A tree is a chain of
+ * nodes that also hold an array of two leaves, so that its depth is a third
+ * of its nodes. Defaults to a list of 1000000 nodes in binary, 5 runs. Binary
+ * Data is also written out to bytes and loaded back from them. JSON Data of
+ * this depth can not be turned into text, so it is only loaded back as is.
+ *
+ */
+public class DeepGraphBenchmark {
+
+	@Serializable
+	public static class Node {
+		public int value;
+		public Node next;
+		public Node[] leaves;
+	}
+
+	public static void main(String[] args) throws Exception {
+		boolean tree = args.length > 0 && args[0].equals("tree");
+		int nodes = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+		boolean json = args.length > 2 && args[2].equals("json");
+		int runs = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+		SerializationMethod<?> method = json ? new JSONSerilizationMethod()
+				: new BinarySerializationMethod();
+		Serializer<?> serializer = new Serializer<>(method);
+		serializer.setIterative(true);
+
+		Node root = build(tree, nodes);
+		System.out.println((tree ? "tree" : "list") + " of " + nodes
+				+ " nodes, " + method.getClass().getSimpleName());
+
+		for (int run = 1; run <= runs; run++)
+			run(run, serializer, root, nodes);
+	}
+
+	private static Node build(boolean tree, int nodes) {
+		Node root = null;
+		int count = 0;
+
+		while (count < nodes) {
+			Node node = new Node();
+			node.value = count++;
+			node.next = root;
+
+			if (tree && nodes - count >= 2) {
+				node.leaves = new Node[2];
+				for (int i = 0; i < 2; i++) {
+					node.leaves[i] = new Node();
+					node.leaves[i].value = count++;
+				}
+			}
+			root = node;
+		}
+		return root;
+	}
+
+	private static <Data> void run(int run, Serializer<Data> serializer,
+			Node root, int nodes) throws Exception {
+		long start = System.nanoTime();
+		Data data = serializer.serialize(root);
+		long stored = System.nanoTime();
+
+		String bytes = "";
+		if (data instanceof BinaryData) {
+			byte[] array = ((BinaryData) data).toByteArray();
+			@SuppressWarnings("unchecked")
+			Data wrapped = (Data) BinaryData.wrap(array);
+			data = wrapped;
+			bytes = ", to " + array.length + " bytes "
+					+ millis(stored, System.nanoTime()) + " ms";
+		}
+		long written = System.nanoTime();
+
+		Node loaded = serializer.deserialize(Node.class, data);
+		long end = System.nanoTime();
+
+		int count = count(loaded);
+		if (count != nodes)
+			throw new IllegalStateException("Loaded " + count + " of "
+					+ nodes + " nodes");
+
+		System.out.println("run " + run + ": serialize "
+				+ millis(start, stored) + " ms" + bytes + ", deserialize "
+				+ millis(written, end) + " ms");
+	}
+
+	private static int count(Node node) {
+		int count = 0;
+		for (; node != null; node = node.next)
+			count += 1 + (node.leaves == null ? 0 : node.leaves.length);
+		return count;
+	}
+
+	private static long millis(long from, long to) {
+		return (to - from) / 1000000;
+	}
+
+}
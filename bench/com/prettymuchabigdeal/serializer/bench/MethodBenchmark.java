@@ -0,0 +1,169 @@
+package com.prettymuchabigdeal.serializer.bench;
+
+import java.io.ByteArrayOutputStream;
+
+import org.json.JSONObject;
+
+import com.prettymuchabigdeal.serializer.Serializable;
+import com.prettymuchabigdeal.serializer.Serializer;
+import com.prettymuchabigdeal.serializer.impl.BinaryData;
+import com.prettymuchabigdeal.serializer.impl.BinarySerializationMethod;
+import com.prettymuchabigdeal.serializer.impl.BinaryStreamReader;
+import com.prettymuchabigdeal.serializer.impl.BinaryStreamWriter;
+import com.prettymuchabigdeal.serializer.impl.JSONSerilizationMethod;
+import com.prettymuchabigdeal.serializer.impl.JSONStreamReader;
+import com.prettymuchabigdeal.serializer.impl.JSONStreamWriter;
+
+/**
+ * Compares {@link JSONSerilizationMethod} with
+ * {@link BinarySerializationMethod} on payload size and throughput. Each
+ * round serializes a batch of orders to bytes and loads them back, through
+ * Data trees and through streams, and prints the size of one encoded order
+ * and the orders handled per second. Run with the library on the class path:
+ *
+ * <pre>
+ * java com.prettymuchabigdeal.serializer.bench.MethodBenchmark [orders] [rounds]
+ * </pre>
+ *
+ * Defaults to 20000 orders and 10 rounds. The first rounds warm up the JIT,
+ * the last one is the one to compare.
+ *
+ */
+public class MethodBenchmark {
+
+	@Serializable
+	public static class Line {
+		public String sku;
+		public int quantity;
+		public double price;
+	}
+
+	@Serializable
+	public static class Order {
+		public long id;
+		public String customer;
+		public boolean paid;
+		public int[] coupons;
+		public double[] weights;
+		public Line[] lines;
+	}
+
+	/**
+	 * One way of encoding an order to bytes and back
+	 */
+	private interface Codec {
+
+		byte[] write(Order order) throws Exception;
+
+		Order read(byte[] bytes) throws Exception;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+		Order[] orders = new Order[count];
+		for (int i = 0; i < count; i++)
+			orders[i] = order(i);
+
+		final JSONSerilizationMethod text = new JSONSerilizationMethod();
+		final Serializer<JSONObject> json = new Serializer<>(text);
+		final Serializer<BinaryData> binary = new Serializer<>(
+				new BinarySerializationMethod());
+
+		String[] names = { "json tree", "json stream", "binary tree",
+				"binary stream" };
+		Codec[] codecs = { new Codec() {
+			public byte[] write(Order order) throws Exception {
+				return text.toBytes(json.serialize(order));
+			}
+
+			public Order read(byte[] bytes) throws Exception {
+				return json.deserialize(Order.class, new JSONObject(
+						new String(bytes, "UTF-8")));
+			}
+		}, new Codec() {
+			public byte[] write(Order order) throws Exception {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				json.serialize(order, new JSONStreamWriter(out));
+				return out.toByteArray();
+			}
+
+			public Order read(byte[] bytes) throws Exception {
+				return json.deserialize(Order.class, new JSONStreamReader(
+						bytes));
+			}
+		}, new Codec() {
+			public byte[] write(Order order) throws Exception {
+				return binary.serialize(order).toByteArray();
+			}
+
+			public Order read(byte[] bytes) throws Exception {
+				return binary.deserialize(Order.class, BinaryData.wrap(bytes));
+			}
+		}, new Codec() {
+			public byte[] write(Order order) throws Exception {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				binary.serialize(order, new BinaryStreamWriter(out));
+				return out.toByteArray();
+			}
+
+			public Order read(byte[] bytes) throws Exception {
+				return binary.deserialize(Order.class, new BinaryStreamReader(
+						bytes));
+			}
+		} };
+
+		for (int round = 1; round <= rounds; round++) {
+			System.out.println("round " + round);
+			for (int i = 0; i < codecs.length; i++)
+				run(names[i], codecs[i], orders);
+		}
+	}
+
+	private static Order order(int i) {
+		Order order = new Order();
+		order.id = 1000000000L + i;
+		order.customer = "customer-" + (i % 997);
+		order.paid = i % 3 != 0;
+		order.coupons = new int[] { i % 50, i % 7 };
+		order.weights = new double[] { 0.25 * i, 1.5, 3.75 };
+		order.lines = new Line[1 + i % 5];
+		for (int j = 0; j < order.lines.length; j++) {
+			Line line = new Line();
+			line.sku = "SKU-" + (i * 31 + j) % 10000;
+			line.quantity = 1 + j;
+			line.price = 9.99 * (j + 1);
+			order.lines[j] = line;
+		}
+		return order;
+	}
+
+	private static void run(String name, Codec codec, Order[] orders)
+			throws Exception {
+		byte[][] encoded = new byte[orders.length][];
+		long bytes = 0;
+
+		long start = System.nanoTime();
+		for (int i = 0; i < orders.length; i++) {
+			encoded[i] = codec.write(orders[i]);
+			bytes += encoded[i].length;
+		}
+		long written = System.nanoTime();
+
+		long checksum = 0;
+		for (byte[] order : encoded)
+			checksum += codec.read(order).lines.length;
+		long read = System.nanoTime();
+
+		System.out.printf("  %-14s %6.1f bytes/order  write %9.0f orders/s"
+				+ "  read %9.0f orders/s  (%d lines)%n", name, (double) bytes
+				/ orders.length, rate(orders.length, start, written),
+				rate(orders.length, written, read), checksum);
+	}
+
+	private static double rate(int count, long from, long to) {
+		return count * 1e9 / (to - from);
+	}
+
+}
@@ -0,0 +1,69 @@
+package com.prettymuchabigdeal.serializer;
+
+/**
+ * Outcome of one item of a batch run by {@link Serializer}, holding either
+ * the value the item produced or the exception it failed with. A
+ * successful value may itself be <b>null</b>, for instance for a null
+ * item.
+ *
+ * @param <T>
+ *            type of the value
+ */
+public final class BatchResult<T> {
+
+	private final int mIndex;
+	private final T mValue;
+	private final Exception mError;
+
+	BatchResult(int index, T value, Exception error) {
+		mIndex = index;
+		mValue = value;
+		mError = error;
+	}
+
+	/**
+	 * @return position of the item in the batch
+	 */
+	public int getIndex() {
+		return mIndex;
+	}
+
+	/**
+	 * @return <b>true</b> if the item did not fail
+	 */
+	public boolean isSuccess() {
+		return mError == null;
+	}
+
+	/**
+	 * @return value produced by the item, <b>null</b> if it failed
+	 */
+	public T getValue() {
+		return mValue;
+	}
+
+	/**
+	 * @return exception the item failed with, <b>null</b> if it succeeded
+	 */
+	public Exception getError() {
+		return mError;
+	}
+
+	/**
+	 * @return value produced by the item
+	 * @throws Exception
+	 *             the exception the item failed with
+	 */
+	public T get() throws Exception {
+		if (mError != null)
+			throw mError;
+		return mValue;
+	}
+
+	@Override
+	public String toString() {
+		return mError == null ? "[" + mIndex + "] " + mValue : "[" + mIndex
+				+ "] failed: " + mError;
+	}
+
+}
@@ -0,0 +1,292 @@
+package com.prettymuchabigdeal.serializer;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.prettymuchabigdeal.serializer.Serializable.Ignore;
+import com.prettymuchabigdeal.serializer.Serializable.Keep;
+import com.prettymuchabigdeal.serializer.except.ClassNotSerializeableException;
+
+/**
+ * Immutable, thread-safe description of a {@link Serializable} class. All of
+ * the reflection needed to serialize a class is done once, when the descriptor
+ * is first requested through {@link #forClass(Class)}, and is shared by every
+ * {@link Serializer} afterwards.
+ * 
+ */
+public final class ClassDescriptor {
+
+	/**
+	 * Boxed object versions of primitives
+	 */
+	private static final Set<Class<?>> PRIMITIVE_OBJECTS = new HashSet<Class<?>>(
+			Arrays.<Class<?>> asList(Boolean.class, Byte.class,
+					Character.class, Short.class, Integer.class, Float.class,
+					Long.class, Double.class, String.class));
+
+	/**
+	 * Descriptors are attached to their class, so they are released along
+	 * with it when its class loader is unloaded
+	 */
+	private static final ClassValue<ClassDescriptor> CACHE = new ClassValue<ClassDescriptor>() {
+		@Override
+		protected ClassDescriptor computeValue(Class<?> type) {
+			return new ClassDescriptor(type);
+		}
+	};
+
+	private final Class<?> mType;
+	private final Serializable mAnnotation;
+	private final List<FieldDescriptor> mFields;
+	private final FieldIndex mIndex;
+	private final SerializationCodec<?> mCodec;
+	private final Instantiator mInstantiator;
+	private final Schema mSchema;
+
+	private ClassDescriptor(Class<?> clazz) {
+		mType = clazz;
+		mAnnotation = getAnnotation(clazz);
+
+		List<Field> fields = new ArrayList<>();
+		if (Instantiator.isRecord(clazz))
+			fields.addAll(Arrays.asList(Instantiator.getRecordFields(clazz)));
+		else
+			collectFields(clazz, mAnnotation.autoIgnore(), fields,
+					new HashSet<String>());
+
+		FieldDescriptor[] descriptors = new FieldDescriptor[fields.size()];
+
+		for (int i = 0; i < descriptors.length; i++)
+			descriptors[i] = new FieldDescriptor(fields.get(i), i);
+
+		mFields = Collections.unmodifiableList(Arrays.asList(descriptors));
+		mIndex = new FieldIndex(mFields);
+		mCodec = findCodec(clazz);
+		mInstantiator = Instantiator.forClass(clazz);
+		mSchema = new Schema(this);
+		SchemaRegistry.getDefault().register(mSchema);
+	}
+
+	/**
+	 * Gets the shared descriptor of a class
+	 * 
+	 * @param clazz
+	 *            the class to describe
+	 * @return the cached descriptor
+	 * @throws ClassNotSerializeableException
+	 *             if class has no <code>Serializeable</code> annotation
+	 */
+	public static ClassDescriptor forClass(Class<?> clazz) {
+		return CACHE.get(clazz);
+	}
+
+	/**
+	 * @return the described class
+	 */
+	public Class<?> getType() {
+		return mType;
+	}
+
+	/**
+	 * @return the resolved {@link Serializable} annotation
+	 */
+	public Serializable getAnnotation() {
+		return mAnnotation;
+	}
+
+	/**
+	 * @return all serializeable fields, superclass fields first, each in
+	 *         declaration order. For records these are the record components.
+	 */
+	public List<FieldDescriptor> getFields() {
+		return mFields;
+	}
+
+	/**
+	 * Resolves a key through a perfect hash of the field names, so that
+	 * unknown keys are rejected as cheaply as known ones are found
+	 * 
+	 * @param name
+	 *            key of the field
+	 * @return the field stored under name, or <b>null</b> if there is none
+	 */
+	public FieldDescriptor getField(String name) {
+		return mIndex.get(name);
+	}
+
+	/**
+	 * @return the generated codec of the class, or <b>null</b> if there is
+	 *         none and reflection must be used
+	 */
+	public SerializationCodec<?> getCodec() {
+		return mCodec;
+	}
+
+	/**
+	 * @return the strategy used to create instances of the class
+	 */
+	public Instantiator getInstantiator() {
+		return mInstantiator;
+	}
+
+	/**
+	 * @return the schema of the class, also available from
+	 *         {@link SchemaRegistry#getDefault()}
+	 */
+	public Schema getSchema() {
+		return mSchema;
+	}
+
+	@Override
+	public String toString() {
+		return "ClassDescriptor[" + mType.getName() + "]";
+	}
+
+	/**
+	 * Gets the Serialization specific type of a field's class
+	 * 
+	 * @param type
+	 *            declared type of the field
+	 * @param elementType
+	 *            component type of an array, element type of a collection or
+	 *            value type of a map, otherwise <b>null</b>
+	 * @param keyType
+	 *            key type of a map, otherwise <b>null</b>
+	 * @return the appropriate field type
+	 */
+	static FieldType getFieldType(Class<?> type, Class<?> elementType,
+			Class<?> keyType) {
+		if (type.isArray()) {
+
+			if (isPrimitive(elementType))
+				return FieldType.PRIMITVE_ARRAY;
+			else
+				return FieldType.SERIALIZEABLE_ARRAY;
+
+		} else if (Collection.class.isAssignableFrom(type)) {
+
+			if (isPrimitive(elementType))
+				return FieldType.PRIMITIVE_COLLECTION;
+			else
+				return FieldType.SERIALIZEABLE_COLLECTION;
+
+		} else if (Map.class.isAssignableFrom(type)) {
+
+			if (!isPrimitive(keyType))
+				throw new ClassNotSerializeableException(keyType);
+
+			if (isPrimitive(elementType))
+				return FieldType.PRIMITIVE_MAP;
+			else
+				return FieldType.SERIALIZEABLE_MAP;
+
+		} else {
+
+			if (isPrimitive(type))
+				return FieldType.PRIMITIVE;
+			else
+				return FieldType.SERIALIZEABLE;
+		}
+	}
+
+	/**
+	 * Determines if class is if primitive type, boxed or unboxed
+	 * 
+	 * @param clazz
+	 *            class to test
+	 * @return <b>true</b> if class is primitive, the class of a boxed
+	 *         primitive, or a String
+	 */
+	static boolean isPrimitive(Class<?> clazz) {
+		return clazz.isPrimitive() || PRIMITIVE_OBJECTS.contains(clazz);
+	}
+
+	/**
+	 * Gets the {@link Serializable} annotation from a class
+	 * 
+	 * @param clazz
+	 *            the class to get the annotation from
+	 * @return the <code>Serializable</code> annotation instance
+	 * @throws ClassNotSerializeableException
+	 *             if class has no <code>Serializeable</code> annotation
+	 */
+	private static Serializable getAnnotation(Class<?> clazz) {
+		Serializable s = clazz.getAnnotation(Serializable.class);
+
+		if (s == null)
+			throw new ClassNotSerializeableException(clazz);
+		else
+			return s;
+	}
+
+	/**
+	 * Finds the codec generated for a class by <code>SerializableProcessor</code>
+	 * 
+	 * @param clazz
+	 *            the class to find the codec of
+	 * @return an instance of the codec, or <b>null</b> if none was generated
+	 */
+	private static SerializationCodec<?> findCodec(Class<?> clazz) {
+		try {
+			Class<?> codec = Class.forName(clazz.getName()
+					+ SerializationCodec.SUFFIX, true, clazz.getClassLoader());
+			return (SerializationCodec<?>) codec.getConstructor()
+					.newInstance();
+		} catch (ClassNotFoundException e) {
+			return null;
+		} catch (ReflectiveOperationException | ClassCastException e) {
+			throw new IllegalStateException("Invalid codec for "
+					+ clazz.getName(), e);
+		}
+	}
+
+	/**
+	 * Collects the fields of class and its superclasses. Fields of a
+	 * superclass take precedence over a field of the same name in a subclass.
+	 * 
+	 * @param clazz
+	 *            class to map
+	 * @param ignore
+	 *            if fields should be ignored by default
+	 * @param out
+	 *            list to add the fields to
+	 * @param names
+	 *            names of the fields already added
+	 */
+	private static void collectFields(Class<?> clazz, boolean ignore,
+			List<Field> out, Set<String> names) {
+
+		if (clazz == null)
+			return;
+
+		collectFields(clazz.getSuperclass(), ignore, out, names);
+
+		for (Field field : clazz.getDeclaredFields()) {
+			boolean add = true;
+			int mod = field.getModifiers();
+
+			add &= !Modifier.isStatic(mod);
+			add &= !Modifier.isFinal(mod);
+			add &= !Modifier.isTransient(mod);
+
+			if (ignore)
+				add &= field.getAnnotation(Keep.class) != null;
+			else
+				add &= field.getAnnotation(Ignore.class) == null;
+
+			if (add && names.add(field.getName())) {
+				field.setAccessible(true);
+				out.add(field);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,266 @@
+package com.prettymuchabigdeal.serializer;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+
+/**
+ * Reads and writes a single field through {@link MethodHandle}s that are
+ * resolved once, avoiding the access checks of {@link Field#get(Object)} and
+ * {@link Field#set(Object, Object)} on every call.<br>
+ * <br>
+ * The typed getters and setters do not box, but must match the declared type
+ * of the field exactly. The generic {@link #get(Object)} and
+ * {@link #set(Object, Object)} work for any field, boxing primitives and
+ * applying widening conversions like reflection does.<br>
+ * <br>
+ * The final fields of records can only be read, they are set through the
+ * canonical constructor by {@link Instantiator}.
+ * 
+ */
+public final class FieldAccessor {
+
+	private final Class<?> mType;
+
+	/**
+	 * <code>(Object)Object</code>
+	 */
+	private final MethodHandle mGetter;
+
+	/**
+	 * <code>(Object,Object)void</code>, <b>null</b> for the final fields of
+	 * records
+	 */
+	private final MethodHandle mSetter;
+
+	/**
+	 * <code>(Object)T</code> where <code>T</code> is the field type
+	 */
+	private final MethodHandle mTypedGetter;
+
+	/**
+	 * <code>(Object,T)void</code> where <code>T</code> is the field type,
+	 * <b>null</b> for the final fields of records
+	 */
+	private final MethodHandle mTypedSetter;
+
+	FieldAccessor(Field field) {
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		mType = field.getType();
+
+		MethodHandle getter;
+		MethodHandle setter = null;
+		try {
+			getter = lookup.unreflectGetter(field);
+			if (!Modifier.isFinal(field.getModifiers()))
+				setter = lookup.unreflectSetter(field);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException("Cannot access " + field, e);
+		}
+
+		mTypedGetter = getter.asType(MethodType.methodType(mType,
+				Object.class));
+		mGetter = getter.asType(MethodType.methodType(Object.class,
+				Object.class));
+
+		if (setter != null) {
+			mTypedSetter = setter.asType(MethodType.methodType(void.class,
+					Object.class, mType));
+			mSetter = setter.asType(MethodType.methodType(void.class,
+					Object.class, Object.class));
+		} else {
+			mTypedSetter = null;
+			mSetter = null;
+		}
+	}
+
+	/**
+	 * @return the declared type of the field
+	 */
+	public Class<?> getType() {
+		return mType;
+	}
+
+	/**
+	 * @param target
+	 *            object to read from
+	 * @return value of the field, boxed if primitive
+	 */
+	public Object get(Object target) {
+		try {
+			return (Object) mGetter.invokeExact(target);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	/**
+	 * @param target
+	 *            object to write to
+	 * @param value
+	 *            new value of the field, boxed if primitive
+	 */
+	public void set(Object target, Object value) {
+		try {
+			setter().invokeExact(target, value);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	public boolean getBoolean(Object target) {
+		try {
+			return (boolean) mTypedGetter.invokeExact(target);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	public byte getByte(Object target) {
+		try {
+			return (byte) mTypedGetter.invokeExact(target);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	public char getChar(Object target) {
+		try {
+			return (char) mTypedGetter.invokeExact(target);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	public short getShort(Object target) {
+		try {
+			return (short) mTypedGetter.invokeExact(target);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	public int getInt(Object target) {
+		try {
+			return (int) mTypedGetter.invokeExact(target);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	public long getLong(Object target) {
+		try {
+			return (long) mTypedGetter.invokeExact(target);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	public float getFloat(Object target) {
+		try {
+			return (float) mTypedGetter.invokeExact(target);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	public double getDouble(Object target) {
+		try {
+			return (double) mTypedGetter.invokeExact(target);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	public void setBoolean(Object target, boolean value) {
+		try {
+			typedSetter().invokeExact(target, value);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	public void setByte(Object target, byte value) {
+		try {
+			typedSetter().invokeExact(target, value);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	public void setChar(Object target, char value) {
+		try {
+			typedSetter().invokeExact(target, value);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	public void setShort(Object target, short value) {
+		try {
+			typedSetter().invokeExact(target, value);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	public void setInt(Object target, int value) {
+		try {
+			typedSetter().invokeExact(target, value);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	public void setLong(Object target, long value) {
+		try {
+			typedSetter().invokeExact(target, value);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	public void setFloat(Object target, float value) {
+		try {
+			typedSetter().invokeExact(target, value);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	public void setDouble(Object target, double value) {
+		try {
+			typedSetter().invokeExact(target, value);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	private MethodHandle setter() {
+		if (mSetter == null)
+			throw new UnsupportedOperationException("Field is read only");
+		return mSetter;
+	}
+
+	private MethodHandle typedSetter() {
+		if (mTypedSetter == null)
+			throw new UnsupportedOperationException("Field is read only");
+		return mTypedSetter;
+	}
+
+	/**
+	 * Method handles declare {@link Throwable}, but field access can only fail
+	 * with unchecked exceptions
+	 */
+	private static RuntimeException rethrow(Throwable t) {
+		if (t instanceof Error)
+			throw (Error) t;
+		if (t instanceof RuntimeException)
+			return (RuntimeException) t;
+		return new UndeclaredThrowableException(t);
+	}
+
+}
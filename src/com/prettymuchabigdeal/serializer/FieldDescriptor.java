@@ -0,0 +1,313 @@
+package com.prettymuchabigdeal.serializer;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import com.prettymuchabigdeal.serializer.Serializable.Dedup;
+
+/**
+ * Immutable description of a single serializeable field, resolved once by
+ * {@link ClassDescriptor}
+ * 
+ */
+public final class FieldDescriptor {
+
+	/**
+	 * Classes created for collection fields declared as an interface or
+	 * abstract class, the first one assignable to the field is used
+	 */
+	private static final Class<?>[] COLLECTIONS = { ArrayList.class,
+			LinkedHashSet.class, TreeSet.class, ArrayDeque.class };
+
+	/**
+	 * Classes created for map fields declared as an interface or abstract
+	 * class, the first one assignable to the field is used
+	 */
+	private static final Class<?>[] MAPS = { LinkedHashMap.class,
+			TreeMap.class, ConcurrentHashMap.class,
+			ConcurrentSkipListMap.class };
+
+	private final Field mField;
+	private final String mName;
+	private final int mIndex;
+	private final FieldType mFieldType;
+	private final Primitives.Kind mKind;
+	private final Class<?> mType;
+	private final Class<?> mComponentType;
+	private final Class<?> mKeyType;
+	private final String mTypeName;
+	private final Constructor<?> mContainer;
+	private final FieldAccessor mAccessor;
+	private final boolean mDedup;
+
+	FieldDescriptor(Field field, int index) {
+		mField = field;
+		mName = field.getName();
+		mIndex = index;
+		mType = field.getType();
+
+		Type generic = field.getGenericType();
+		if (Collection.class.isAssignableFrom(mType)) {
+			mComponentType = typeArgument(generic, Collection.class, 0);
+			mKeyType = null;
+			mContainer = container(mType, COLLECTIONS);
+			mTypeName = generic.getTypeName();
+		} else if (Map.class.isAssignableFrom(mType)) {
+			mComponentType = typeArgument(generic, Map.class, 1);
+			mKeyType = typeArgument(generic, Map.class, 0);
+			mContainer = container(mType, MAPS);
+			mTypeName = generic.getTypeName();
+		} else {
+			mComponentType = mType.getComponentType();
+			mKeyType = null;
+			mContainer = null;
+			mTypeName = mType.getName();
+		}
+
+		mFieldType = ClassDescriptor.getFieldType(mType, mComponentType,
+				mKeyType);
+		mKind = Primitives.Kind.of(mType);
+		mAccessor = new FieldAccessor(field);
+		mDedup = (mType == String.class || mType == String[].class)
+				&& (field.isAnnotationPresent(Dedup.class) || field
+						.getDeclaringClass().isAnnotationPresent(Dedup.class));
+	}
+
+	/**
+	 * @return the underlying field, already made accessible
+	 */
+	public Field getField() {
+		return mField;
+	}
+
+	/**
+	 * @return handle based accessor for reading and writing this field
+	 */
+	public FieldAccessor getAccessor() {
+		return mAccessor;
+	}
+
+	/**
+	 * @return the key this field is stored under
+	 */
+	public String getName() {
+		return mName;
+	}
+
+	/**
+	 * @return position of this field in {@link ClassDescriptor#getFields()}
+	 */
+	public int getIndex() {
+		return mIndex;
+	}
+
+	/**
+	 * @return the Serialization specific type of this field
+	 */
+	public FieldType getFieldType() {
+		return mFieldType;
+	}
+
+	/**
+	 * @return the unboxed type of this field, {@link Primitives.Kind#OBJECT}
+	 *         if it is not a primitive
+	 */
+	public Primitives.Kind getKind() {
+		return mKind;
+	}
+
+	/**
+	 * @return the declared type of this field
+	 */
+	public Class<?> getType() {
+		return mType;
+	}
+
+	/**
+	 * @return binary name of the declared type of this field, including its
+	 *         type arguments if it is a collection or map
+	 */
+	public String getTypeName() {
+		return mTypeName;
+	}
+
+	/**
+	 * @return the component type if this field is an array, the element type
+	 *         if it is a collection, the value type if it is a map, otherwise
+	 *         <b>null</b>
+	 */
+	public Class<?> getComponentType() {
+		return mComponentType;
+	}
+
+	/**
+	 * @return the key type if this field is a map, otherwise <b>null</b>
+	 */
+	public Class<?> getKeyType() {
+		return mKeyType;
+	}
+
+	/**
+	 * Creates an empty collection to load this field into
+	 * 
+	 * @param size
+	 *            number of elements about to be added, or <b>-1</b> if unknown
+	 * @return a new instance of the declared type, or of a default
+	 *         implementation of it
+	 */
+	@SuppressWarnings("unchecked")
+	public Collection<Object> newCollection(int size) throws Exception {
+		if (mContainer.getDeclaringClass() == ArrayList.class)
+			return new ArrayList<>(Math.max(size, 0));
+		return (Collection<Object>) mContainer.newInstance();
+	}
+
+	/**
+	 * Creates an empty map to load this field into
+	 * 
+	 * @param size
+	 *            number of entries about to be added, or <b>-1</b> if unknown
+	 * @return a new instance of the declared type, or of a default
+	 *         implementation of it
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<Object, Object> newMap(int size) throws Exception {
+		if (mContainer.getDeclaringClass() == LinkedHashMap.class)
+			return new LinkedHashMap<>(Math.max(size * 4 / 3 + 1, 16));
+		return (Map<Object, Object>) mContainer.newInstance();
+	}
+
+	/**
+	 * @return <b>true</b> if loaded values of this field are canonicalized
+	 *         through a {@link StringPool}
+	 */
+	public boolean isDeduplicated() {
+		return mDedup;
+	}
+
+	/**
+	 * Resolves a type argument of a generic supertype, following type
+	 * variables bound by the classes in between
+	 * 
+	 * @param type
+	 *            generic type of the field
+	 * @param target
+	 *            the generic supertype, <code>Collection</code> or
+	 *            <code>Map</code>
+	 * @param index
+	 *            position of the type argument in target
+	 * @return erasure of the type argument, <code>Object</code> if it can not
+	 *         be resolved
+	 */
+	private static Class<?> typeArgument(Type type, Class<?> target, int index) {
+		return erase(resolve(type, target, index,
+				new HashMap<TypeVariable<?>, Type>()));
+	}
+
+	private static Type resolve(Type type, Class<?> target, int index,
+			Map<TypeVariable<?>, Type> bindings) {
+		Class<?> raw;
+		Map<TypeVariable<?>, Type> own = new HashMap<>();
+
+		if (type instanceof ParameterizedType) {
+			ParameterizedType parameterized = (ParameterizedType) type;
+			raw = (Class<?>) parameterized.getRawType();
+			TypeVariable<?>[] variables = raw.getTypeParameters();
+			Type[] arguments = parameterized.getActualTypeArguments();
+			for (int i = 0; i < variables.length; i++) {
+				Type argument = arguments[i];
+				if (bindings.containsKey(argument))
+					argument = bindings.get(argument);
+				own.put(variables[i], argument);
+			}
+		} else if (type instanceof Class) {
+			raw = (Class<?>) type;
+		} else {
+			return null;
+		}
+
+		if (raw == target)
+			return own.get(raw.getTypeParameters()[index]);
+
+		for (Type parent : raw.getGenericInterfaces()) {
+			Type resolved = resolve(parent, target, index, own);
+			if (resolved != null)
+				return resolved;
+		}
+		return resolve(raw.getGenericSuperclass(), target, index, own);
+	}
+
+	private static Class<?> erase(Type type) {
+		if (type instanceof Class)
+			return (Class<?>) type;
+		if (type instanceof ParameterizedType)
+			return erase(((ParameterizedType) type).getRawType());
+		if (type instanceof WildcardType)
+			return erase(((WildcardType) type).getUpperBounds()[0]);
+		if (type instanceof TypeVariable)
+			return erase(((TypeVariable<?>) type).getBounds()[0]);
+		if (type instanceof GenericArrayType)
+			return Array.newInstance(
+					erase(((GenericArrayType) type).getGenericComponentType()),
+					0).getClass();
+		return Object.class;
+	}
+
+	/**
+	 * @param type
+	 *            declared type of a collection or map field
+	 * @param defaults
+	 *            implementations to use if type can not be created itself
+	 * @return the no argument constructor of type or of the first of
+	 *         defaults assignable to it
+	 * @throws IllegalArgumentException
+	 *             if there is no such constructor
+	 */
+	private static Constructor<?> container(Class<?> type, Class<?>[] defaults) {
+		Class<?> clazz = null;
+
+		if (!type.isInterface() && !Modifier.isAbstract(type.getModifiers()))
+			clazz = type;
+		else
+			for (Class<?> candidate : defaults)
+				if (type.isAssignableFrom(candidate)) {
+					clazz = candidate;
+					break;
+				}
+
+		try {
+			if (clazz != null) {
+				Constructor<?> constructor = clazz.getDeclaredConstructor();
+				constructor.setAccessible(true);
+				return constructor;
+			}
+		} catch (NoSuchMethodException e) {
+		}
+		throw new IllegalArgumentException("Can not create a "
+				+ type.getName());
+	}
+
+	@Override
+	public String toString() {
+		return mField.getDeclaringClass().getName() + "." + mName;
+	}
+
+}
@@ -0,0 +1,155 @@
+package com.prettymuchabigdeal.serializer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves keys to the fields of a class through a minimal perfect hash of
+ * the field names, built with the hash-and-displace method. A lookup costs two
+ * table reads and a single <code>equals</code>, and unknown keys are rejected
+ * by that same comparison.<br>
+ * <br>
+ * If no perfect hash is found, for instance because two field names share a
+ * hash code, the index falls back to a regular map.
+ * 
+ */
+final class FieldIndex {
+
+	/**
+	 * Displacements tried per bucket before giving up on a perfect hash
+	 */
+	private static final int MAX_DISPLACEMENT = 1 << 16;
+
+	private final FieldDescriptor[] mSlots;
+	private final int[] mDisplacements;
+	private final Map<String, FieldDescriptor> mFallback;
+
+	FieldIndex(List<FieldDescriptor> fields) {
+		int n = fields.size();
+		FieldDescriptor[] slots = new FieldDescriptor[n];
+		int[] displacements = new int[Math.max(1, (n + 1) / 2)];
+
+		if (build(fields, slots, displacements)) {
+			mSlots = slots;
+			mDisplacements = displacements;
+			mFallback = null;
+		} else {
+			mSlots = null;
+			mDisplacements = null;
+			mFallback = new HashMap<>();
+			for (FieldDescriptor field : fields)
+				mFallback.put(field.getName(), field);
+		}
+	}
+
+	/**
+	 * @param key
+	 *            name of a field
+	 * @return the field, or <b>null</b> if there is no field named key
+	 */
+	FieldDescriptor get(String key) {
+		if (mFallback != null)
+			return mFallback.get(key);
+
+		if (mSlots.length == 0)
+			return null;
+
+		int h = key.hashCode();
+		int d = mDisplacements[index(mix(h, 0), mDisplacements.length)];
+		FieldDescriptor field = mSlots[index(mix(h, d), mSlots.length)];
+
+		return field != null && field.getName().equals(key) ? field : null;
+	}
+
+	/**
+	 * Places the largest buckets first, finding for each one a displacement
+	 * that sends all of its keys to free slots
+	 * 
+	 * @return <b>false</b> if no perfect hash was found
+	 */
+	private static boolean build(List<FieldDescriptor> fields,
+			FieldDescriptor[] slots, int[] displacements) {
+
+		List<List<FieldDescriptor>> buckets = new ArrayList<>();
+		for (int i = 0; i < displacements.length; i++)
+			buckets.add(new ArrayList<FieldDescriptor>());
+
+		for (FieldDescriptor field : fields)
+			buckets.get(
+					index(mix(field.getName().hashCode(), 0),
+							displacements.length)).add(field);
+
+		List<Integer> order = new ArrayList<>();
+		for (int i = 0; i < displacements.length; i++)
+			order.add(i);
+
+		final List<List<FieldDescriptor>> sizes = buckets;
+		Collections.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return sizes.get(b).size() - sizes.get(a).size();
+			}
+		});
+
+		int[] taken = new int[bucketSize(buckets)];
+
+		for (int b : order) {
+			List<FieldDescriptor> bucket = buckets.get(b);
+			if (bucket.isEmpty())
+				break;
+
+			boolean placed = false;
+			for (int d = 1; d < MAX_DISPLACEMENT && !placed; d++) {
+				placed = true;
+				for (int i = 0; i < bucket.size() && placed; i++) {
+					int slot = index(mix(bucket.get(i).getName().hashCode(),
+							d), slots.length);
+					placed = slots[slot] == null;
+					for (int j = 0; j < i && placed; j++)
+						placed = taken[j] != slot;
+					taken[i] = slot;
+				}
+
+				if (placed) {
+					for (int i = 0; i < bucket.size(); i++)
+						slots[taken[i]] = bucket.get(i);
+					displacements[b] = d;
+				}
+			}
+
+			if (!placed) {
+				Arrays.fill(slots, null);
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static int bucketSize(List<List<FieldDescriptor>> buckets) {
+		int max = 0;
+		for (List<FieldDescriptor> bucket : buckets)
+			max = Math.max(max, bucket.size());
+		return max;
+	}
+
+	private static int mix(int h, int seed) {
+		h ^= seed * 0x9E3779B9;
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	private static int index(int h, int length) {
+		return (h & 0x7FFFFFFF) % length;
+	}
+
+}
@@ -0,0 +1,14 @@
+package com.prettymuchabigdeal.serializer;
+
+/**
+ * Types of fields as used by {@link SerializationMethod}. Collections and maps
+ * are split by their element or value type the same way arrays are by their
+ * component type. Map keys are always primitives or Strings.
+ * 
+ * @author Tyler
+ * 
+ */
+public enum FieldType {
+	PRIMITIVE, SERIALIZEABLE, PRIMITVE_ARRAY, SERIALIZEABLE_ARRAY,
+	PRIMITIVE_COLLECTION, SERIALIZEABLE_COLLECTION, PRIMITIVE_MAP, SERIALIZEABLE_MAP
+}
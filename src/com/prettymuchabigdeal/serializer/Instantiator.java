@@ -0,0 +1,318 @@
+package com.prettymuchabigdeal.serializer;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+
+/**
+ * Strategy for creating instances of a class during deserialization, resolved
+ * once per class by {@link ClassDescriptor}. In order of preference a class is
+ * created through
+ * <ul>
+ * <li>its constructor without arguments, of any visibility</li>
+ * <li>its canonical constructor, if it is a record</li>
+ * <li>an allocator that bypasses constructors entirely, leaving all fields at
+ * their default values</li>
+ * </ul>
+ * 
+ */
+public abstract class Instantiator {
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	/**
+	 * <code>Class.isRecord()</code>, <b>null</b> before Java 16
+	 */
+	private static final Method IS_RECORD = findMethod(Class.class,
+			"isRecord");
+
+	/**
+	 * <code>Class.getRecordComponents()</code>, <b>null</b> before Java 16
+	 */
+	private static final Method GET_RECORD_COMPONENTS = findMethod(
+			Class.class, "getRecordComponents");
+
+	/**
+	 * <code>Unsafe.allocateInstance(Class)</code> bound to the Unsafe
+	 * instance, <b>null</b> if it is not available
+	 */
+	private static final MethodHandle ALLOCATE_INSTANCE = findAllocator();
+
+	Instantiator() {
+	}
+
+	/**
+	 * @return <b>true</b> if instances can only be created with all field
+	 *         values known up front through {@link #newInstance(Object[])}
+	 */
+	public boolean requiresArguments() {
+		return false;
+	}
+
+	/**
+	 * Creates an empty instance, whose fields are set afterwards
+	 * 
+	 * @return new instance
+	 * @throws InstantiationException
+	 *             if the class can not be instantiated without arguments
+	 */
+	public abstract Object newInstance() throws Exception;
+
+	/**
+	 * Creates an instance from the value of every field
+	 * 
+	 * @param args
+	 *            field values, ordered as {@link ClassDescriptor#getFields()}
+	 * @return new instance
+	 */
+	public Object newInstance(Object[] args) throws Exception {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Resolves the fastest available strategy for a class
+	 * 
+	 * @param clazz
+	 *            the class to create instances of
+	 * @return the strategy
+	 */
+	static Instantiator forClass(Class<?> clazz) {
+		if (clazz.isInterface() || Modifier.isAbstract(clazz.getModifiers()))
+			return new Unsupported(clazz, "class is abstract");
+
+		if (isRecord(clazz))
+			return new Canonical(clazz);
+
+		try {
+			Constructor<?> ctor = clazz.getDeclaredConstructor();
+			ctor.setAccessible(true);
+			return new Default(LOOKUP.unreflectConstructor(ctor));
+		} catch (NoSuchMethodException | IllegalAccessException
+				| RuntimeException e) {
+			// fall through to allocator
+		}
+
+		if (ALLOCATE_INSTANCE != null)
+			return new Allocator(ALLOCATE_INSTANCE.bindTo(clazz));
+
+		return new Unsupported(clazz, "no constructor without arguments");
+	}
+
+	/**
+	 * @param clazz
+	 *            class to test
+	 * @return <b>true</b> if class is a record
+	 */
+	static boolean isRecord(Class<?> clazz) {
+		if (IS_RECORD == null)
+			return false;
+
+		try {
+			return (Boolean) IS_RECORD.invoke(clazz);
+		} catch (ReflectiveOperationException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @param clazz
+	 *            a record class
+	 * @return the fields backing each record component, in canonical
+	 *         constructor order, already made accessible
+	 */
+	static Field[] getRecordFields(Class<?> clazz) {
+		try {
+			Object[] components = (Object[]) GET_RECORD_COMPONENTS
+					.invoke(clazz);
+			Field[] fields = new Field[components.length];
+
+			for (int i = 0; i < components.length; i++) {
+				String name = (String) components[i].getClass()
+						.getMethod("getName").invoke(components[i]);
+				fields[i] = clazz.getDeclaredField(name);
+				fields[i].setAccessible(true);
+			}
+
+			return fields;
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Cannot read record "
+					+ clazz.getName(), e);
+		}
+	}
+
+	/**
+	 * Default value of a field that is not present in serialized data
+	 * 
+	 * @param type
+	 *            declared type of the field
+	 * @return zero for primitives, otherwise <b>null</b>
+	 */
+	static Object defaultValue(Class<?> type) {
+		if (!type.isPrimitive())
+			return null;
+		if (type == boolean.class)
+			return Boolean.FALSE;
+		if (type == char.class)
+			return Character.valueOf((char) 0);
+		return Primitives.coerce(0, type);
+	}
+
+	private static Method findMethod(Class<?> clazz, String name) {
+		try {
+			return clazz.getMethod(name);
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	private static MethodHandle findAllocator() {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+
+			return LOOKUP.findVirtual(unsafeClass, "allocateInstance",
+					MethodType.methodType(Object.class, Class.class)).bindTo(
+					theUnsafe.get(null));
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	private static Exception rethrow(Throwable t) {
+		if (t instanceof Error)
+			throw (Error) t;
+		if (t instanceof Exception)
+			return (Exception) t;
+		return new UndeclaredThrowableException(t);
+	}
+
+	/**
+	 * Calls the constructor without arguments
+	 */
+	private static final class Default extends Instantiator {
+
+		/**
+		 * <code>()Object</code>
+		 */
+		private final MethodHandle mConstructor;
+
+		Default(MethodHandle constructor) {
+			mConstructor = constructor.asType(MethodType
+					.methodType(Object.class));
+		}
+
+		@Override
+		public Object newInstance() throws Exception {
+			try {
+				return (Object) mConstructor.invokeExact();
+			} catch (Throwable t) {
+				throw rethrow(t);
+			}
+		}
+	}
+
+	/**
+	 * Calls the canonical constructor of a record
+	 */
+	private static final class Canonical extends Instantiator {
+
+		/**
+		 * <code>(Object[])Object</code>
+		 */
+		private final MethodHandle mConstructor;
+		private final Class<?> mType;
+
+		Canonical(Class<?> clazz) {
+			Field[] fields = getRecordFields(clazz);
+			Class<?>[] types = new Class<?>[fields.length];
+			for (int i = 0; i < fields.length; i++)
+				types[i] = fields[i].getType();
+
+			try {
+				Constructor<?> ctor = clazz.getDeclaredConstructor(types);
+				ctor.setAccessible(true);
+				mConstructor = LOOKUP.unreflectConstructor(ctor)
+						.asSpreader(Object[].class, types.length)
+						.asType(MethodType.methodType(Object.class,
+								Object[].class));
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalStateException("Cannot access constructor of "
+						+ clazz.getName(), e);
+			}
+			mType = clazz;
+		}
+
+		@Override
+		public boolean requiresArguments() {
+			return true;
+		}
+
+		@Override
+		public Object newInstance() throws Exception {
+			throw new InstantiationException(mType.getName()
+					+ " is a record and requires all of its components");
+		}
+
+		@Override
+		public Object newInstance(Object[] args) throws Exception {
+			try {
+				return (Object) mConstructor.invokeExact(args);
+			} catch (Throwable t) {
+				throw rethrow(t);
+			}
+		}
+	}
+
+	/**
+	 * Allocates an instance without running any constructor
+	 */
+	private static final class Allocator extends Instantiator {
+
+		/**
+		 * <code>()Object</code>
+		 */
+		private final MethodHandle mAllocator;
+
+		Allocator(MethodHandle allocator) {
+			mAllocator = allocator;
+		}
+
+		@Override
+		public Object newInstance() throws Exception {
+			try {
+				return (Object) mAllocator.invokeExact();
+			} catch (Throwable t) {
+				throw rethrow(t);
+			}
+		}
+	}
+
+	/**
+	 * Class can not be instantiated
+	 */
+	private static final class Unsupported extends Instantiator {
+
+		private final String mMessage;
+
+		Unsupported(Class<?> clazz, String reason) {
+			mMessage = clazz.getName() + ": " + reason;
+		}
+
+		@Override
+		public Object newInstance() throws Exception {
+			throw new InstantiationException(mMessage);
+		}
+
+		@Override
+		public Object newInstance(Object[] args) throws Exception {
+			throw new InstantiationException(mMessage);
+		}
+	}
+
+}
@@ -0,0 +1,236 @@
+package com.prettymuchabigdeal.serializer;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Conversions from the loosely typed values a {@link SerializationMethod}
+ * loads into the exact type of a primitive field. Formats are free to widen
+ * or narrow numbers, for instance JSON reads an <code>int</code> back for a
+ * <code>long</code> field, or a <code>double</code> for a <code>float</code>.
+ * 
+ */
+public final class Primitives {
+
+	/**
+	 * Unboxed type of a primitive field, {@link Kind#OBJECT} for boxed
+	 * primitives and Strings
+	 * 
+	 */
+	public static enum Kind {
+		BOOLEAN, BYTE, CHAR, SHORT, INT, LONG, FLOAT, DOUBLE, OBJECT;
+
+		/**
+		 * @param type
+		 *            declared type of a field
+		 * @return the kind of the type
+		 */
+		public static Kind of(Class<?> type) {
+			if (type == int.class)
+				return INT;
+			if (type == long.class)
+				return LONG;
+			if (type == double.class)
+				return DOUBLE;
+			if (type == boolean.class)
+				return BOOLEAN;
+			if (type == float.class)
+				return FLOAT;
+			if (type == short.class)
+				return SHORT;
+			if (type == byte.class)
+				return BYTE;
+			if (type == char.class)
+				return CHAR;
+			return OBJECT;
+		}
+	}
+
+	private Primitives() {
+	}
+
+	public static boolean toBoolean(Object value) {
+		if (value instanceof Boolean)
+			return (Boolean) value;
+		return Boolean.parseBoolean(value.toString());
+	}
+
+	public static byte toByte(Object value) {
+		if (value instanceof Number)
+			return ((Number) value).byteValue();
+		return Byte.parseByte(value.toString());
+	}
+
+	public static char toChar(Object value) {
+		if (value instanceof Character)
+			return (Character) value;
+		if (value instanceof Number)
+			return (char) ((Number) value).intValue();
+
+		String string = value.toString();
+		if (string.length() != 1)
+			throw new IllegalArgumentException("Not a char: " + string);
+		return string.charAt(0);
+	}
+
+	public static short toShort(Object value) {
+		if (value instanceof Number)
+			return ((Number) value).shortValue();
+		return Short.parseShort(value.toString());
+	}
+
+	public static int toInt(Object value) {
+		if (value instanceof Number)
+			return ((Number) value).intValue();
+		return Integer.parseInt(value.toString());
+	}
+
+	public static long toLong(Object value) {
+		if (value instanceof Number)
+			return ((Number) value).longValue();
+		return Long.parseLong(value.toString());
+	}
+
+	public static float toFloat(Object value) {
+		if (value instanceof Number)
+			return ((Number) value).floatValue();
+		return Float.parseFloat(value.toString());
+	}
+
+	public static double toDouble(Object value) {
+		if (value instanceof Number)
+			return ((Number) value).doubleValue();
+		return Double.parseDouble(value.toString());
+	}
+
+	/**
+	 * @param type
+	 *            any type
+	 * @return the primitive type boxed by type, or type itself
+	 */
+	public static Class<?> unbox(Class<?> type) {
+		if (type == Integer.class)
+			return int.class;
+		if (type == Long.class)
+			return long.class;
+		if (type == Double.class)
+			return double.class;
+		if (type == Boolean.class)
+			return boolean.class;
+		if (type == Float.class)
+			return float.class;
+		if (type == Short.class)
+			return short.class;
+		if (type == Byte.class)
+			return byte.class;
+		if (type == Character.class)
+			return char.class;
+		return type;
+	}
+
+	/**
+	 * Converts a loaded value into the boxed representation of a field type
+	 * 
+	 * @param value
+	 *            the loaded value, may be <b>null</b>
+	 * @param type
+	 *            a primitive type, boxed primitive type, or String
+	 * @return value converted to type, or <b>null</b> if value was <b>null</b>
+	 */
+	public static Object coerce(Object value, Class<?> type) {
+		if (value == null || type.isInstance(value))
+			return value;
+
+		if (type == String.class)
+			return value.toString();
+		if (type == int.class || type == Integer.class)
+			return toInt(value);
+		if (type == long.class || type == Long.class)
+			return toLong(value);
+		if (type == double.class || type == Double.class)
+			return toDouble(value);
+		if (type == boolean.class || type == Boolean.class)
+			return toBoolean(value);
+		if (type == float.class || type == Float.class)
+			return toFloat(value);
+		if (type == short.class || type == Short.class)
+			return toShort(value);
+		if (type == byte.class || type == Byte.class)
+			return toByte(value);
+		if (type == char.class || type == Character.class)
+			return toChar(value);
+
+		return value;
+	}
+
+	/**
+	 * Copies a collection of boxed primitives into an array, unboxed unless
+	 * it holds a <b>null</b>, so that formats can store it packed
+	 * 
+	 * @param values
+	 *            the collection to copy
+	 * @param type
+	 *            a boxed primitive type, or String
+	 * @return an array of the unboxed type if there is one and values holds
+	 *         no <b>null</b>, otherwise an array of type
+	 */
+	public static Object toArray(Collection<?> values, Class<?> type) {
+		Class<?> component = unbox(type);
+		// Not contains(null), which sorted and concurrent collections reject
+		for (Object value : values)
+			if (value == null)
+				component = type;
+
+		Object array = Array.newInstance(component, values.size());
+		int i = 0;
+		for (Object value : values)
+			Array.set(array, i++, coerce(value, type));
+		return array;
+	}
+
+	/**
+	 * Splits a map into parallel arrays of keys and values, for formats
+	 * without maps of their own
+	 * 
+	 * @param map
+	 *            map to split
+	 * @param values
+	 *            list to add the values of map to, in the order of its keys
+	 * @return keys of map as Strings
+	 */
+	static String[] split(Map<?, ?> map, List<Object> values) {
+		String[] keys = new String[map.size()];
+		int i = 0;
+
+		for (Map.Entry<?, ?> entry : map.entrySet()) {
+			keys[i++] = String.valueOf(entry.getKey());
+			values.add(entry.getValue());
+		}
+		return keys;
+	}
+
+	/**
+	 * Puts the entries of parallel key and value arrays into a map
+	 * 
+	 * @param valueType
+	 *            type to convert the values to, or <b>null</b> to keep them
+	 */
+	static Map<Object, Object> zip(Object keys, Object values,
+			Class<?> keyType, Class<?> valueType, Map<Object, Object> into) {
+		int length = Array.getLength(keys);
+		if (values == null || Array.getLength(values) != length)
+			throw new IllegalArgumentException(length + " keys but "
+					+ (values == null ? 0 : Array.getLength(values))
+					+ " values");
+
+		for (int i = 0; i < length; i++) {
+			Object value = Array.get(values, i);
+			into.put(coerce(Array.get(keys, i), keyType),
+					valueType == null ? value : coerce(value, valueType));
+		}
+		return into;
+	}
+
+}
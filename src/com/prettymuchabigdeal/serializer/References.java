@@ -0,0 +1,127 @@
+package com.prettymuchabigdeal.serializer;
+
+import java.util.Arrays;
+
+/**
+ * Ids of the objects met during a single serialization or deserialization
+ * with reference tracking enabled. Objects are numbered in the order they
+ * are first seen. Writing looks ids up in an open addressed identity table
+ * with linear probing, reading looks objects up by id in a plain array.
+ *
+ */
+final class References {
+
+	/**
+	 * Marks an object that is announced but not yet created, because its
+	 * class can only be created through a constructor taking its fields
+	 */
+	private static final Object PENDING = new Object();
+
+	/**
+	 * Objects by id
+	 */
+	private Object[] mObjects;
+	private int mCount;
+
+	/**
+	 * Id plus one of each slot, 0 for an empty slot, or <b>null</b> while
+	 * only reading
+	 */
+	private int[] mTable;
+
+	/**
+	 * @param expectedSize
+	 *            number of objects expected, rounded up to a power of two
+	 */
+	References(int expectedSize) {
+		mObjects = new Object[Integer.highestOneBit(Math.max(expectedSize,
+				16) - 1) << 1];
+	}
+
+	/**
+	 * @param object
+	 *            an object about to be written
+	 * @return id of object if it was written before, otherwise
+	 *         <code>-(id + 1)</code> of the id it is assigned
+	 */
+	int add(Object object) {
+		if (mTable == null)
+			mTable = new int[mObjects.length * 2];
+
+		int mask = mTable.length - 1;
+		int slot = hash(object) & mask;
+		while (mTable[slot] != 0) {
+			int id = mTable[slot] - 1;
+			if (mObjects[id] == object)
+				return id;
+			slot = (slot + 1) & mask;
+		}
+
+		if (mCount == mObjects.length) {
+			grow();
+			return add(object);
+		}
+
+		mTable[slot] = mCount + 1;
+		mObjects[mCount++] = object;
+		return -mCount;
+	}
+
+	/**
+	 * @param id
+	 *            id of the object as it was written
+	 * @param object
+	 *            the object read for id, or <b>null</b> if it can not be
+	 *            referenced until it is created
+	 */
+	void put(int id, Object object) {
+		if (id >= mObjects.length)
+			mObjects = Arrays.copyOf(mObjects,
+					Math.max(mObjects.length * 2, id + 1));
+		mObjects[id] = object == null ? PENDING : object;
+		mCount = Math.max(mCount, id + 1);
+	}
+
+	/**
+	 * @param id
+	 *            id of an object read before
+	 * @return the object
+	 * @throws IllegalArgumentException
+	 *             if no object was read for id
+	 * @throws IllegalStateException
+	 *             if the object is still being created
+	 */
+	Object get(int id) {
+		Object object = id >= 0 && id < mCount ? mObjects[id] : null;
+
+		if (object == null)
+			throw new IllegalArgumentException("Unknown reference " + id);
+		if (object == PENDING)
+			throw new IllegalStateException("Reference " + id
+					+ " to an object created through its constructor"
+					+ " before it is complete");
+		return object;
+	}
+
+	private static int hash(Object object) {
+		int h = System.identityHashCode(object);
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Doubles the capacity, keeping the table at a load factor of one half
+	 */
+	private void grow() {
+		mObjects = Arrays.copyOf(mObjects, mObjects.length * 2);
+		mTable = new int[mObjects.length * 2];
+
+		int mask = mTable.length - 1;
+		for (int id = 0; id < mCount; id++) {
+			int slot = hash(mObjects[id]) & mask;
+			while (mTable[slot] != 0)
+				slot = (slot + 1) & mask;
+			mTable[slot] = id + 1;
+		}
+	}
+
+}
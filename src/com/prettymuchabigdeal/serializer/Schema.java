@@ -0,0 +1,255 @@
+package com.prettymuchabigdeal.serializer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stable description of the serialized form of a class: its name, version and
+ * the name and type of each field. The position of a field in
+ * {@link #getFields()} is its numeric id, so data written against a schema
+ * needs no field names, only the 64 bit {@link #getFingerprint()} of the
+ * schema.<br>
+ * <br>
+ * Schemas of local classes come from {@link ClassDescriptor#getSchema()},
+ * others can be exchanged with {@link #write(DataOutput)} and
+ * {@link #read(DataInput)} and are found by fingerprint in a
+ * {@link SchemaRegistry}.
+ * 
+ */
+public final class Schema {
+
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	/**
+	 * A single field of a schema
+	 */
+	public static final class Field {
+
+		private final String mName;
+		private final String mTypeName;
+		private final FieldType mFieldType;
+		private final Primitives.Kind mKind;
+		private final boolean mNullable;
+
+		/**
+		 * @param name
+		 *            key of the field
+		 * @param typeName
+		 *            binary name of the declared type of the field, with its
+		 *            type arguments if it is a collection or map
+		 * @param fieldType
+		 *            how the field is serialized
+		 * @param kind
+		 *            kind of the value, or of the elements of an array,
+		 *            collection or map
+		 * @param nullable
+		 *            <b>true</b> if the value, or the elements of an array,
+		 *            collection or map, may be null
+		 */
+		public Field(String name, String typeName, FieldType fieldType,
+				Primitives.Kind kind, boolean nullable) {
+			mName = name;
+			mTypeName = typeName;
+			mFieldType = fieldType;
+			mKind = kind;
+			mNullable = nullable;
+		}
+
+		Field(FieldDescriptor field) {
+			Class<?> type = field.getType();
+			Class<?> value = field.getComponentType() != null ? field
+					.getComponentType() : type;
+
+			mName = field.getName();
+			mTypeName = field.getTypeName();
+			mFieldType = field.getFieldType();
+			mKind = Primitives.Kind.of(Primitives.unbox(value));
+			mNullable = !value.isPrimitive();
+		}
+
+		public String getName() {
+			return mName;
+		}
+
+		public String getTypeName() {
+			return mTypeName;
+		}
+
+		public FieldType getFieldType() {
+			return mFieldType;
+		}
+
+		/**
+		 * @return kind of the value, or of the elements of an array. Strings
+		 *         and serializeable objects are {@link Primitives.Kind#OBJECT}
+		 */
+		public Primitives.Kind getKind() {
+			return mKind;
+		}
+
+		/**
+		 * @return <b>true</b> if the value, or the elements of an array, may
+		 *         be null
+		 */
+		public boolean isNullable() {
+			return mNullable;
+		}
+
+		@Override
+		public String toString() {
+			return mTypeName + " " + mName;
+		}
+
+	}
+
+	private final String mName;
+	private final int mVersion;
+	private final List<Field> mFields;
+	private final long mFingerprint;
+
+	/**
+	 * @param name
+	 *            binary name of the class
+	 * @param version
+	 *            version of the class
+	 * @param fields
+	 *            fields of the class, in id order
+	 */
+	public Schema(String name, int version, List<Field> fields) {
+		mName = name;
+		mVersion = version;
+		mFields = Collections.unmodifiableList(new ArrayList<>(fields));
+		mFingerprint = fingerprint(name, version, mFields);
+	}
+
+	Schema(ClassDescriptor descriptor) {
+		List<FieldDescriptor> descriptors = descriptor.getFields();
+		Field[] fields = new Field[descriptors.size()];
+
+		for (int i = 0; i < fields.length; i++)
+			fields[i] = new Field(descriptors.get(i));
+
+		mName = descriptor.getType().getName();
+		mVersion = descriptor.getAnnotation().version();
+		mFields = Collections.unmodifiableList(Arrays.asList(fields));
+		mFingerprint = fingerprint(mName, mVersion, mFields);
+	}
+
+	/**
+	 * Reads a schema written by {@link #write(DataOutput)}
+	 * 
+	 * @param in
+	 *            input to read from
+	 * @return the schema read
+	 * @throws IOException
+	 *             if in could not be read
+	 */
+	public static Schema read(DataInput in) throws IOException {
+		String name = in.readUTF();
+		int version = in.readInt();
+		int count = in.readInt();
+		List<Field> fields = new ArrayList<>(count);
+
+		for (int i = 0; i < count; i++) {
+			String fieldName = in.readUTF();
+			String typeName = in.readUTF();
+			FieldType fieldType = FieldType.valueOf(in.readUTF());
+			Primitives.Kind kind = Primitives.Kind.valueOf(in.readUTF());
+			fields.add(new Field(fieldName, typeName, fieldType, kind, in
+					.readBoolean()));
+		}
+
+		Schema schema = new Schema(name, version, fields);
+		if (schema.mFingerprint != in.readLong())
+			throw new IOException("Corrupt schema of " + name);
+
+		return schema;
+	}
+
+	/**
+	 * Writes this schema so that it can be registered elsewhere
+	 * 
+	 * @param out
+	 *            output to write to
+	 * @throws IOException
+	 *             if out could not be written
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeUTF(mName);
+		out.writeInt(mVersion);
+		out.writeInt(mFields.size());
+
+		for (Field field : mFields) {
+			out.writeUTF(field.mName);
+			out.writeUTF(field.mTypeName);
+			out.writeUTF(field.mFieldType.name());
+			out.writeUTF(field.mKind.name());
+			out.writeBoolean(field.mNullable);
+		}
+
+		out.writeLong(mFingerprint);
+	}
+
+	/**
+	 * @return binary name of the class
+	 */
+	public String getName() {
+		return mName;
+	}
+
+	public int getVersion() {
+		return mVersion;
+	}
+
+	/**
+	 * @return all fields, the index of a field being its id
+	 */
+	public List<Field> getFields() {
+		return mFields;
+	}
+
+	/**
+	 * @return 64 bit FNV-1a hash of the name, version and fields
+	 */
+	public long getFingerprint() {
+		return mFingerprint;
+	}
+
+	@Override
+	public String toString() {
+		return mName + " v" + mVersion + " #"
+				+ Long.toHexString(mFingerprint) + " " + mFields;
+	}
+
+	private static long fingerprint(String name, int version,
+			List<Field> fields) {
+		long hash = hash(FNV_OFFSET, name);
+		hash = hash(hash, Integer.toString(version));
+
+		for (Field field : fields) {
+			hash = hash(hash, field.mName);
+			hash = hash(hash, field.mTypeName);
+		}
+
+		return hash;
+	}
+
+	private static long hash(long hash, String value) {
+		for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b & 0xFF;
+			hash *= FNV_PRIME;
+		}
+
+		// Separator, so that moving characters between strings changes the hash
+		hash ^= 0xFF;
+		return hash * FNV_PRIME;
+	}
+
+}
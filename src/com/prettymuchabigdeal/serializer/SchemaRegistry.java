@@ -0,0 +1,68 @@
+package com.prettymuchabigdeal.serializer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Thread-safe lookup of {@link Schema}s by fingerprint. The default registry
+ * holds the schema of every class described in this JVM, other registries
+ * add schemas received from elsewhere and fall back to the default one.
+ * 
+ */
+public class SchemaRegistry {
+
+	private static final SchemaRegistry DEFAULT = new SchemaRegistry(null);
+
+	private final ConcurrentMap<Long, Schema> mSchemas = new ConcurrentHashMap<>();
+	private final SchemaRegistry mParent;
+
+	/**
+	 * Creates an empty registry backed by {@link #getDefault()}
+	 */
+	public SchemaRegistry() {
+		this(DEFAULT);
+	}
+
+	private SchemaRegistry(SchemaRegistry parent) {
+		mParent = parent;
+	}
+
+	/**
+	 * @return registry of all local schemas
+	 */
+	public static SchemaRegistry getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * @param schema
+	 *            schema to make available by its fingerprint
+	 */
+	public void register(Schema schema) {
+		mSchemas.putIfAbsent(schema.getFingerprint(), schema);
+	}
+
+	/**
+	 * @param clazz
+	 *            serializeable class whose schema should be registered
+	 * @return the registered schema
+	 */
+	public Schema register(Class<?> clazz) {
+		Schema schema = ClassDescriptor.forClass(clazz).getSchema();
+		register(schema);
+		return schema;
+	}
+
+	/**
+	 * @param fingerprint
+	 *            fingerprint of the schema
+	 * @return the schema, or <b>null</b> if it is not registered
+	 */
+	public Schema get(long fingerprint) {
+		Schema schema = mSchemas.get(fingerprint);
+		if (schema == null && mParent != null)
+			return mParent.get(fingerprint);
+		return schema;
+	}
+
+}
@@ -73,4 +73,16 @@ public @interface Serializable {
 	public static @interface Keep {
 	}
 
+	/**
+	 * Marks a <code>String</code> or <code>String[]</code> field whose
+	 * deserialized values should be canonicalized through the
+	 * {@link StringPool} of the {@link Serializer}, so that repeated values
+	 * share one instance. On a class, marks all such fields it declares.
+	 * 
+	 */
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target({ ElementType.FIELD, ElementType.TYPE })
+	public static @interface Dedup {
+	}
+
 }
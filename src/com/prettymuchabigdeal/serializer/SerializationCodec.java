@@ -0,0 +1,60 @@
+package com.prettymuchabigdeal.serializer;
+
+/**
+ * Serializes the fields of a single {@link Serializable} class without
+ * reflection. Implementations are generated at build time by
+ * <code>SerializableProcessor</code>, and are picked up by
+ * {@link ClassDescriptor} when they are on the classpath.<br>
+ * <br>
+ * The version of the class is handled by the {@link Serializer}, a codec is
+ * only responsible for the fields.
+ * 
+ * @param <T>
+ *            the class this codec serializes
+ */
+public interface SerializationCodec<T> {
+
+	/**
+	 * Suffix appended to the binary name of a class to get the name of its
+	 * generated codec
+	 */
+	public static final String SUFFIX = "_SerializationCodec";
+
+	/**
+	 * @return a new, empty instance of the class
+	 */
+	public T newInstance();
+
+	/**
+	 * Store all fields of object
+	 * 
+	 * @param object
+	 *            object to read fields from
+	 * @param out
+	 *            output to store fields into
+	 * @param method
+	 *            method used to store each field
+	 * @param serializer
+	 *            instance of serializer to further serialize objects
+	 */
+	public <Data> void write(T object, Data out,
+			SerializationMethod<Data> method, Serializer<Data> serializer)
+			throws Exception;
+
+	/**
+	 * Load all fields of object
+	 * 
+	 * @param object
+	 *            object to write fields into
+	 * @param in
+	 *            serialized data
+	 * @param method
+	 *            method used to load each field
+	 * @param serializer
+	 *            instance of serializer to further deserialize objects
+	 */
+	public <Data> void read(T object, Data in,
+			SerializationMethod<Data> method, Serializer<Data> serializer)
+			throws Exception;
+
+}
@@ -1,6 +1,10 @@
 package com.prettymuchabigdeal.serializer;
 
 import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -13,6 +17,12 @@ import java.util.Set;
  */
 public interface SerializationMethod<Data> {
 
+	/**
+	 * Suffix of the key the values of a map are stored under by the default
+	 * map methods, whose keys are stored under the key itself
+	 */
+	public static final String MAP_VALUES = "#values";
+
 	/**
 	 * Initial empty instance of data to be filled with class information
 	 * 
@@ -20,6 +30,19 @@ public interface SerializationMethod<Data> {
 	 */
 	public Data newData();
 
+	/**
+	 * Initial empty instance of data to hold an instance of a class. By
+	 * default calls {@link #newData()}, implementations can use the
+	 * descriptor to size the data up front.
+	 * 
+	 * @param descriptor
+	 *            descriptor of the class about to be stored
+	 * @return new instance of implementation's specific data type
+	 */
+	public default Data newData(ClassDescriptor descriptor) {
+		return newData();
+	}
+
 	/**
 	 * Store a primitive value
 	 * 
@@ -32,6 +55,126 @@ public interface SerializationMethod<Data> {
 	 */
 	public void storePrimitive(Data out, String key, Object value);
 
+	/**
+	 * Store a <code>boolean</code> value. By default boxes the value and calls
+	 * {@link #storePrimitive(Object, String, Object)}
+	 * 
+	 * @param out
+	 *            output to store primitive into
+	 * @param key
+	 *            the name associated with primitive
+	 * @param value
+	 *            actual value of primitive
+	 */
+	public default void storeBoolean(Data out, String key, boolean value) {
+		storePrimitive(out, key, value);
+	}
+
+	/**
+	 * Store a <code>byte</code> value. By default boxes the value and calls
+	 * {@link #storePrimitive(Object, String, Object)}
+	 * 
+	 * @param out
+	 *            output to store primitive into
+	 * @param key
+	 *            the name associated with primitive
+	 * @param value
+	 *            actual value of primitive
+	 */
+	public default void storeByte(Data out, String key, byte value) {
+		storePrimitive(out, key, value);
+	}
+
+	/**
+	 * Store a <code>char</code> value. By default boxes the value and calls
+	 * {@link #storePrimitive(Object, String, Object)}
+	 * 
+	 * @param out
+	 *            output to store primitive into
+	 * @param key
+	 *            the name associated with primitive
+	 * @param value
+	 *            actual value of primitive
+	 */
+	public default void storeChar(Data out, String key, char value) {
+		storePrimitive(out, key, value);
+	}
+
+	/**
+	 * Store a <code>short</code> value. By default boxes the value and calls
+	 * {@link #storePrimitive(Object, String, Object)}
+	 * 
+	 * @param out
+	 *            output to store primitive into
+	 * @param key
+	 *            the name associated with primitive
+	 * @param value
+	 *            actual value of primitive
+	 */
+	public default void storeShort(Data out, String key, short value) {
+		storePrimitive(out, key, value);
+	}
+
+	/**
+	 * Store a <code>int</code> value. By default boxes the value and calls
+	 * {@link #storePrimitive(Object, String, Object)}
+	 * 
+	 * @param out
+	 *            output to store primitive into
+	 * @param key
+	 *            the name associated with primitive
+	 * @param value
+	 *            actual value of primitive
+	 */
+	public default void storeInt(Data out, String key, int value) {
+		storePrimitive(out, key, value);
+	}
+
+	/**
+	 * Store a <code>long</code> value. By default boxes the value and calls
+	 * {@link #storePrimitive(Object, String, Object)}
+	 * 
+	 * @param out
+	 *            output to store primitive into
+	 * @param key
+	 *            the name associated with primitive
+	 * @param value
+	 *            actual value of primitive
+	 */
+	public default void storeLong(Data out, String key, long value) {
+		storePrimitive(out, key, value);
+	}
+
+	/**
+	 * Store a <code>float</code> value. By default boxes the value and calls
+	 * {@link #storePrimitive(Object, String, Object)}
+	 * 
+	 * @param out
+	 *            output to store primitive into
+	 * @param key
+	 *            the name associated with primitive
+	 * @param value
+	 *            actual value of primitive
+	 */
+	public default void storeFloat(Data out, String key, float value) {
+		storePrimitive(out, key, value);
+	}
+
+	/**
+	 * Store a <code>double</code> value. By default boxes the value and calls
+	 * {@link #storePrimitive(Object, String, Object)}
+	 * 
+	 * @param out
+	 *            output to store primitive into
+	 * @param key
+	 *            the name associated with primitive
+	 * @param value
+	 *            actual value of primitive
+	 */
+	public default void storeDouble(Data out, String key, double value) {
+		storePrimitive(out, key, value);
+	}
+
 	/**
 	 * Store a serializeable object
 	 * 
@@ -74,6 +217,102 @@ public interface SerializationMethod<Data> {
 	public void storeSerializeableArray(Data out, String key, Object array,
 			Serializer<Data> serializer);
 
+	/**
+	 * Store a collection of primitives. By default copies it into an array,
+	 * unboxed if it holds no <b>null</b>, and calls
+	 * {@link #storePrimitiveArray(Object, String, Object)}
+	 * 
+	 * @param out
+	 *            output to store collection into
+	 * @param key
+	 *            the name associated with collection
+	 * @param collection
+	 *            the collection, may be <b>null</b>
+	 * @param elementType
+	 *            boxed primitive type or String of the elements
+	 */
+	public default void storePrimitiveCollection(Data out, String key,
+			Collection<?> collection, Class<?> elementType) {
+		storePrimitiveArray(out, key, collection == null ? null
+				: Primitives.toArray(collection, elementType));
+	}
+
+	/**
+	 * Store a collection of serializeable objects. By default copies it into
+	 * an array and calls
+	 * {@link #storeSerializeableArray(Object, String, Object, Serializer)}
+	 * 
+	 * @param out
+	 *            output to store collection into
+	 * @param key
+	 *            the name associated with collection
+	 * @param collection
+	 *            the collection, may be <b>null</b>
+	 * @param serializer
+	 *            instace of serializer to further serialize elements
+	 */
+	public default void storeSerializeableCollection(Data out, String key,
+			Collection<?> collection, Serializer<Data> serializer) {
+		storeSerializeableArray(out, key,
+				collection == null ? null : collection.toArray(), serializer);
+	}
+
+	/**
+	 * Store a map of primitives. Keys are stored as Strings. By default
+	 * stores the keys as an array under key and the values, as
+	 * {@link #storePrimitiveCollection(Object, String, Collection, Class)}
+	 * does, under key followed by {@link #MAP_VALUES}
+	 * 
+	 * @param out
+	 *            output to store map into
+	 * @param key
+	 *            the name associated with map
+	 * @param map
+	 *            the map, may be <b>null</b>
+	 * @param valueType
+	 *            boxed primitive type or String of the values
+	 */
+	public default void storePrimitiveMap(Data out, String key,
+			Map<?, ?> map, Class<?> valueType) {
+		if (map == null) {
+			storePrimitiveArray(out, key, null);
+			return;
+		}
+
+		List<Object> values = new ArrayList<>(map.size());
+		storePrimitiveArray(out, key, Primitives.split(map, values));
+		storePrimitiveArray(out, key + MAP_VALUES,
+				Primitives.toArray(values, valueType));
+	}
+
+	/**
+	 * Store a map of serializeable objects. Keys are stored as Strings. By
+	 * default stores the keys as an array under key and the values with
+	 * {@link #storeSerializeableArray(Object, String, Object, Serializer)}
+	 * under key followed by {@link #MAP_VALUES}
+	 * 
+	 * @param out
+	 *            output to store map into
+	 * @param key
+	 *            the name associated with map
+	 * @param map
+	 *            the map, may be <b>null</b>
+	 * @param serializer
+	 *            instace of serializer to further serialize values
+	 */
+	public default void storeSerializeableMap(Data out, String key,
+			Map<?, ?> map, Serializer<Data> serializer) {
+		if (map == null) {
+			storePrimitiveArray(out, key, null);
+			return;
+		}
+
+		List<Object> values = new ArrayList<>(map.size());
+		storePrimitiveArray(out, key, Primitives.split(map, values));
+		storeSerializeableArray(out, key + MAP_VALUES, values.toArray(),
+				serializer);
+	}
+
 	/**
 	 * Set of all top level keys in data
 	 * 
@@ -83,6 +322,33 @@ public interface SerializationMethod<Data> {
 	 */
 	public Set<String> getKeys(Data data);
 
+	/**
+	 * Determines if a key is present in data. By default looks the key up in
+	 * {@link #getKeys(Object)}
+	 * 
+	 * @param data
+	 *            data to probe
+	 * @param key
+	 *            the key to look for
+	 * @return <b>true</b> if a value is stored under key
+	 */
+	public default boolean hasKey(Data data, String key) {
+		return getKeys(data).contains(key);
+	}
+
+	/**
+	 * Determines how a {@link Serializer} finds the fields present in data.
+	 * Formats that keep keys in the order they were stored are read by
+	 * walking {@link #getKeys(Object)}, all others by probing each field of
+	 * the class with {@link #hasKey(Object, String)}.
+	 * 
+	 * @return <b>true</b> if {@link #getKeys(Object)} iterates in the order
+	 *         the keys were stored, by default <b>false</b>
+	 */
+	public default boolean preservesOrder() {
+		return false;
+	}
+
 	/**
 	 * @param in
 	 *            serialized data
@@ -92,6 +358,118 @@ public interface SerializationMethod<Data> {
 	 */
 	public Object loadPrimitive(Data in, String key);
 
+	/**
+	 * Load a <code>boolean</code> value. By default converts the result of
+	 * {@link #loadPrimitive(Object, String)}
+	 * 
+	 * @param in
+	 *            serialized data
+	 * @param key
+	 *            the key to load from
+	 * @return primitive stored in key
+	 */
+	public default boolean loadBoolean(Data in, String key) {
+		return Primitives.toBoolean(loadPrimitive(in, key));
+	}
+
+	/**
+	 * Load a <code>byte</code> value. By default converts the result of
+	 * {@link #loadPrimitive(Object, String)}
+	 * 
+	 * @param in
+	 *            serialized data
+	 * @param key
+	 *            the key to load from
+	 * @return primitive stored in key
+	 */
+	public default byte loadByte(Data in, String key) {
+		return Primitives.toByte(loadPrimitive(in, key));
+	}
+
+	/**
+	 * Load a <code>char</code> value. By default converts the result of
+	 * {@link #loadPrimitive(Object, String)}
+	 * 
+	 * @param in
+	 *            serialized data
+	 * @param key
+	 *            the key to load from
+	 * @return primitive stored in key
+	 */
+	public default char loadChar(Data in, String key) {
+		return Primitives.toChar(loadPrimitive(in, key));
+	}
+
+	/**
+	 * Load a <code>short</code> value. By default converts the result of
+	 * {@link #loadPrimitive(Object, String)}
+	 * 
+	 * @param in
+	 *            serialized data
+	 * @param key
+	 *            the key to load from
+	 * @return primitive stored in key
+	 */
+	public default short loadShort(Data in, String key) {
+		return Primitives.toShort(loadPrimitive(in, key));
+	}
+
+	/**
+	 * Load a <code>int</code> value. By default converts the result of
+	 * {@link #loadPrimitive(Object, String)}
+	 * 
+	 * @param in
+	 *            serialized data
+	 * @param key
+	 *            the key to load from
+	 * @return primitive stored in key
+	 */
+	public default int loadInt(Data in, String key) {
+		return Primitives.toInt(loadPrimitive(in, key));
+	}
+
+	/**
+	 * Load a <code>long</code> value. By default converts the result of
+	 * {@link #loadPrimitive(Object, String)}
+	 * 
+	 * @param in
+	 *            serialized data
+	 * @param key
+	 *            the key to load from
+	 * @return primitive stored in key
+	 */
+	public default long loadLong(Data in, String key) {
+		return Primitives.toLong(loadPrimitive(in, key));
+	}
+
+	/**
+	 * Load a <code>float</code> value. By default converts the result of
+	 * {@link #loadPrimitive(Object, String)}
+	 * 
+	 * @param in
+	 *            serialized data
+	 * @param key
+	 *            the key to load from
+	 * @return primitive stored in key
+	 */
+	public default float loadFloat(Data in, String key) {
+		return Primitives.toFloat(loadPrimitive(in, key));
+	}
+
+	/**
+	 * Load a <code>double</code> value. By default converts the result of
+	 * {@link #loadPrimitive(Object, String)}
+	 * 
+	 * @param in
+	 *            serialized data
+	 * @param key
+	 *            the key to load from
+	 * @return primitive stored in key
+	 */
+	public default double loadDouble(Data in, String key) {
+		return Primitives.toDouble(loadPrimitive(in, key));
+	}
+
 	/**
 	 * @param in
 	 *            serialized data
@@ -131,4 +509,116 @@ public interface SerializationMethod<Data> {
 	public Object loadSerializeableArray(Data in, String key,
 			Serializer<Data> serializer, Class<?> clazz);
 
+	/**
+	 * Load a collection of primitives. By default loads an array of
+	 * elementType with {@link #loadPrimitiveArray(Object, String, Class)}
+	 * and adds its elements to into.
+	 * 
+	 * @param in
+	 *            serialized data
+	 * @param key
+	 *            the key to load from
+	 * @param elementType
+	 *            boxed primitive type or String of the elements
+	 * @param into
+	 *            empty collection to add the elements to
+	 * @return into, or <b>null</b> if a <b>null</b> collection was stored
+	 */
+	public default Collection<Object> loadPrimitiveCollection(Data in,
+			String key, Class<?> elementType, Collection<Object> into) {
+		Object array = loadPrimitiveArray(in, key, elementType);
+		if (array == null)
+			return null;
+
+		for (int i = 0; i < Array.getLength(array); i++)
+			into.add(Primitives.coerce(Array.get(array, i), elementType));
+		return into;
+	}
+
+	/**
+	 * Load a collection of serializeable objects. By default loads an array
+	 * with {@link #loadSerializeableArray(Object, String, Serializer, Class)}
+	 * and adds its elements to into.
+	 * 
+	 * @param in
+	 *            serialized data
+	 * @param key
+	 *            the key to load from
+	 * @param serializer
+	 *            instance of serializer to further deserialize elements
+	 * @param elementType
+	 *            the class of the elements
+	 * @param into
+	 *            empty collection to add the elements to
+	 * @return into, or <b>null</b> if a <b>null</b> collection was stored
+	 */
+	public default Collection<Object> loadSerializeableCollection(Data in,
+			String key, Serializer<Data> serializer, Class<?> elementType,
+			Collection<Object> into) {
+		Object array = loadSerializeableArray(in, key, serializer,
+				elementType);
+		if (array == null)
+			return null;
+
+		for (int i = 0; i < Array.getLength(array); i++)
+			into.add(Array.get(array, i));
+		return into;
+	}
+
+	/**
+	 * Load a map of primitives. By default loads the arrays stored by
+	 * {@link #storePrimitiveMap(Object, String, Map, Class)}
+	 * 
+	 * @param in
+	 *            serialized data
+	 * @param key
+	 *            the key to load from
+	 * @param keyType
+	 *            boxed primitive type or String the keys are converted to
+	 * @param valueType
+	 *            boxed primitive type or String of the values
+	 * @param into
+	 *            empty map to put the entries into
+	 * @return into, or <b>null</b> if a <b>null</b> map was stored
+	 */
+	public default Map<Object, Object> loadPrimitiveMap(Data in, String key,
+			Class<?> keyType, Class<?> valueType, Map<Object, Object> into) {
+		Object keys = loadPrimitiveArray(in, key, String.class);
+		if (keys == null)
+			return null;
+
+		Object values = loadPrimitiveArray(in, key + MAP_VALUES, valueType);
+		return Primitives.zip(keys, values, keyType, valueType, into);
+	}
+
+	/**
+	 * Load a map of serializeable objects. By default loads the arrays stored
+	 * by {@link #storeSerializeableMap(Object, String, Map, Serializer)}
+	 * 
+	 * @param in
+	 *            serialized data
+	 * @param key
+	 *            the key to load from
+	 * @param serializer
+	 *            instance of serializer to further deserialize values
+	 * @param keyType
+	 *            boxed primitive type or String the keys are converted to
+	 * @param valueType
+	 *            the class of the values
+	 * @param into
+	 *            empty map to put the entries into
+	 * @return into, or <b>null</b> if a <b>null</b> map was stored
+	 */
+	public default Map<Object, Object> loadSerializeableMap(Data in,
+			String key, Serializer<Data> serializer, Class<?> keyType,
+			Class<?> valueType, Map<Object, Object> into) {
+		Object keys = loadPrimitiveArray(in, key, String.class);
+		if (keys == null)
+			return null;
+
+		Object values = loadSerializeableArray(in, key + MAP_VALUES,
+				serializer, valueType);
+		return Primitives.zip(keys, values, keyType, null, into);
+	}
+
 }
@@ -0,0 +1,173 @@
+package com.prettymuchabigdeal.serializer;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.prettymuchabigdeal.serializer.except.DifferentVersionException;
+
+/**
+ * Pull based counterpart of {@link SerializationWriter}. A {@link Serializer}
+ * asks the reader for one token at a time and binds values directly into
+ * objects as they arrive, without an intermediate Data tree.<br>
+ * <br>
+ * An object is read as
+ * 
+ * <pre>
+ * beginObject(descriptor)
+ * while ((field = nextField(descriptor)) != null)
+ *     value
+ * </pre>
+ * 
+ * where each value is either <b>null</b>, checked with {@link #nextNull()}, a
+ * single <code>read</code> call, a nested object, an array or collection read
+ * as {@link #beginArray()}, {@link #hasNext()} before each element, and
+ * {@link #endArray()}, or a map read as {@link #beginMap()} and
+ * {@link #nextKey()} before each value.
+ * 
+ */
+public interface SerializationReader {
+
+	/**
+	 * Starts reading an object
+	 * 
+	 * @param descriptor
+	 *            descriptor of the expected class
+	 * @throws DifferentVersionException
+	 *             if the format records the version up front, and it differs
+	 *             from the version of the class
+	 */
+	public void beginObject(ClassDescriptor descriptor) throws IOException,
+			DifferentVersionException;
+
+	/**
+	 * Advances to the next field of the current object. Members that do not
+	 * belong to a field of the class are skipped.
+	 * 
+	 * @param descriptor
+	 *            descriptor of the class being read
+	 * @return the field whose value follows, or <b>null</b> once the object
+	 *         has ended
+	 * @throws DifferentVersionException
+	 *             if the serialized version differs from the version of the
+	 *             class
+	 */
+	public FieldDescriptor nextField(ClassDescriptor descriptor)
+			throws IOException, DifferentVersionException;
+
+	/**
+	 * Starts reading an array
+	 * 
+	 * @return number of elements in the array, or <b>-1</b> if the format does
+	 *         not know it up front
+	 */
+	public int beginArray() throws IOException;
+
+	/**
+	 * @return <b>true</b> if the current array has another element
+	 */
+	public boolean hasNext() throws IOException;
+
+	/**
+	 * Ends the current array, once {@link #hasNext()} returned <b>false</b>
+	 */
+	public void endArray() throws IOException;
+
+	/**
+	 * Starts reading a map
+	 * 
+	 * @return number of entries in the map, or <b>-1</b> if the format does
+	 *         not know it up front
+	 */
+	public int beginMap() throws IOException;
+
+	/**
+	 * Advances to the next entry of the current map
+	 * 
+	 * @return the key of the entry whose value follows, or <b>null</b> once
+	 *         the map has ended
+	 */
+	public String nextKey() throws IOException;
+
+	/**
+	 * Consumes the next value if it is <b>null</b>
+	 * 
+	 * @return <b>true</b> if the next value was <b>null</b>
+	 */
+	public boolean nextNull() throws IOException;
+
+	public boolean readBoolean() throws IOException;
+
+	public byte readByte() throws IOException;
+
+	public char readChar() throws IOException;
+
+	public short readShort() throws IOException;
+
+	public int readInt() throws IOException;
+
+	public long readLong() throws IOException;
+
+	public float readFloat() throws IOException;
+
+	public double readDouble() throws IOException;
+
+	public String readString() throws IOException;
+
+	/**
+	 * Reads a value of a primitive field, boxed
+	 * 
+	 * @param type
+	 *            a primitive type, boxed primitive type, or String
+	 * @return the value as type
+	 */
+	public default Object readPrimitive(Class<?> type) throws IOException {
+		switch (Primitives.Kind.of(Primitives.unbox(type))) {
+		case BOOLEAN:
+			return readBoolean();
+		case BYTE:
+			return readByte();
+		case CHAR:
+			return readChar();
+		case SHORT:
+			return readShort();
+		case INT:
+			return readInt();
+		case LONG:
+			return readLong();
+		case FLOAT:
+			return readFloat();
+		case DOUBLE:
+			return readDouble();
+		default:
+			return readString();
+		}
+	}
+
+	/**
+	 * Reads an entire array of primitives. By default reads it element by
+	 * element between {@link #beginArray()} and {@link #endArray()}.
+	 * 
+	 * @param componentType
+	 *            the class of the primitive in the array
+	 * @return array of componentType
+	 * @see Array
+	 */
+	public default Object readPrimitiveArray(Class<?> componentType)
+			throws IOException {
+		List<Object> values = new ArrayList<>();
+
+		beginArray();
+		while (hasNext())
+			values.add(nextNull() ? null : readPrimitive(componentType));
+		endArray();
+
+		Object array = Array.newInstance(componentType, values.size());
+		for (int i = 0; i < values.size(); i++)
+			Array.set(array, i, values.get(i));
+
+		return array;
+	}
+
+}
@@ -0,0 +1,154 @@
+package com.prettymuchabigdeal.serializer;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.lang.reflect.Array;
+
+/**
+ * Push based alternative to {@link SerializationMethod}. Instead of building
+ * an in-memory tree, a {@link Serializer} emits events as it walks an object,
+ * and the writer encodes them straight to its output. Memory used is bounded
+ * by the nesting depth of the object, not by the size of the output.<br>
+ * <br>
+ * An object is written as
+ * 
+ * <pre>
+ * beginObject(descriptor)
+ *     field(a) value
+ *     field(b) value
+ * endObject()
+ * </pre>
+ * 
+ * where each value is a single <code>write</code> call, a nested object, an
+ * array or collection written as <code>beginArray(length)</code>, its
+ * elements, and <code>endArray()</code>, or a map written as
+ * <code>beginMap(size)</code>, a <code>key(key)</code> and value per entry,
+ * and <code>endMap()</code>.
+ * 
+ */
+public interface SerializationWriter extends Flushable {
+
+	/**
+	 * Starts an object. Writers are responsible for recording the version of
+	 * the class when {@link Serializable#includeVersion()} is set.
+	 * 
+	 * @param descriptor
+	 *            descriptor of the object's class
+	 */
+	public void beginObject(ClassDescriptor descriptor) throws IOException;
+
+	/**
+	 * Starts a field of the current object, followed by exactly one value
+	 * 
+	 * @param field
+	 *            the field about to be written
+	 */
+	public void field(FieldDescriptor field) throws IOException;
+
+	/**
+	 * Ends the current object
+	 */
+	public void endObject() throws IOException;
+
+	/**
+	 * Starts an array, followed by exactly length values
+	 * 
+	 * @param length
+	 *            number of elements in the array
+	 */
+	public void beginArray(int length) throws IOException;
+
+	/**
+	 * Ends the current array
+	 */
+	public void endArray() throws IOException;
+
+	/**
+	 * Starts a map, followed by exactly size entries, each a key and one
+	 * value
+	 * 
+	 * @param size
+	 *            number of entries in the map
+	 */
+	public void beginMap(int size) throws IOException;
+
+	/**
+	 * Starts an entry of the current map, followed by exactly one value
+	 * 
+	 * @param key
+	 *            key of the entry, as a String
+	 */
+	public void key(String key) throws IOException;
+
+	/**
+	 * Ends the current map
+	 */
+	public void endMap() throws IOException;
+
+	public void writeNull() throws IOException;
+
+	public void writeBoolean(boolean value) throws IOException;
+
+	public void writeByte(byte value) throws IOException;
+
+	public void writeChar(char value) throws IOException;
+
+	public void writeShort(short value) throws IOException;
+
+	public void writeInt(int value) throws IOException;
+
+	public void writeLong(long value) throws IOException;
+
+	public void writeFloat(float value) throws IOException;
+
+	public void writeDouble(double value) throws IOException;
+
+	public void writeString(String value) throws IOException;
+
+	/**
+	 * Writes a boxed primitive or String
+	 * 
+	 * @param value
+	 *            the value, may be <b>null</b>
+	 */
+	public default void writePrimitive(Object value) throws IOException {
+		if (value == null)
+			writeNull();
+		else if (value instanceof Integer)
+			writeInt((Integer) value);
+		else if (value instanceof Long)
+			writeLong((Long) value);
+		else if (value instanceof Double)
+			writeDouble((Double) value);
+		else if (value instanceof Boolean)
+			writeBoolean((Boolean) value);
+		else if (value instanceof Float)
+			writeFloat((Float) value);
+		else if (value instanceof Short)
+			writeShort((Short) value);
+		else if (value instanceof Byte)
+			writeByte((Byte) value);
+		else if (value instanceof Character)
+			writeChar((Character) value);
+		else
+			writeString(value.toString());
+	}
+
+	/**
+	 * Writes an entire array of primitives. By default writes it element by
+	 * element between {@link #beginArray(int)} and {@link #endArray()}.
+	 * 
+	 * @param array
+	 *            object representation of array
+	 * @see Array
+	 */
+	public default void writePrimitiveArray(Object array) throws IOException {
+		int length = Array.getLength(array);
+
+		beginArray(length);
+		for (int i = 0; i < length; i++)
+			writePrimitive(Array.get(array, i));
+		endArray();
+	}
+
+}
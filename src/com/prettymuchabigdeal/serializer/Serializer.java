@@ -1,51 +1,248 @@
 package com.prettymuchabigdeal.serializer;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
 
-import com.prettymuchabigdeal.serializer.Serializable.Ignore;
-import com.prettymuchabigdeal.serializer.Serializable.Keep;
 import com.prettymuchabigdeal.serializer.except.ClassNotSerializeableException;
 import com.prettymuchabigdeal.serializer.except.DifferentVersionException;
 
 public class Serializer<Data> {
 
 	/**
-	 * Types of fields as used by {@link SerializationMethod}
-	 * 
-	 * @author Tyler
-	 * 
+	 * Version string used if version is included in output
 	 */
-	private static enum FieldType {
-		PRIMITIVE, SERIALIZEABLE, PRIMITVE_ARRAY, SERIALIZEABLE_ARRAY
-	}
+	public static final String VERSION = "serial_version";
 
 	/**
-	 * Version string used if version is included in output
+	 * Key of the id of an object, if references are tracked
+	 */
+	public static final String ID = "@id";
+
+	/**
+	 * Key of the id of an object stored before, stored in its place if
+	 * references are tracked
 	 */
-	private static final String VERSION = "serial_version";
+	public static final String REFERENCE = "@ref";
 
 	/**
-	 * Boxed object versions of primitives
+	 * Objects a graph is expected to hold when references are tracked
 	 */
-	private static final Class<?>[] PRIMITIVE_OBJECTS = { Boolean.class,
-			Byte.class, Character.class, Short.class, Integer.class,
-			Float.class, Long.class, Double.class, String.class };
+	private static final int EXPECTED_REFERENCES = 1024;
 
 	/**
 	 * The current method used for this serializer
 	 */
 	private SerializationMethod<Data> mMethod;
 
+	/**
+	 * Pool that values of {@link Serializable.Dedup} fields are
+	 * canonicalized through
+	 */
+	private StringPool mStringPool = StringPool.getDefault();
+
+	/**
+	 * Whether objects met more than once are stored as references
+	 */
+	private boolean mTrackReferences;
+
+	/**
+	 * Objects met so far by the serialization or deserialization running on
+	 * each thread, while references are tracked
+	 */
+	private final ThreadLocal<References> mReferences = new ThreadLocal<>();
+
+	/**
+	 * Whether object graphs are walked with an explicit stack instead of by
+	 * recursion
+	 */
+	private boolean mIterative;
+
+	/**
+	 * Data of every object stored so far by the iterative walk running on
+	 * each thread
+	 */
+	private final ThreadLocal<Map<Object, Data>> mStored = new ThreadLocal<>();
+
+	/**
+	 * Objects created by the iterative walk running on each thread whose
+	 * fields are still to be loaded
+	 */
+	private final ThreadLocal<ArrayDeque<Pending>> mPending = new ThreadLocal<>();
+
+	/**
+	 * Length from which the elements of serializeable arrays are processed in
+	 * parallel, or {@link Integer#MAX_VALUE} to never split them
+	 */
+	private int mParallelThreshold = Integer.MAX_VALUE;
+
+	/**
+	 * Pool that elements of serializeable arrays are processed in
+	 */
+	private ForkJoinPool mPool = ForkJoinPool.commonPool();
+
+	/**
+	 * Executor that batches are run on, or <b>null</b> for {@link #mPool}
+	 */
+	private Executor mExecutor;
+
 	public Serializer(SerializationMethod<Data> method) {
 		mMethod = method;
 	}
 
+	/**
+	 * @return pool that values of {@link Serializable.Dedup} fields are
+	 *         canonicalized through
+	 */
+	public StringPool getStringPool() {
+		return mStringPool;
+	}
+
+	/**
+	 * @param pool
+	 *            pool that values of {@link Serializable.Dedup} fields should
+	 *            be canonicalized through, {@link StringPool#getDefault()}
+	 *            unless set
+	 */
+	public void setStringPool(StringPool pool) {
+		mStringPool = pool;
+	}
+
+	/**
+	 * @return <b>true</b> if objects met more than once are stored as
+	 *         references
+	 */
+	public boolean isTrackingReferences() {
+		return mTrackReferences;
+	}
+
+	/**
+	 * Enables reference tracking. The first time an object is met it is
+	 * stored with an id under {@link #ID}, every other time only that id is
+	 * stored under {@link #REFERENCE}. Objects shared within a graph are
+	 * stored once and are shared again once loaded, and cycles no longer
+	 * recurse forever. Data must be loaded by a serializer tracking
+	 * references too. Only Data trees are tracked, not
+	 * {@link SerializationWriter}s and {@link SerializationReader}s.
+	 * 
+	 * @param track
+	 *            <b>true</b> to track references, off by default
+	 */
+	public void setTrackReferences(boolean track) {
+		mTrackReferences = track;
+	}
+
+	/**
+	 * @return <b>true</b> if object graphs are walked with an explicit stack
+	 */
+	public boolean isIterative() {
+		return mIterative;
+	}
+
+	/**
+	 * Walks object graphs with an explicit stack on the heap instead of by
+	 * recursion, so that nesting depth is no longer bounded by the thread
+	 * stack. Works with any {@link SerializationMethod}: objects are stored
+	 * children first, so that the nested {@link #trySerialize(Object)} calls
+	 * of a method only look up Data already stored, and loaded parents
+	 * first, so that the nested {@link #tryDeserialize(Class, Object)} calls
+	 * only create objects whose fields are loaded later. Errors in nested
+	 * objects fail the whole call instead of leaving their field
+	 * <b>null</b>. Cycles are reported rather than recursing forever.
+	 * Classes created through a constructor taking their fields are still
+	 * created as they are met, and neither streams nor
+	 * {@link #setTrackReferences(boolean) reference tracking} are supported.<br>
+	 * <br>
+	 * Only the walk itself is freed from the thread stack. Binary Data of any
+	 * depth can be written out, but a JSONObject nested deeper than the
+	 * thread stack allows can not be turned into text, as its
+	 * <code>toString</code> and <code>write</code> recurse. Such Data can
+	 * still be loaded back by this serializer.
+	 * 
+	 * @param iterative
+	 *            <b>true</b> to walk with an explicit stack, off by default
+	 */
+	public void setIterative(boolean iterative) {
+		mIterative = iterative;
+	}
+
+	/**
+	 * @return length from which the elements of serializeable arrays are
+	 *         processed in parallel
+	 */
+	public int getParallelThreshold() {
+		return mParallelThreshold;
+	}
+
+	/**
+	 * Splits serializeable arrays holding at least threshold elements across
+	 * the {@link #getPool() pool}, each element still being serialized and
+	 * deserialized on its own. Elements keep their order in the output.
+	 * Arrays are never split while references are tracked or graphs are
+	 * walked iteratively, as both follow a whole graph on one thread.
+	 * 
+	 * @param threshold
+	 *            smallest length to split, {@link Integer#MAX_VALUE} by
+	 *            default so that arrays are never split
+	 * @throws IllegalArgumentException
+	 *             if threshold is less than 2
+	 */
+	public void setParallelThreshold(int threshold) {
+		if (threshold < 2)
+			throw new IllegalArgumentException(
+					"Threshold must be at least 2: " + threshold);
+		mParallelThreshold = threshold;
+	}
+
+	/**
+	 * @return pool that large serializeable arrays are processed in
+	 */
+	public ForkJoinPool getPool() {
+		return mPool;
+	}
+
+	/**
+	 * @param pool
+	 *            pool that large serializeable arrays are processed in, the
+	 *            common pool by default
+	 */
+	public void setPool(ForkJoinPool pool) {
+		mPool = pool;
+	}
+
+	/**
+	 * @return executor that batches are run on
+	 */
+	public Executor getExecutor() {
+		return mExecutor != null ? mExecutor : mPool;
+	}
+
+	/**
+	 * @param executor
+	 *            executor that batches are run on, or <b>null</b> to run them
+	 *            on the {@link #getPool() pool}
+	 */
+	public void setExecutor(Executor executor) {
+		mExecutor = executor;
+	}
+
 	/**
 	 * Attempts to serialize object. Should be annotated with
 	 * {@link Serializable}
@@ -77,34 +274,98 @@ public class Serializer<Data> {
 	 *             if an unexpected reflection error occurred
 	 */
 	public Data serialize(Object object) throws Exception {
-		Serializable annotation = getAnnotation(object.getClass());
+		if (mIterative)
+			return serializeIterative(object);
+		if (!mTrackReferences)
+			return write(object, -1);
 
-		Map<String, Field> fields = getFields(object.getClass(),
-				annotation.autoIgnore());
+		References references = mReferences.get();
+		boolean root = references == null;
+		if (root) {
+			references = new References(EXPECTED_REFERENCES);
+			mReferences.set(references);
+		}
+
+		try {
+			int id = references.add(object);
+			if (id < 0)
+				return write(object, -id - 1);
 
-		Data data = mMethod.newData();
+			Data data = mMethod.newData();
+			mMethod.storeInt(data, REFERENCE, id);
+			return data;
+		} finally {
+			if (root)
+				mReferences.remove();
+		}
+	}
+
+	/**
+	 * Stores an object, and recursively all objects it references, into a
+	 * new Data
+	 * 
+	 * @param object
+	 *            object to serialize
+	 * @param id
+	 *            id of the object, or <b>-1</b> if references are not tracked
+	 * @return serialized object in Data format
+	 */
+	private Data write(Object object, int id) throws Exception {
+		ClassDescriptor descriptor = ClassDescriptor.forClass(object
+				.getClass());
+		Serializable annotation = descriptor.getAnnotation();
+
+		Data data = mMethod.newData(descriptor);
 
 		if (annotation.includeVersion())
 			mMethod.storePrimitive(data, VERSION, annotation.version());
 
-		for (Entry<String, Field> e : fields.entrySet()) {
+		if (id >= 0)
+			mMethod.storeInt(data, ID, id);
 
-			String name = e.getKey();
-			Object value = e.getValue().get(object);
+		SerializationCodec<Object> codec = codec(descriptor);
+		if (codec != null) {
+			codec.write(object, data, mMethod, this);
+			return data;
+		}
 
-			switch (getFieldType(e.getValue())) {
+		for (FieldDescriptor field : descriptor.getFields()) {
+
+			String name = field.getName();
+
+			switch (field.getFieldType()) {
 
 			case PRIMITIVE:
-				mMethod.storePrimitive(data, name, value);
+				storePrimitive(data, field, object);
 				break;
 			case PRIMITVE_ARRAY:
-				mMethod.storePrimitiveArray(data, name, value);
+				mMethod.storePrimitiveArray(data, name, field.getAccessor()
+						.get(object));
 				break;
 			case SERIALIZEABLE:
-				mMethod.storeSerializeable(data, name, value, this);
+				mMethod.storeSerializeable(data, name, field.getAccessor()
+						.get(object), this);
 				break;
 			case SERIALIZEABLE_ARRAY:
-				mMethod.storeSerializeableArray(data, name, value, this);
+				mMethod.storeSerializeableArray(data, name, field
+						.getAccessor().get(object), this);
+				break;
+			case PRIMITIVE_COLLECTION:
+				mMethod.storePrimitiveCollection(data, name,
+						(Collection<?>) field.getAccessor().get(object),
+						field.getComponentType());
+				break;
+			case SERIALIZEABLE_COLLECTION:
+				mMethod.storeSerializeableCollection(data, name,
+						(Collection<?>) field.getAccessor().get(object), this);
+				break;
+			case PRIMITIVE_MAP:
+				mMethod.storePrimitiveMap(data, name, (Map<?, ?>) field
+						.getAccessor().get(object), field.getComponentType());
+				break;
+			case SERIALIZEABLE_MAP:
+				mMethod.storeSerializeableMap(data, name, (Map<?, ?>) field
+						.getAccessor().get(object), this);
 				break;
 
 			}
@@ -115,6 +376,28 @@ public class Serializer<Data> {
 
 	}
 
+	/**
+	 * Serializes object straight to a writer, without building an
+	 * intermediate Data tree. Fields that are <b>null</b> are left out, as
+	 * they are by {@link SerializationMethod}s.
+	 * 
+	 * @param object
+	 *            object to serialize
+	 * @param out
+	 *            writer to emit the object to, flushed once the object is
+	 *            complete
+	 * @throws ClassNotSerializeableException
+	 *             if class is not annotated with {@link Serializable}
+	 * @throws Exception
+	 *             if an unexpected reflection or output error occurred
+	 */
+	public void serialize(Object object, SerializationWriter out)
+			throws Exception {
+		checkUntracked();
+		writeObject(object, out);
+		out.flush();
+	}
+
 	/**
 	 * Attempts to deserialize data into class
 	 * 
@@ -133,6 +416,243 @@ public class Serializer<Data> {
 		}
 	}
 
+	/**
+	 * Attempts to serialize each element of an array, in parallel if it holds
+	 * at least {@link #getParallelThreshold()} elements. Used by
+	 * {@link SerializationMethod}s for serializeable arrays.
+	 * 
+	 * @param elements
+	 *            objects to serialize, may hold <b>null</b>
+	 * @return serialized element at each index, <b>null</b> for a null
+	 *         element or if there was an error
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Data> trySerializeElements(final Object[] elements) {
+		final Object[] results = new Object[elements.length];
+
+		run(new Slice(0, elements.length) {
+			@Override
+			void process(int index) {
+				Object element = elements[index];
+				if (element != null)
+					results[index] = trySerialize(element);
+			}
+		});
+		return (List<Data>) Arrays.asList(results);
+	}
+
+	/**
+	 * Attempts to deserialize each element of an array, in parallel if it
+	 * holds at least {@link #getParallelThreshold()} elements. Used by
+	 * {@link SerializationMethod}s for serializeable arrays.
+	 * 
+	 * @param clazz
+	 *            class of the elements
+	 * @param data
+	 *            serialized elements, may hold <b>null</b>
+	 * @param into
+	 *            array set to the deserialized element at each index,
+	 *            <b>null</b> for a null element or if an error occurred
+	 */
+	public void tryDeserializeElements(final Class<?> clazz,
+			final List<Data> data, final Object[] into) {
+		run(new Slice(0, data.size()) {
+			@Override
+			void process(int index) {
+				Data element = data.get(index);
+				if (element != null)
+					into[index] = tryDeserialize(clazz, element);
+			}
+		});
+	}
+
+	/**
+	 * Serializes every object of a batch, in parallel on the
+	 * {@link #getExecutor() executor}. Objects of a class all share its
+	 * cached {@link ClassDescriptor}, and each object fails on its own.
+	 * 
+	 * @param objects
+	 *            objects to serialize, may hold <b>null</b>
+	 * @return result of each object, in the order of objects
+	 */
+	public List<BatchResult<Data>> serializeAll(Object[] objects) {
+		final Object[] items = objects;
+		final List<BatchResult<Data>> results = newResults(items.length);
+
+		runAll(items.length, new Batch() {
+			@Override
+			void process(int index) {
+				Data data = null;
+				Exception error = null;
+				try {
+					if (items[index] != null)
+						data = serialize(items[index]);
+				} catch (Exception e) {
+					error = e;
+				}
+				results.set(index, new BatchResult<>(index, data, error));
+			}
+		});
+		return results;
+	}
+
+	/**
+	 * @see #serializeAll(Object[])
+	 */
+	public List<BatchResult<Data>> serializeAll(Collection<?> objects) {
+		return serializeAll(objects.toArray());
+	}
+
+	/**
+	 * Collects a stream, keeping its encounter order if it has one
+	 * 
+	 * @see #serializeAll(Object[])
+	 */
+	public List<BatchResult<Data>> serializeAll(Stream<?> objects) {
+		return serializeAll(objects.toArray());
+	}
+
+	/**
+	 * Deserializes every item of a batch into class, in parallel on the
+	 * {@link #getExecutor() executor}
+	 * 
+	 * @param clazz
+	 *            class of every item
+	 * @param data
+	 *            items to deserialize, may hold <b>null</b>
+	 * @return result of each item, in the order of data
+	 */
+	public <T> List<BatchResult<T>> deserializeAll(final Class<T> clazz,
+			Data[] data) {
+		final Data[] items = data;
+		final List<BatchResult<T>> results = newResults(items.length);
+
+		runAll(items.length, new Batch() {
+			@Override
+			void process(int index) {
+				T object = null;
+				Exception error = null;
+				try {
+					if (items[index] != null)
+						object = deserialize(clazz, items[index]);
+				} catch (Exception e) {
+					error = e;
+				}
+				results.set(index, new BatchResult<>(index, object, error));
+			}
+		});
+		return results;
+	}
+
+	/**
+	 * @see #deserializeAll(Class, Object[])
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> List<BatchResult<T>> deserializeAll(Class<T> clazz,
+			Collection<? extends Data> data) {
+		return deserializeAll(clazz, (Data[]) data.toArray());
+	}
+
+	/**
+	 * Collects a stream, keeping its encounter order if it has one
+	 * 
+	 * @see #deserializeAll(Class, Object[])
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> List<BatchResult<T>> deserializeAll(Class<T> clazz,
+			Stream<? extends Data> data) {
+		return deserializeAll(clazz, (Data[]) data.toArray());
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> List<BatchResult<T>> newResults(int size) {
+		return (List<BatchResult<T>>) (List<?>) Arrays
+				.asList(new BatchResult<?>[size]);
+	}
+
+	/**
+	 * Runs a batch in chunks of consecutive indices. Chunks are claimed in
+	 * order by helpers on the executor and by the calling thread itself, so
+	 * the batch completes even if the executor never runs a helper.
+	 * 
+	 * @throws Error
+	 *             the first error a chunk was aborted with
+	 */
+	private void runAll(final int size, final Batch batch) {
+		Executor executor = getExecutor();
+		int parallelism = executor instanceof ForkJoinPool
+				? ((ForkJoinPool) executor).getParallelism()
+				: Runtime.getRuntime().availableProcessors();
+		final int grain = Math.max(size / (parallelism * 4), 1);
+		final int chunks = (size + grain - 1) / grain;
+
+		final AtomicInteger next = new AtomicInteger();
+		final CountDownLatch done = new CountDownLatch(chunks);
+		final AtomicReference<Error> failure = new AtomicReference<>();
+
+		Runnable helper = new Runnable() {
+			@Override
+			public void run() {
+				int chunk;
+				while ((chunk = next.getAndIncrement()) < chunks) {
+					try {
+						int to = Math.min((chunk + 1) * grain, size);
+						for (int i = chunk * grain; i < to; i++)
+							batch.process(i);
+					} catch (Error e) {
+						failure.compareAndSet(null, e);
+					} finally {
+						done.countDown();
+					}
+				}
+			}
+		};
+
+		for (int i = Math.min(parallelism, chunks) - 1; i > 0; i--) {
+			try {
+				executor.execute(helper);
+			} catch (RejectedExecutionException e) {
+				break;
+			}
+		}
+		helper.run();
+
+		// Only chunks already claimed by running helpers are left
+		boolean interrupted = false;
+		while (true) {
+			try {
+				done.await();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+
+		if (failure.get() != null)
+			throw failure.get();
+	}
+
+	/**
+	 * Processes a slice on the calling thread, or splits it across the pool
+	 * if it is long enough and no graph is followed on this thread
+	 */
+	private void run(Slice slice) {
+		int length = slice.mTo - slice.mFrom;
+
+		if (length < mParallelThreshold || mTrackReferences || mIterative) {
+			slice.compute();
+			return;
+		}
+
+		slice.mGrain = Math.max(length / (mPool.getParallelism() * 4), 1);
+		if (ForkJoinTask.getPool() == mPool)
+			slice.invoke();
+		else
+			mPool.invoke(slice);
+	}
+
 	/**
 	 * Deserializes data into class, throwing any exceptions that occur
 	 * 
@@ -149,7 +669,84 @@ public class Serializer<Data> {
 	 *             if an unexpected reflection error occurs
 	 */
 	public <T> T deserialize(Class<T> clazz, Data data) throws Exception {
-		Serializable annotation = getAnnotation(clazz);
+		if (mIterative)
+			return clazz.cast(deserializeIterative(clazz, data));
+		if (!mTrackReferences)
+			return read(clazz, data, null);
+
+		References references = mReferences.get();
+		boolean root = references == null;
+		if (root) {
+			references = new References(EXPECTED_REFERENCES);
+			mReferences.set(references);
+		}
+
+		try {
+			if (mMethod.hasKey(data, REFERENCE))
+				return clazz.cast(references.get(mMethod.loadInt(data,
+						REFERENCE)));
+			return read(clazz, data, references);
+		} finally {
+			if (root)
+				mReferences.remove();
+		}
+	}
+
+	/**
+	 * Loads an object, and recursively all objects it references, from Data
+	 * 
+	 * @param clazz
+	 *            class of serialized data
+	 * @param data
+	 *            data to deserialize
+	 * @param references
+	 *            objects loaded so far, or <b>null</b> if references are not
+	 *            tracked
+	 * @return deserialized object
+	 */
+	private <T> T read(Class<T> clazz, Data data, References references)
+			throws Exception {
+		ClassDescriptor descriptor = ClassDescriptor.forClass(clazz);
+		checkVersion(descriptor, data);
+
+		int id = references != null && mMethod.hasKey(data, ID) ? mMethod
+				.loadInt(data, ID) : -1;
+
+		SerializationCodec<Object> codec = codec(descriptor);
+		if (codec != null) {
+			T t = clazz.cast(codec.newInstance());
+			if (id >= 0)
+				references.put(id, t);
+			codec.read(t, data, mMethod, this);
+			return t;
+		}
+
+		Instantiator instantiator = descriptor.getInstantiator();
+		if (instantiator.requiresArguments()) {
+			if (id >= 0)
+				references.put(id, null);
+			T t = clazz.cast(instantiator.newInstance(loadArguments(
+					descriptor, data)));
+			if (id >= 0)
+				references.put(id, t);
+			return t;
+		}
+
+		T t = clazz.cast(instantiator.newInstance());
+		if (id >= 0)
+			references.put(id, t);
+		loadFields(descriptor, data, t, null);
+		return t;
+
+	}
+
+	/**
+	 * @throws DifferentVersionException
+	 *             if the class records its version and data holds another
+	 */
+	private void checkVersion(ClassDescriptor descriptor, Data data)
+			throws DifferentVersionException {
+		Serializable annotation = descriptor.getAnnotation();
 
 		if (annotation.includeVersion()) {
 			int cVersion = annotation.version();
@@ -158,148 +755,841 @@ public class Serializer<Data> {
 			if (cVersion != dVersion)
 				throw new DifferentVersionException(cVersion, dVersion);
 		}
+	}
+
+	/**
+	 * Stores an object graph children first. Nested calls, made by the
+	 * method while an object is stored, return the Data of its children
+	 * stored before it.
+	 * 
+	 * @param object
+	 *            object to serialize
+	 * @return serialized object in Data format
+	 */
+	private Data serializeIterative(Object object) throws Exception {
+		checkUntracked();
+
+		Map<Object, Data> stored = mStored.get();
+		if (stored != null) {
+			Data data = stored.get(object);
+			// Not reached through a field, for instance stored by a codec
+			return data != null ? data : write(object, -1);
+		}
+
+		stored = new IdentityHashMap<>();
+		mStored.set(stored);
+		try {
+			walk(object, stored);
+			return stored.get(object);
+		} finally {
+			mStored.remove();
+		}
+	}
+
+	/**
+	 * Stores root after every object reachable from it. The Data of an object
+	 * is released once its parent holds it, so a shared object whose Data was
+	 * released is simply stored again for its next parent, as it is without
+	 * the explicit stack.
+	 * 
+	 * @throws IllegalStateException
+	 *             if an object is reachable from itself
+	 */
+	private void walk(Object root, Map<Object, Data> stored) throws Exception {
+		ArrayDeque<Object> stack = new ArrayDeque<>();
+		// Objects whose children are on the stack, always the path to the top
+		Set<Object> open = Collections
+				.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+		List<Object> children = new ArrayList<>();
+
+		stack.push(root);
+		while (!stack.isEmpty()) {
+			Object object = stack.peek();
+
+			if (stored.containsKey(object)) {
+				stack.pop();
+				continue;
+			}
+
+			children.clear();
+			addChildren(object, children);
+
+			boolean waiting = false;
+			for (Object child : children) {
+				if (stored.containsKey(child))
+					continue;
+				if (open.contains(child))
+					throw new IllegalStateException("Cycle through "
+							+ child.getClass().getName());
+				stack.push(child);
+				waiting = true;
+			}
+
+			if (waiting) {
+				open.add(object);
+			} else {
+				stack.pop();
+				open.remove(object);
+				stored.put(object, write(object, -1));
+				if (object != root)
+					for (Object child : children)
+						stored.remove(child);
+			}
+		}
+	}
+
+	/**
+	 * Adds the serializeable objects held by the fields of an object
+	 */
+	private static void addChildren(Object object, List<Object> children)
+			throws Exception {
+		ClassDescriptor descriptor = ClassDescriptor.forClass(object
+				.getClass());
+
+		for (FieldDescriptor field : descriptor.getFields()) {
+			Object value;
+
+			switch (field.getFieldType()) {
+			case SERIALIZEABLE:
+				value = field.getAccessor().get(object);
+				if (value != null)
+					children.add(value);
+				break;
+			case SERIALIZEABLE_ARRAY:
+				value = field.getAccessor().get(object);
+				if (value != null)
+					for (Object element : (Object[]) value)
+						if (element != null)
+							children.add(element);
+				break;
+			case SERIALIZEABLE_COLLECTION:
+				value = field.getAccessor().get(object);
+				if (value != null)
+					for (Object element : (Collection<?>) value)
+						if (element != null)
+							children.add(element);
+				break;
+			case SERIALIZEABLE_MAP:
+				value = field.getAccessor().get(object);
+				if (value != null)
+					for (Object element : ((Map<?, ?>) value).values())
+						if (element != null)
+							children.add(element);
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Loads an object graph parents first. Nested calls, made by the method
+	 * while the fields of an object are loaded, only create its children and
+	 * leave their fields to be loaded afterwards.
+	 * 
+	 * @param clazz
+	 *            class of serialized data
+	 * @param data
+	 *            data to deserialize
+	 * @return deserialized object
+	 */
+	private Object deserializeIterative(Class<?> clazz, Data data)
+			throws Exception {
+		checkUntracked();
 
-		T t;
+		ArrayDeque<Pending> pending = mPending.get();
+		if (pending != null)
+			return create(clazz, data, pending);
+
+		pending = new ArrayDeque<>();
+		mPending.set(pending);
 		try {
-			t = clazz.newInstance();
-		} catch (InstantiationException e) {
-			Constructor<T> ctor = clazz.getConstructor();
-			ctor.setAccessible(true);
-			t = ctor.newInstance();
+			Object root = create(clazz, data, pending);
+
+			Pending next;
+			while ((next = pending.poll()) != null)
+				next.load();
+
+			return root;
+		} finally {
+			mPending.remove();
+		}
+	}
+
+	/**
+	 * Creates an object, leaving its fields to be loaded from pending
+	 * 
+	 * @return the created object
+	 */
+	private Object create(Class<?> clazz, Data data,
+			ArrayDeque<Pending> pending) throws Exception {
+		ClassDescriptor descriptor = ClassDescriptor.forClass(clazz);
+		checkVersion(descriptor, data);
+
+		SerializationCodec<Object> codec = codec(descriptor);
+		if (codec != null) {
+			Object object = codec.newInstance();
+			pending.push(new Pending(descriptor, codec, data, object));
+			return object;
 		}
 
-		Map<String, Field> fields = getFields(clazz, annotation.autoIgnore());
+		Instantiator instantiator = descriptor.getInstantiator();
+		if (instantiator.requiresArguments())
+			return instantiator.newInstance(loadArguments(descriptor, data));
+
+		Object object = instantiator.newInstance();
+		pending.push(new Pending(descriptor, null, data, object));
+		return object;
+	}
+
+	/**
+	 * Deserializes an object straight from a reader, binding values into
+	 * fields as they arrive instead of building an intermediate Data tree.
+	 * Fields whose value is <b>null</b> are left untouched.
+	 * 
+	 * @param clazz
+	 *            class of serialized data
+	 * @param in
+	 *            reader positioned at the start of the object
+	 * @return deserialized object
+	 * @throws ClassNotSerializeableException
+	 *             if class is not annotated with {@link Serializable}
+	 * @throws DifferentVersionException
+	 *             if runtime and serialized class have different versions
+	 * @throws Exception
+	 *             if an unexpected reflection or input error occurs
+	 */
+	public <T> T deserialize(Class<T> clazz, SerializationReader in)
+			throws Exception {
+		checkUntracked();
+		return clazz.cast(readObject(ClassDescriptor.forClass(clazz), in));
+	}
+
+	/**
+	 * Emits an object and, recursively, all objects it references
+	 * 
+	 * @param object
+	 *            object to serialize
+	 * @param out
+	 *            writer to emit the object to
+	 */
+	private void writeObject(Object object, SerializationWriter out)
+			throws Exception {
+		ClassDescriptor descriptor = ClassDescriptor.forClass(object
+				.getClass());
+
+		out.beginObject(descriptor);
 
-		for (String key : mMethod.getKeys(data)) {
-			if (VERSION.equals(key))
+		for (FieldDescriptor field : descriptor.getFields()) {
+			FieldAccessor accessor = field.getAccessor();
+
+			if (field.getKind() != Primitives.Kind.OBJECT) {
+				out.field(field);
+				writePrimitive(out, field, object);
+				continue;
+			}
+
+			Object value = accessor.get(object);
+			if (value == null)
 				continue;
 
-			Field field = fields.get(key);
-			Class<?> type = field.getType();
-			Object value = null;
+			out.field(field);
 
-			switch (getFieldType(field)) {
+			switch (field.getFieldType()) {
 			case PRIMITIVE:
-				value = mMethod.loadPrimitive(data, key);
+				out.writePrimitive(value);
 				break;
 			case PRIMITVE_ARRAY:
-				value = mMethod.loadPrimitiveArray(data, null, type);
+				out.writePrimitiveArray(value);
 				break;
 			case SERIALIZEABLE:
-				value = mMethod.loadSerializeable(data, key, this, clazz);
+				writeObject(value, out);
 				break;
 			case SERIALIZEABLE_ARRAY:
-				value = mMethod.loadSerializeableArray(data, key, this, clazz);
+				Object[] array = (Object[]) value;
+				out.beginArray(array.length);
+				for (Object element : array) {
+					if (element == null)
+						out.writeNull();
+					else
+						writeObject(element, out);
+				}
+				out.endArray();
+				break;
+			case PRIMITIVE_COLLECTION:
+			case SERIALIZEABLE_COLLECTION:
+				Collection<?> collection = (Collection<?>) value;
+				out.beginArray(collection.size());
+				for (Object element : collection)
+					writeElement(field, element, out);
+				out.endArray();
+				break;
+			case PRIMITIVE_MAP:
+			case SERIALIZEABLE_MAP:
+				Map<?, ?> map = (Map<?, ?>) value;
+				out.beginMap(map.size());
+				for (Map.Entry<?, ?> entry : map.entrySet()) {
+					out.key(String.valueOf(entry.getKey()));
+					writeElement(field, entry.getValue(), out);
+				}
+				out.endMap();
 				break;
 			}
-
-			field.set(t, value);
 		}
 
-		return t;
+		out.endObject();
+	}
 
+	/**
+	 * Emits an element of a collection or a value of a map
+	 * 
+	 * @param field
+	 *            the collection or map field
+	 * @param element
+	 *            the element, may be <b>null</b>
+	 * @param out
+	 *            writer to emit the element to
+	 */
+	private void writeElement(FieldDescriptor field, Object element,
+			SerializationWriter out) throws Exception {
+		if (element == null)
+			out.writeNull();
+		else if (field.getFieldType() == FieldType.PRIMITIVE_COLLECTION
+				|| field.getFieldType() == FieldType.PRIMITIVE_MAP)
+			out.writePrimitive(element);
+		else
+			writeObject(element, out);
 	}
 
 	/**
-	 * Gets the Serialization specific type of field
+	 * Emits an unboxed primitive field
 	 * 
+	 * @param out
+	 *            writer to emit the field to
 	 * @param field
-	 *            field to determine type of
-	 * @return the appropriate field type
+	 *            the primitive field
+	 * @param object
+	 *            object to read field from
 	 */
-	private static FieldType getFieldType(Field field) {
-		Class<?> type = field.getType();
+	private static void writePrimitive(SerializationWriter out,
+			FieldDescriptor field, Object object) throws IOException {
+		FieldAccessor accessor = field.getAccessor();
 
-		if (type.isArray()) {
+		switch (field.getKind()) {
+		case BOOLEAN:
+			out.writeBoolean(accessor.getBoolean(object));
+			break;
+		case BYTE:
+			out.writeByte(accessor.getByte(object));
+			break;
+		case CHAR:
+			out.writeChar(accessor.getChar(object));
+			break;
+		case SHORT:
+			out.writeShort(accessor.getShort(object));
+			break;
+		case INT:
+			out.writeInt(accessor.getInt(object));
+			break;
+		case LONG:
+			out.writeLong(accessor.getLong(object));
+			break;
+		case FLOAT:
+			out.writeFloat(accessor.getFloat(object));
+			break;
+		case DOUBLE:
+			out.writeDouble(accessor.getDouble(object));
+			break;
+		case OBJECT:
+			out.writePrimitive(accessor.get(object));
+			break;
+		}
+	}
 
-			if (isPrimitive(type.getComponentType()))
-				return FieldType.PRIMITVE_ARRAY;
-			else
-				return FieldType.SERIALIZEABLE_ARRAY;
+	/**
+	 * Reads an object and, recursively, all objects it references
+	 * 
+	 * @param descriptor
+	 *            descriptor of the expected class
+	 * @param in
+	 *            reader positioned at the start of the object
+	 * @return deserialized object
+	 */
+	private Object readObject(ClassDescriptor descriptor,
+			SerializationReader in) throws Exception {
+		in.beginObject(descriptor);
 
+		Instantiator instantiator = descriptor.getInstantiator();
+		Object[] args = null;
+		Object object = null;
+
+		if (instantiator.requiresArguments()) {
+			args = new Object[descriptor.getFields().size()];
+			for (FieldDescriptor field : descriptor.getFields())
+				args[field.getIndex()] = Instantiator.defaultValue(field
+						.getType());
 		} else {
+			object = instantiator.newInstance();
+		}
 
-			if (isPrimitive(type))
-				return FieldType.PRIMITIVE;
+		FieldDescriptor field;
+		while ((field = in.nextField(descriptor)) != null) {
+			if (in.nextNull())
+				continue;
+
+			if (args != null)
+				args[field.getIndex()] = readValue(field, in);
+			else if (field.getKind() != Primitives.Kind.OBJECT)
+				readPrimitive(in, field, object);
 			else
-				return FieldType.SERIALIZEABLE;
+				field.getAccessor().set(object, readValue(field, in));
 		}
+
+		return args != null ? instantiator.newInstance(args) : object;
 	}
 
 	/**
-	 * Gets the {@link Serializable} annotation from a class
+	 * Reads the value of a field, boxing primitives
 	 * 
-	 * @param clazz
-	 *            the class to get the annotation from
-	 * @return the <code>Serializable</code> annotation instance
-	 * @throws ClassNotSerializeableException
-	 *             if class has no <code>Serializeable</code> annotation
+	 * @param field
+	 *            the field to read
+	 * @param in
+	 *            reader positioned at the value
+	 * @return the value of the field
+	 */
+	private Object readValue(FieldDescriptor field, SerializationReader in)
+			throws Exception {
+		switch (field.getFieldType()) {
+		case PRIMITIVE:
+			return dedup(field, in.readPrimitive(field.getType()));
+		case PRIMITVE_ARRAY:
+			return dedup(field, in.readPrimitiveArray(field.getComponentType()));
+		case SERIALIZEABLE:
+			return readObject(ClassDescriptor.forClass(field.getType()), in);
+		case SERIALIZEABLE_ARRAY:
+			ClassDescriptor element = ClassDescriptor.forClass(field
+					.getComponentType());
+			List<Object> values = new ArrayList<>();
+
+			in.beginArray();
+			while (in.hasNext())
+				values.add(in.nextNull() ? null : readObject(element, in));
+			in.endArray();
+
+			return values.toArray((Object[]) Array.newInstance(
+					field.getComponentType(), values.size()));
+		case PRIMITIVE_COLLECTION:
+		case SERIALIZEABLE_COLLECTION:
+			Collection<Object> collection = field.newCollection(in
+					.beginArray());
+			while (in.hasNext())
+				collection.add(readElement(field, in));
+			in.endArray();
+			return collection;
+		case PRIMITIVE_MAP:
+		case SERIALIZEABLE_MAP:
+			Map<Object, Object> map = field.newMap(in.beginMap());
+			String key;
+			while ((key = in.nextKey()) != null)
+				map.put(Primitives.coerce(key, field.getKeyType()),
+						readElement(field, in));
+			return map;
+		}
+
+		throw new IllegalStateException(field.getFieldType().name());
+	}
+
+	/**
+	 * Reads an element of a collection or a value of a map
+	 * 
+	 * @param field
+	 *            the collection or map field
+	 * @param in
+	 *            reader positioned at the element
+	 * @return the element, or <b>null</b>
+	 */
+	private Object readElement(FieldDescriptor field, SerializationReader in)
+			throws Exception {
+		if (in.nextNull())
+			return null;
+		if (field.getFieldType() == FieldType.PRIMITIVE_COLLECTION
+				|| field.getFieldType() == FieldType.PRIMITIVE_MAP)
+			return in.readPrimitive(field.getComponentType());
+		return readObject(ClassDescriptor.forClass(field.getComponentType()),
+				in);
+	}
+
+	/**
+	 * Reads an unboxed primitive field
+	 * 
+	 * @param in
+	 *            reader positioned at the value
+	 * @param field
+	 *            the primitive field
+	 * @param object
+	 *            object to write field into
+	 */
+	private static void readPrimitive(SerializationReader in,
+			FieldDescriptor field, Object object) throws IOException {
+		FieldAccessor accessor = field.getAccessor();
+
+		switch (field.getKind()) {
+		case BOOLEAN:
+			accessor.setBoolean(object, in.readBoolean());
+			break;
+		case BYTE:
+			accessor.setByte(object, in.readByte());
+			break;
+		case CHAR:
+			accessor.setChar(object, in.readChar());
+			break;
+		case SHORT:
+			accessor.setShort(object, in.readShort());
+			break;
+		case INT:
+			accessor.setInt(object, in.readInt());
+			break;
+		case LONG:
+			accessor.setLong(object, in.readLong());
+			break;
+		case FLOAT:
+			accessor.setFloat(object, in.readFloat());
+			break;
+		case DOUBLE:
+			accessor.setDouble(object, in.readDouble());
+			break;
+		case OBJECT:
+			accessor.set(object, in.readPrimitive(field.getType()));
+			break;
+		}
+	}
+
+	/**
+	 * Loads the value of a field, boxing primitives
+	 * 
+	 * @param data
+	 *            serialized data
+	 * @param field
+	 *            the field to load
+	 * @return the value of the field
+	 */
+	private Object loadValue(Data data, FieldDescriptor field)
+			throws Exception {
+		String key = field.getName();
+
+		switch (field.getFieldType()) {
+		case PRIMITIVE:
+			return dedup(field, Primitives.coerce(
+					mMethod.loadPrimitive(data, key), field.getType()));
+		case PRIMITVE_ARRAY:
+			return dedup(field, mMethod.loadPrimitiveArray(data, key,
+					field.getComponentType()));
+		case SERIALIZEABLE:
+			return mMethod.loadSerializeable(data, key, this, field.getType());
+		case SERIALIZEABLE_ARRAY:
+			return mMethod.loadSerializeableArray(data, key, this,
+					field.getComponentType());
+		case PRIMITIVE_COLLECTION:
+			return mMethod.loadPrimitiveCollection(data, key,
+					field.getComponentType(), field.newCollection(-1));
+		case SERIALIZEABLE_COLLECTION:
+			return mMethod.loadSerializeableCollection(data, key, this,
+					field.getComponentType(), field.newCollection(-1));
+		case PRIMITIVE_MAP:
+			return mMethod.loadPrimitiveMap(data, key, field.getKeyType(),
+					field.getComponentType(), field.newMap(-1));
+		case SERIALIZEABLE_MAP:
+			return mMethod.loadSerializeableMap(data, key, this,
+					field.getKeyType(), field.getComponentType(),
+					field.newMap(-1));
+		}
+
+		throw new IllegalStateException(field.getFieldType().name());
+	}
+
+	/**
+	 * Loads every field up front, for classes that can only be created
+	 * through a constructor taking all of their fields
+	 * 
+	 * @param descriptor
+	 *            descriptor of the class to deserialize
+	 * @param data
+	 *            serialized data
+	 * @return field values, ordered as {@link ClassDescriptor#getFields()}
+	 */
+	private Object[] loadArguments(ClassDescriptor descriptor, Data data)
+			throws Exception {
+		List<FieldDescriptor> fields = descriptor.getFields();
+		Object[] args = new Object[fields.size()];
+
+		for (FieldDescriptor field : fields)
+			args[field.getIndex()] = Instantiator.defaultValue(field.getType());
+
+		loadFields(descriptor, data, null, args);
+		return args;
+	}
+
+	/**
+	 * Loads all fields present in data. Formats that preserve order are
+	 * walked key by key, resolving each key through
+	 * {@link ClassDescriptor#getField(String)}, all others are probed field by
+	 * field. Keys that do not belong to a field are skipped either way.
+	 * 
+	 * @param descriptor
+	 *            descriptor of the class to deserialize
+	 * @param data
+	 *            serialized data
+	 * @param object
+	 *            object to write fields into, or <b>null</b> to collect them
+	 *            into args
+	 * @param args
+	 *            field values, ordered as {@link ClassDescriptor#getFields()}
 	 */
-	private static Serializable getAnnotation(Class<?> clazz) {
-		Serializable s = clazz.getAnnotation(Serializable.class);
+	private void loadFields(ClassDescriptor descriptor, Data data,
+			Object object, Object[] args) throws Exception {
+
+		if (mMethod.preservesOrder()) {
+			for (String key : mMethod.getKeys(data)) {
+				FieldDescriptor field = descriptor.getField(key);
+				if (field != null)
+					loadField(data, field, object, args);
+			}
+		} else {
+			for (FieldDescriptor field : descriptor.getFields()) {
+				if (mMethod.hasKey(data, field.getName()))
+					loadField(data, field, object, args);
+			}
+		}
+	}
 
-		if (s == null)
-			throw new ClassNotSerializeableException(clazz);
+	private void loadField(Data data, FieldDescriptor field, Object object,
+			Object[] args) throws Exception {
+
+		if (args != null)
+			args[field.getIndex()] = loadValue(data, field);
+		else if (field.getFieldType() == FieldType.PRIMITIVE)
+			loadPrimitive(data, field, object);
 		else
-			return s;
+			field.getAccessor().set(object, loadValue(data, field));
 	}
 
 	/**
-	 * Determines if class is if primitive type, boxed or unboxed
+	 * Stores a primitive field through the typed overloads of the method, so
+	 * that primitive fields are never boxed
 	 * 
-	 * @param clazz
-	 *            class to test
-	 * @return <b>true</b> if class is primitive, the class of a boxed
-	 *         primitive, or a String
+	 * @param data
+	 *            output to store field into
+	 * @param field
+	 *            the primitive field
+	 * @param object
+	 *            object to read field from
 	 */
-	private static boolean isPrimitive(Class<?> clazz) {
-		if (clazz.isPrimitive())
-			return true;
+	private void storePrimitive(Data data, FieldDescriptor field, Object object) {
+		String name = field.getName();
+		FieldAccessor accessor = field.getAccessor();
 
-		if (Arrays.asList(PRIMITIVE_OBJECTS).contains(clazz))
-			return true;
+		switch (field.getKind()) {
+		case BOOLEAN:
+			mMethod.storeBoolean(data, name, accessor.getBoolean(object));
+			break;
+		case BYTE:
+			mMethod.storeByte(data, name, accessor.getByte(object));
+			break;
+		case CHAR:
+			mMethod.storeChar(data, name, accessor.getChar(object));
+			break;
+		case SHORT:
+			mMethod.storeShort(data, name, accessor.getShort(object));
+			break;
+		case INT:
+			mMethod.storeInt(data, name, accessor.getInt(object));
+			break;
+		case LONG:
+			mMethod.storeLong(data, name, accessor.getLong(object));
+			break;
+		case FLOAT:
+			mMethod.storeFloat(data, name, accessor.getFloat(object));
+			break;
+		case DOUBLE:
+			mMethod.storeDouble(data, name, accessor.getDouble(object));
+			break;
+		case OBJECT:
+			mMethod.storePrimitive(data, name, accessor.get(object));
+			break;
+		}
+	}
 
-		return false;
+	/**
+	 * Loads a primitive field through the typed overloads of the method, so
+	 * that primitive fields are never boxed
+	 * 
+	 * @param data
+	 *            serialized data
+	 * @param field
+	 *            the primitive field
+	 * @param object
+	 *            object to write field into
+	 */
+	private void loadPrimitive(Data data, FieldDescriptor field, Object object) {
+		String name = field.getName();
+		FieldAccessor accessor = field.getAccessor();
 
+		switch (field.getKind()) {
+		case BOOLEAN:
+			accessor.setBoolean(object, mMethod.loadBoolean(data, name));
+			break;
+		case BYTE:
+			accessor.setByte(object, mMethod.loadByte(data, name));
+			break;
+		case CHAR:
+			accessor.setChar(object, mMethod.loadChar(data, name));
+			break;
+		case SHORT:
+			accessor.setShort(object, mMethod.loadShort(data, name));
+			break;
+		case INT:
+			accessor.setInt(object, mMethod.loadInt(data, name));
+			break;
+		case LONG:
+			accessor.setLong(object, mMethod.loadLong(data, name));
+			break;
+		case FLOAT:
+			accessor.setFloat(object, mMethod.loadFloat(data, name));
+			break;
+		case DOUBLE:
+			accessor.setDouble(object, mMethod.loadDouble(data, name));
+			break;
+		case OBJECT:
+			accessor.set(object, dedup(field, Primitives.coerce(
+					mMethod.loadPrimitive(data, name), field.getType())));
+			break;
+		}
 	}
 
 	/**
-	 * Raw mapping of fields to field names of class and its superclasses
+	 * Canonicalizes the loaded value of a {@link Serializable.Dedup} field
 	 * 
-	 * @param clazz
-	 *            class to map
-	 * @param ignore
-	 *            if fields should be ignored by default
-	 * @return a map with string keys mapped to the fields they represent
+	 * @param field
+	 *            the field the value was loaded for
+	 * @param value
+	 *            the loaded value
+	 * @return the pooled value if the field is deduplicated, otherwise value
+	 */
+	private Object dedup(FieldDescriptor field, Object value) {
+		if (!field.isDeduplicated())
+			return value;
+		if (value instanceof String)
+			return mStringPool.intern((String) value);
+		if (value instanceof String[])
+			return mStringPool.internAll((String[]) value);
+		return value;
+	}
+
+	/**
+	 * @throws UnsupportedOperationException
+	 *             if references are tracked, which streams and the iterative
+	 *             walk do not support
 	 */
-	private static Map<String, Field> getFields(Class<?> clazz, boolean ignore) {
+	private void checkUntracked() {
+		if (mTrackReferences)
+			throw new UnsupportedOperationException(
+					"References are only tracked in Data trees walked by recursion");
+	}
 
-		Map<String, Field> fields = new HashMap<>();
-		if (clazz == null)
-			return fields;
+	/**
+	 * @param descriptor
+	 *            descriptor of the class to serialize
+	 * @return the generated codec of the class, or <b>null</b> if reflection
+	 *         should be used
+	 */
+	@SuppressWarnings("unchecked")
+	private static SerializationCodec<Object> codec(ClassDescriptor descriptor) {
+		return (SerializationCodec<Object>) descriptor.getCodec();
+	}
 
-		for (Field field : clazz.getDeclaredFields()) {
-			field.setAccessible(true);
+	/**
+	 * An object created by the iterative walk whose fields are yet to be
+	 * loaded
+	 */
+	private final class Pending {
 
-			boolean add = true;
-			int mod = field.getModifiers();
+		private final ClassDescriptor mDescriptor;
+		private final SerializationCodec<Object> mCodec;
+		private final Data mData;
+		private final Object mObject;
 
-			add &= !Modifier.isStatic(mod);
-			add &= !Modifier.isFinal(mod);
-			add &= !Modifier.isTransient(mod);
+		Pending(ClassDescriptor descriptor, SerializationCodec<Object> codec,
+				Data data, Object object) {
+			mDescriptor = descriptor;
+			mCodec = codec;
+			mData = data;
+			mObject = object;
+		}
 
-			if (ignore)
-				add &= field.getAnnotation(Keep.class) != null;
+		void load() throws Exception {
+			if (mCodec != null)
+				mCodec.read(mObject, mData, mMethod, Serializer.this);
 			else
-				add &= field.getAnnotation(Ignore.class) == null;
+				loadFields(mDescriptor, mData, mObject, null);
+		}
+	}
 
-			if (add)
-				fields.put(field.getName(), field);
+
+	/**
+	 * Items of a batch, each processed on its own
+	 */
+	private abstract static class Batch {
+
+		abstract void process(int index);
+	}
+
+	/**
+	 * Range of indices of an array, halved until it is no longer than its
+	 * grain
+	 */
+	private abstract static class Slice extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int mFrom;
+		private final int mTo;
+
+		/**
+		 * Longest slice processed without splitting it
+		 */
+		private int mGrain = Integer.MAX_VALUE;
+
+		Slice(int from, int to) {
+			mFrom = from;
+			mTo = to;
 		}
 
-		fields.putAll(getFields(clazz.getSuperclass(), ignore));
+		abstract void process(int index);
 
-		return fields;
+		@Override
+		protected void compute() {
+			if (mTo - mFrom <= mGrain) {
+				for (int i = mFrom; i < mTo; i++)
+					process(i);
+				return;
+			}
+
+			int middle = (mFrom + mTo) >>> 1;
+			invokeAll(split(mFrom, middle), split(middle, mTo));
+		}
+
+		private Slice split(int from, int to) {
+			final Slice parent = this;
+			Slice slice = new Slice(from, to) {
+				@Override
+				void process(int index) {
+					parent.process(index);
+				}
+			};
+			slice.mGrain = mGrain;
+			return slice;
+		}
 	}
 
+
 }
@@ -0,0 +1,127 @@
+package com.prettymuchabigdeal.serializer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, thread-safe pool of canonical Strings for fields annotated with
+ * {@link Serializable.Dedup}. The pool is split into stripes by hash, each
+ * guarded by its own lock and evicting its least recently used value once
+ * full. Values longer than {@link #MAX_LENGTH} are never pooled.
+ *
+ */
+public final class StringPool {
+
+	/**
+	 * Longest value kept in a pool
+	 */
+	public static final int MAX_LENGTH = 256;
+
+	private static final int STRIPES = 16;
+
+	private static final StringPool DEFAULT = new StringPool(4096);
+
+	private final Stripe[] mStripes;
+	private final int mMask;
+
+	/**
+	 * @param capacity
+	 *            the most values the pool holds, spread evenly over its stripes
+	 */
+	public StringPool(int capacity) {
+		if (capacity < STRIPES)
+			throw new IllegalArgumentException("Capacity must be at least "
+					+ STRIPES + ": " + capacity);
+
+		mStripes = new Stripe[STRIPES];
+		for (int i = 0; i < STRIPES; i++)
+			mStripes[i] = new Stripe(capacity / STRIPES);
+		mMask = STRIPES - 1;
+	}
+
+	/**
+	 * @return pool used by a {@link Serializer} unless it is given another one
+	 */
+	public static StringPool getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * @param value
+	 *            value to canonicalize, may be <b>null</b>
+	 * @return the equal String already in the pool, otherwise value itself
+	 *         after adding it
+	 */
+	public String intern(String value) {
+		if (value == null || value.length() > MAX_LENGTH)
+			return value;
+
+		int hash = value.hashCode();
+		Stripe stripe = mStripes[(hash ^ (hash >>> 16)) & mMask];
+
+		synchronized (stripe) {
+			String existing = stripe.get(value);
+			if (existing != null)
+				return existing;
+			stripe.put(value, value);
+			return value;
+		}
+	}
+
+	/**
+	 * Canonicalizes every element of an array in place
+	 *
+	 * @param values
+	 *            values to canonicalize, may be <b>null</b>
+	 * @return values
+	 */
+	public String[] internAll(String[] values) {
+		if (values != null)
+			for (int i = 0; i < values.length; i++)
+				values[i] = intern(values[i]);
+		return values;
+	}
+
+	/**
+	 * @return number of values currently pooled
+	 */
+	public int size() {
+		int size = 0;
+		for (Stripe stripe : mStripes)
+			synchronized (stripe) {
+				size += stripe.size();
+			}
+		return size;
+	}
+
+	/**
+	 * Removes every value from the pool
+	 */
+	public void clear() {
+		for (Stripe stripe : mStripes)
+			synchronized (stripe) {
+				stripe.clear();
+			}
+	}
+
+	/**
+	 * Access ordered map of one stripe, dropping its eldest entry when full
+	 */
+	private static final class Stripe extends LinkedHashMap<String, String> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int mCapacity;
+
+		Stripe(int capacity) {
+			super(16, 0.75f, true);
+			mCapacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+			return size() > mCapacity;
+		}
+	}
+
+}
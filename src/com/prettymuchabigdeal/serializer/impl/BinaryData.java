@@ -0,0 +1,427 @@
+package com.prettymuchabigdeal.serializer.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Serialized data of {@link BinarySerializationMethod}. Holds a sequence of
+ * tagged entries, each made up of a type tag, a key and a payload, in a heap
+ * or direct {@link ByteBuffer}.<br>
+ * <br>
+ * Data is either being written, when created by the method, or read, when
+ * created by {@link #wrap(ByteBuffer)}. Nested objects are read as views of
+ * their parent's buffer, without copying. While written, nested objects
+ * larger than {@link #INLINE_LIMIT} are only linked to, and every byte is
+ * copied once, into a single buffer, the first time the data is read or
+ * exported. Writing an object graph therefore costs its size, whatever its
+ * depth.
+ * 
+ */
+public final class BinaryData {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * Largest nested data copied as it is written rather than linked to
+	 */
+	private static final int INLINE_LIMIT = 64;
+
+	/**
+	 * Contents of the data, from <code>0</code> to {@link #mSize}. While
+	 * written and holding links, only the bytes written directly, up to the
+	 * position of the buffer.
+	 */
+	private ByteBuffer mBuffer;
+	private int mSize;
+	private final boolean mReadOnly;
+
+	/**
+	 * Nested data linked to and the offset in {@link #mBuffer} each belongs
+	 * at, in order
+	 */
+	private BinaryData[] mLinks;
+	private int[] mLinkOffsets;
+	private int mLinkCount;
+
+	/**
+	 * Read position, used while decoding
+	 */
+	private int mCursor;
+
+	/**
+	 * Offset of the entry of each key, built on first read
+	 */
+	private Map<String, Integer> mIndex;
+
+	BinaryData(boolean direct) {
+		mBuffer = allocate(INITIAL_CAPACITY, direct);
+		mReadOnly = false;
+	}
+
+	private BinaryData(ByteBuffer contents) {
+		mBuffer = contents.slice().order(ByteOrder.BIG_ENDIAN);
+		mSize = mBuffer.remaining();
+		mReadOnly = true;
+	}
+
+	/**
+	 * Wraps serialized data for reading. The remaining bytes of buffer are
+	 * shared, not copied, and must not be modified while being read.
+	 * 
+	 * @param buffer
+	 *            buffer positioned at the start of the data, limited to its
+	 *            end
+	 * @return data backed by buffer
+	 */
+	public static BinaryData wrap(ByteBuffer buffer) {
+		return new BinaryData(buffer);
+	}
+
+	/**
+	 * @param bytes
+	 *            serialized data
+	 * @return data backed by bytes
+	 * @see #wrap(ByteBuffer)
+	 */
+	public static BinaryData wrap(byte[] bytes) {
+		return new BinaryData(ByteBuffer.wrap(bytes));
+	}
+
+	/**
+	 * @return number of bytes in the data
+	 */
+	public int size() {
+		return mSize;
+	}
+
+	/**
+	 * @return read only view of the data, positioned at its start
+	 */
+	public ByteBuffer toByteBuffer() {
+		flatten();
+		ByteBuffer view = mBuffer.duplicate();
+		view.limit(mSize).position(0);
+		return view.slice().asReadOnlyBuffer();
+	}
+
+	/**
+	 * @return copy of the data
+	 */
+	public byte[] toByteArray() {
+		byte[] bytes = new byte[mSize];
+		toByteBuffer().get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * @return all keys, in the order they were stored
+	 */
+	Set<String> keys() {
+		return index().keySet();
+	}
+
+	boolean has(String key) {
+		return index().containsKey(key);
+	}
+
+	/**
+	 * Moves the cursor to the entry of a key, just past its key
+	 * 
+	 * @param key
+	 *            the key to find
+	 * @return tag of the entry
+	 * @throws IllegalArgumentException
+	 *             if there is no entry for key
+	 */
+	byte seek(String key) {
+		Integer offset = index().get(key);
+		if (offset == null)
+			throw new IllegalArgumentException("Key not found: " + key);
+
+		mCursor = offset;
+		byte tag = readByte();
+		skip(readVarint());
+		return tag;
+	}
+
+	/**
+	 * @param length
+	 *            number of bytes, starting at the cursor
+	 * @return read only view of the bytes, which are skipped
+	 */
+	BinaryData slice(int length) {
+		ByteBuffer view = mBuffer.duplicate();
+		view.limit(mCursor + length).position(mCursor);
+		mCursor += length;
+		return new BinaryData(view);
+	}
+
+	/**
+	 * @param length
+	 *            number of bytes, starting at the cursor
+	 * @return view of the bytes, which are skipped
+	 */
+	ByteBuffer view(int length) {
+		ByteBuffer view = mBuffer.duplicate();
+		view.limit(mCursor + length).position(mCursor);
+		mCursor += length;
+		return view.slice().order(ByteOrder.BIG_ENDIAN);
+	}
+
+	private Map<String, Integer> index() {
+		if (mIndex == null) {
+			flatten();
+			mIndex = new LinkedHashMap<>();
+			mCursor = 0;
+
+			while (mCursor < mSize) {
+				int offset = mCursor;
+				byte tag = readByte();
+				mIndex.put(readString(), offset);
+				BinarySerializationMethod.skipPayload(this, tag);
+			}
+		}
+		return mIndex;
+	}
+
+	// Writing
+
+	void writeByte(int value) {
+		ensure(1);
+		mBuffer.put((byte) value);
+		mSize++;
+	}
+
+	void writeKey(byte tag, byte[] key) {
+		ensure(1 + 5 + key.length);
+		mBuffer.put(tag);
+		mSize++;
+		writeVarint(key.length);
+		mBuffer.put(key);
+		mSize += key.length;
+	}
+
+	void writeVarint(int value) {
+		ensure(5);
+		while ((value & ~0x7F) != 0) {
+			mBuffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+			mSize++;
+		}
+		mBuffer.put((byte) value);
+		mSize++;
+	}
+
+	void writeVarlong(long value) {
+		ensure(10);
+		while ((value & ~0x7FL) != 0) {
+			mBuffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+			mSize++;
+		}
+		mBuffer.put((byte) value);
+		mSize++;
+	}
+
+	void writeFloat(float value) {
+		ensure(4);
+		mBuffer.putFloat(value);
+		mSize += 4;
+	}
+
+	void writeDouble(double value) {
+		ensure(8);
+		mBuffer.putDouble(value);
+		mSize += 8;
+	}
+
+	void writeString(String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarint(bytes.length);
+		ensure(bytes.length);
+		mBuffer.put(bytes);
+		mSize += bytes.length;
+	}
+
+	/**
+	 * Writes nested data prefixed with its length. Small data is copied,
+	 * larger data is linked to and must no longer be written to.
+	 */
+	void writeData(BinaryData data) {
+		writeVarint(data.mSize);
+
+		if (data.mSize <= INLINE_LIMIT && data.mLinkCount == 0) {
+			ensure(data.mSize);
+			mBuffer.put(data.contents(0, data.end()));
+		} else {
+			if (mLinks == null) {
+				mLinks = new BinaryData[4];
+				mLinkOffsets = new int[4];
+			} else if (mLinkCount == mLinks.length) {
+				mLinks = Arrays.copyOf(mLinks, mLinkCount * 2);
+				mLinkOffsets = Arrays.copyOf(mLinkOffsets, mLinkCount * 2);
+			}
+			mLinks[mLinkCount] = data;
+			mLinkOffsets[mLinkCount++] = mBuffer.position();
+		}
+		mSize += data.mSize;
+	}
+
+	/**
+	 * Reserves space for a packed block of primitives
+	 * 
+	 * @param length
+	 *            number of bytes in the block
+	 * @return buffer positioned at the block, limited to its end
+	 */
+	ByteBuffer block(int length) {
+		ensure(length);
+		int position = mBuffer.position();
+		ByteBuffer block = mBuffer.duplicate();
+		block.limit(position + length);
+		mBuffer.position(position + length);
+		mSize += length;
+		return block.slice().order(ByteOrder.BIG_ENDIAN);
+	}
+
+	private void ensure(int length) {
+		if (mReadOnly)
+			throw new UnsupportedOperationException("Data is read only");
+
+		if (mBuffer.remaining() >= length)
+			return;
+
+		int capacity = Math.max(mBuffer.capacity() * 2, mBuffer.position()
+				+ length);
+		ByteBuffer grown = allocate(capacity, mBuffer.isDirect());
+		mBuffer.flip();
+		grown.put(mBuffer);
+		mBuffer = grown;
+	}
+
+	/**
+	 * @return end of the bytes held in {@link #mBuffer}
+	 */
+	private int end() {
+		return mReadOnly ? mSize : mBuffer.position();
+	}
+
+	/**
+	 * @return view of the bytes held in {@link #mBuffer} from start to end
+	 */
+	private ByteBuffer contents(int start, int end) {
+		ByteBuffer view = mBuffer.duplicate();
+		view.limit(end).position(start);
+		return view;
+	}
+
+	/**
+	 * Copies the data and everything it links to, however deeply, into a
+	 * single buffer. Walks the links with an explicit stack, as they may be
+	 * nested deeper than the thread stack allows.
+	 */
+	private void flatten() {
+		if (mLinkCount == 0)
+			return;
+
+		ByteBuffer flat = allocate(mSize, mBuffer.isDirect());
+		ArrayDeque<int[]> positions = new ArrayDeque<>();
+		ArrayDeque<BinaryData> stack = new ArrayDeque<>();
+
+		// Position of each data is its next link and the start of its
+		// bytes not copied yet
+		stack.push(this);
+		positions.push(new int[2]);
+		while (!stack.isEmpty()) {
+			BinaryData data = stack.peek();
+			int[] position = positions.peek();
+
+			if (position[0] < data.mLinkCount) {
+				int offset = data.mLinkOffsets[position[0]];
+				flat.put(data.contents(position[1], offset));
+				position[1] = offset;
+				stack.push(data.mLinks[position[0]++]);
+				positions.push(new int[2]);
+			} else {
+				flat.put(data.contents(position[1], data.end()));
+				stack.pop();
+				positions.pop();
+			}
+		}
+
+		mBuffer = flat;
+		mLinks = null;
+		mLinkOffsets = null;
+		mLinkCount = 0;
+	}
+
+	private static ByteBuffer allocate(int capacity, boolean direct) {
+		ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(capacity)
+				: ByteBuffer.allocate(capacity);
+		return buffer.order(ByteOrder.BIG_ENDIAN);
+	}
+
+	// Reading
+
+	byte readByte() {
+		return mBuffer.get(mCursor++);
+	}
+
+	int readVarint() {
+		int value = 0;
+		for (int shift = 0;; shift += 7) {
+			byte b = mBuffer.get(mCursor++);
+			value |= (b & 0x7F) << shift;
+			if (b >= 0)
+				return value;
+		}
+	}
+
+	long readVarlong() {
+		long value = 0;
+		for (int shift = 0;; shift += 7) {
+			byte b = mBuffer.get(mCursor++);
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0)
+				return value;
+		}
+	}
+
+	float readFloat() {
+		float value = mBuffer.getFloat(mCursor);
+		mCursor += 4;
+		return value;
+	}
+
+	double readDouble() {
+		double value = mBuffer.getDouble(mCursor);
+		mCursor += 8;
+		return value;
+	}
+
+	String readString() {
+		int length = readVarint();
+
+		if (mBuffer.hasArray()) {
+			String value = new String(mBuffer.array(), mBuffer.arrayOffset()
+					+ mCursor, length, StandardCharsets.UTF_8);
+			mCursor += length;
+			return value;
+		}
+
+		byte[] bytes = new byte[length];
+		view(length).get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	void skip(int length) {
+		mCursor += length;
+	}
+
+}
@@ -0,0 +1,956 @@
+package com.prettymuchabigdeal.serializer.impl;
+
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.prettymuchabigdeal.serializer.Primitives;
+import com.prettymuchabigdeal.serializer.SerializationMethod;
+import com.prettymuchabigdeal.serializer.Serializer;
+
+/**
+ * Compact tagged binary format. Every value is stored as a one byte type tag,
+ * its key and a payload:
+ * <ul>
+ * <li>booleans and nulls are stored in the tag alone</li>
+ * <li>chars, shorts, ints and longs as zigzag varints</li>
+ * <li>bytes, floats and doubles at fixed width</li>
+ * <li>strings and nested objects prefixed with their length in bytes</li>
+ * <li>primitive arrays as packed big endian blocks prefixed with their
+ * length</li>
+ * <li>other arrays as a length followed by one tagged value per
+ * element</li>
+ * <li>collections as arrays, packed whenever their elements are boxed
+ * primitives and none is null</li>
+ * <li>maps as a count, that many keys as strings, and their values as one
+ * tagged collection</li>
+ * </ul>
+ * Data can be written to heap or direct buffers and read back from any
+ * {@link ByteBuffer} with {@link BinaryData#wrap(ByteBuffer)}.
+ * 
+ */
+public class BinarySerializationMethod implements
+		SerializationMethod<BinaryData> {
+
+	static final byte NULL = 0;
+	static final byte FALSE = 1;
+	static final byte TRUE = 2;
+	static final byte BYTE = 3;
+	static final byte CHAR = 4;
+	static final byte SHORT = 5;
+	static final byte INT = 6;
+	static final byte LONG = 7;
+	static final byte FLOAT = 8;
+	static final byte DOUBLE = 9;
+	static final byte STRING = 10;
+	static final byte OBJECT = 11;
+	static final byte ARRAY = 12;
+	static final byte BOOLEAN_ARRAY = 13;
+	static final byte BYTE_ARRAY = 14;
+	static final byte CHAR_ARRAY = 15;
+	static final byte SHORT_ARRAY = 16;
+	static final byte INT_ARRAY = 17;
+	static final byte LONG_ARRAY = 18;
+	static final byte FLOAT_ARRAY = 19;
+	static final byte DOUBLE_ARRAY = 20;
+	static final byte MAP = 21;
+
+	/**
+	 * Encoded keys, which are nearly always field names
+	 */
+	private static final ConcurrentMap<String, byte[]> KEYS = new ConcurrentHashMap<>();
+
+	private final boolean mDirect;
+
+	/**
+	 * Creates a method writing to heap buffers
+	 */
+	public BinarySerializationMethod() {
+		this(false);
+	}
+
+	/**
+	 * @param direct
+	 *            <b>true</b> to write to direct buffers
+	 */
+	public BinarySerializationMethod(boolean direct) {
+		mDirect = direct;
+	}
+
+	@Override
+	public BinaryData newData() {
+		return new BinaryData(mDirect);
+	}
+
+	@Override
+	public void storePrimitive(BinaryData out, String key, Object value) {
+		writeValue(out, key(key), value);
+	}
+
+	@Override
+	public void storeBoolean(BinaryData out, String key, boolean value) {
+		out.writeKey(value ? TRUE : FALSE, key(key));
+	}
+
+	@Override
+	public void storeByte(BinaryData out, String key, byte value) {
+		out.writeKey(BYTE, key(key));
+		out.writeByte(value);
+	}
+
+	@Override
+	public void storeChar(BinaryData out, String key, char value) {
+		out.writeKey(CHAR, key(key));
+		out.writeVarint(value);
+	}
+
+	@Override
+	public void storeShort(BinaryData out, String key, short value) {
+		out.writeKey(SHORT, key(key));
+		out.writeVarint(zigzag(value));
+	}
+
+	@Override
+	public void storeInt(BinaryData out, String key, int value) {
+		out.writeKey(INT, key(key));
+		out.writeVarint(zigzag(value));
+	}
+
+	@Override
+	public void storeLong(BinaryData out, String key, long value) {
+		out.writeKey(LONG, key(key));
+		out.writeVarlong(zigzag(value));
+	}
+
+	@Override
+	public void storeFloat(BinaryData out, String key, float value) {
+		out.writeKey(FLOAT, key(key));
+		out.writeFloat(value);
+	}
+
+	@Override
+	public void storeDouble(BinaryData out, String key, double value) {
+		out.writeKey(DOUBLE, key(key));
+		out.writeDouble(value);
+	}
+
+	@Override
+	public void storeSerializeable(BinaryData out, String key, Object object,
+			Serializer<BinaryData> serializer) {
+		BinaryData data = object == null ? null : serializer
+				.trySerialize(object);
+
+		if (data == null) {
+			out.writeKey(NULL, key(key));
+		} else {
+			out.writeKey(OBJECT, key(key));
+			out.writeData(data);
+		}
+	}
+
+	@Override
+	public void storePrimitiveArray(BinaryData out, String key, Object array) {
+		byte[] name = key(key);
+
+		if (array == null) {
+			out.writeKey(NULL, name);
+			return;
+		}
+
+		int length = Array.getLength(array);
+		Class<?> type = array.getClass().getComponentType();
+
+		if (type == boolean.class) {
+			out.writeKey(BOOLEAN_ARRAY, name);
+			out.writeVarint(length);
+			ByteBuffer block = out.block(length);
+			for (boolean value : (boolean[]) array)
+				block.put(value ? TRUE : FALSE);
+		} else if (type == byte.class) {
+			out.writeKey(BYTE_ARRAY, name);
+			out.writeVarint(length);
+			out.block(length).put((byte[]) array);
+		} else if (type == char.class) {
+			out.writeKey(CHAR_ARRAY, name);
+			out.writeVarint(length);
+			out.block(length * 2).asCharBuffer().put((char[]) array);
+		} else if (type == short.class) {
+			out.writeKey(SHORT_ARRAY, name);
+			out.writeVarint(length);
+			out.block(length * 2).asShortBuffer().put((short[]) array);
+		} else if (type == int.class) {
+			out.writeKey(INT_ARRAY, name);
+			out.writeVarint(length);
+			out.block(length * 4).asIntBuffer().put((int[]) array);
+		} else if (type == long.class) {
+			out.writeKey(LONG_ARRAY, name);
+			out.writeVarint(length);
+			out.block(length * 8).asLongBuffer().put((long[]) array);
+		} else if (type == float.class) {
+			out.writeKey(FLOAT_ARRAY, name);
+			out.writeVarint(length);
+			out.block(length * 4).asFloatBuffer().put((float[]) array);
+		} else if (type == double.class) {
+			out.writeKey(DOUBLE_ARRAY, name);
+			out.writeVarint(length);
+			out.block(length * 8).asDoubleBuffer().put((double[]) array);
+		} else {
+			out.writeKey(ARRAY, name);
+			out.writeVarint(length);
+			for (int i = 0; i < length; i++)
+				writeValue(out, null, Array.get(array, i));
+		}
+	}
+
+	@Override
+	public void storeSerializeableArray(BinaryData out, String key,
+			Object array, Serializer<BinaryData> serializer) {
+		byte[] name = key(key);
+
+		if (array == null) {
+			out.writeKey(NULL, name);
+			return;
+		}
+
+		out.writeKey(ARRAY, name);
+		out.writeVarint(Array.getLength(array));
+
+		for (BinaryData data : serializer
+				.trySerializeElements((Object[]) array)) {
+			if (data == null) {
+				out.writeByte(NULL);
+			} else {
+				out.writeByte(OBJECT);
+				out.writeData(data);
+			}
+		}
+	}
+
+	@Override
+	public void storePrimitiveCollection(BinaryData out, String key,
+			Collection<?> collection, Class<?> elementType) {
+		if (collection == null)
+			out.writeKey(NULL, key(key));
+		else
+			writeElements(out, key(key), collection, elementType);
+	}
+
+	@Override
+	public void storeSerializeableCollection(BinaryData out, String key,
+			Collection<?> collection, Serializer<BinaryData> serializer) {
+		if (collection == null)
+			out.writeKey(NULL, key(key));
+		else
+			writeObjects(out, key(key), collection, serializer);
+	}
+
+	@Override
+	public void storePrimitiveMap(BinaryData out, String key, Map<?, ?> map,
+			Class<?> valueType) {
+		if (map == null) {
+			out.writeKey(NULL, key(key));
+		} else {
+			writeKeys(out, key(key), map);
+			writeElements(out, null, map.values(), valueType);
+		}
+	}
+
+	@Override
+	public void storeSerializeableMap(BinaryData out, String key,
+			Map<?, ?> map, Serializer<BinaryData> serializer) {
+		if (map == null) {
+			out.writeKey(NULL, key(key));
+		} else {
+			writeKeys(out, key(key), map);
+			writeObjects(out, null, map.values(), serializer);
+		}
+	}
+
+	@Override
+	public Set<String> getKeys(BinaryData data) {
+		return data.keys();
+	}
+
+	@Override
+	public boolean hasKey(BinaryData data, String key) {
+		return data.has(key);
+	}
+
+	@Override
+	public boolean preservesOrder() {
+		return true;
+	}
+
+	@Override
+	public Object loadPrimitive(BinaryData in, String key) {
+		return readValue(in, in.seek(key));
+	}
+
+	@Override
+	public boolean loadBoolean(BinaryData in, String key) {
+		byte tag = in.seek(key);
+		if (tag == TRUE || tag == FALSE)
+			return tag == TRUE;
+		return Primitives.toBoolean(readValue(in, tag));
+	}
+
+	@Override
+	public byte loadByte(BinaryData in, String key) {
+		byte tag = in.seek(key);
+		if (tag == BYTE)
+			return in.readByte();
+		return Primitives.toByte(readValue(in, tag));
+	}
+
+	@Override
+	public char loadChar(BinaryData in, String key) {
+		byte tag = in.seek(key);
+		if (tag == CHAR)
+			return (char) in.readVarint();
+		return Primitives.toChar(readValue(in, tag));
+	}
+
+	@Override
+	public short loadShort(BinaryData in, String key) {
+		byte tag = in.seek(key);
+		if (tag == SHORT)
+			return (short) unzigzag(in.readVarint());
+		return Primitives.toShort(readValue(in, tag));
+	}
+
+	@Override
+	public int loadInt(BinaryData in, String key) {
+		byte tag = in.seek(key);
+		if (tag == INT)
+			return unzigzag(in.readVarint());
+		return Primitives.toInt(readValue(in, tag));
+	}
+
+	@Override
+	public long loadLong(BinaryData in, String key) {
+		byte tag = in.seek(key);
+		if (tag == LONG)
+			return unzigzag(in.readVarlong());
+		return Primitives.toLong(readValue(in, tag));
+	}
+
+	@Override
+	public float loadFloat(BinaryData in, String key) {
+		byte tag = in.seek(key);
+		if (tag == FLOAT)
+			return in.readFloat();
+		return Primitives.toFloat(readValue(in, tag));
+	}
+
+	@Override
+	public double loadDouble(BinaryData in, String key) {
+		byte tag = in.seek(key);
+		if (tag == DOUBLE)
+			return in.readDouble();
+		return Primitives.toDouble(readValue(in, tag));
+	}
+
+	@Override
+	public Object loadSerializeable(BinaryData in, String key,
+			Serializer<BinaryData> serializer, Class<?> clazz) {
+		return readObject(in, in.seek(key), serializer, clazz);
+	}
+
+	@Override
+	public Object loadPrimitiveArray(BinaryData in, String key, Class<?> clazz) {
+		byte tag = in.seek(key);
+
+		if (tag == NULL)
+			return null;
+
+		int length = in.readVarint();
+
+		if (tag == ARRAY) {
+			Object array = Array.newInstance(clazz, length);
+			for (int i = 0; i < length; i++)
+				Array.set(array, i,
+						Primitives.coerce(readValue(in, in.readByte()), clazz));
+			return array;
+		}
+
+		if (clazz == boolean.class && tag == BOOLEAN_ARRAY) {
+			boolean[] array = new boolean[length];
+			for (int i = 0; i < length; i++)
+				array[i] = in.readByte() == TRUE;
+			return array;
+		} else if (clazz == byte.class && tag == BYTE_ARRAY) {
+			byte[] array = new byte[length];
+			in.view(length).get(array);
+			return array;
+		} else if (clazz == char.class && tag == CHAR_ARRAY) {
+			char[] array = new char[length];
+			in.view(length * 2).asCharBuffer().get(array);
+			return array;
+		} else if (clazz == short.class && tag == SHORT_ARRAY) {
+			short[] array = new short[length];
+			in.view(length * 2).asShortBuffer().get(array);
+			return array;
+		} else if (clazz == int.class && tag == INT_ARRAY) {
+			int[] array = new int[length];
+			in.view(length * 4).asIntBuffer().get(array);
+			return array;
+		} else if (clazz == long.class && tag == LONG_ARRAY) {
+			long[] array = new long[length];
+			in.view(length * 8).asLongBuffer().get(array);
+			return array;
+		} else if (clazz == float.class && tag == FLOAT_ARRAY) {
+			float[] array = new float[length];
+			in.view(length * 4).asFloatBuffer().get(array);
+			return array;
+		} else if (clazz == double.class && tag == DOUBLE_ARRAY) {
+			double[] array = new double[length];
+			in.view(length * 8).asDoubleBuffer().get(array);
+			return array;
+		}
+
+		// Packed block of another primitive type
+		Object array = Array.newInstance(clazz, length);
+		for (int i = 0; i < length; i++)
+			Array.set(array, i,
+					Primitives.coerce(readElement(in, tag), clazz));
+		return array;
+	}
+
+	@Override
+	public Object loadSerializeableArray(BinaryData in, String key,
+			Serializer<BinaryData> serializer, Class<?> clazz) {
+		byte tag = in.seek(key);
+
+		if (tag == NULL)
+			return null;
+		if (tag != ARRAY)
+			throw new IllegalArgumentException("Not an object array: " + key);
+
+		// Views of the elements are sliced in order, then deserialized
+		int length = in.readVarint();
+		List<BinaryData> objects = new ArrayList<>(length);
+
+		for (int i = 0; i < length; i++)
+			objects.add(readData(in, in.readByte()));
+
+		Object[] array = (Object[]) Array.newInstance(clazz, length);
+		serializer.tryDeserializeElements(clazz, objects, array);
+		return array;
+	}
+
+	@Override
+	public Collection<Object> loadPrimitiveCollection(BinaryData in,
+			String key, Class<?> elementType, Collection<Object> into) {
+		byte tag = in.seek(key);
+
+		if (tag == NULL)
+			return null;
+
+		readElements(in, tag, elementType, into);
+		return into;
+	}
+
+	@Override
+	public Collection<Object> loadSerializeableCollection(BinaryData in,
+			String key, Serializer<BinaryData> serializer,
+			Class<?> elementType, Collection<Object> into) {
+		byte tag = in.seek(key);
+
+		if (tag == NULL)
+			return null;
+
+		readObjects(in, tag, serializer, elementType, into);
+		return into;
+	}
+
+	@Override
+	public Map<Object, Object> loadPrimitiveMap(BinaryData in, String key,
+			Class<?> keyType, Class<?> valueType, Map<Object, Object> into) {
+		byte tag = in.seek(key);
+
+		if (tag == NULL)
+			return null;
+
+		List<Object> keys = readKeys(in, tag, keyType);
+		List<Object> values = new ArrayList<>(keys.size());
+		readElements(in, in.readByte(), valueType, values);
+		return zip(keys, values, into);
+	}
+
+	@Override
+	public Map<Object, Object> loadSerializeableMap(BinaryData in,
+			String key, Serializer<BinaryData> serializer, Class<?> keyType,
+			Class<?> valueType, Map<Object, Object> into) {
+		byte tag = in.seek(key);
+
+		if (tag == NULL)
+			return null;
+
+		List<Object> keys = readKeys(in, tag, keyType);
+		List<Object> values = new ArrayList<>(keys.size());
+		readObjects(in, in.readByte(), serializer, valueType, values);
+		return zip(keys, values, into);
+	}
+
+	/**
+	 * Writes a collection of primitives as a packed block if its elements
+	 * are boxed primitives and none is null, otherwise as a tagged array
+	 * 
+	 * @param key
+	 *            encoded key, or <b>null</b> for the values of a map
+	 */
+	private static void writeElements(BinaryData out, byte[] key,
+			Collection<?> values, Class<?> type) {
+		int length = values.size();
+		Class<?> component = Primitives.unbox(type);
+
+		for (Object value : values)
+			if (value == null)
+				component = type;
+
+		byte tag;
+		if (component == boolean.class)
+			tag = BOOLEAN_ARRAY;
+		else if (component == byte.class)
+			tag = BYTE_ARRAY;
+		else if (component == char.class)
+			tag = CHAR_ARRAY;
+		else if (component == short.class)
+			tag = SHORT_ARRAY;
+		else if (component == int.class)
+			tag = INT_ARRAY;
+		else if (component == long.class)
+			tag = LONG_ARRAY;
+		else if (component == float.class)
+			tag = FLOAT_ARRAY;
+		else if (component == double.class)
+			tag = DOUBLE_ARRAY;
+		else
+			tag = ARRAY;
+
+		if (key == null)
+			out.writeByte(tag);
+		else
+			out.writeKey(tag, key);
+		out.writeVarint(length);
+
+		Iterator<?> iterator = values.iterator();
+		switch (tag) {
+		case BOOLEAN_ARRAY: {
+			ByteBuffer block = out.block(length);
+			while (iterator.hasNext())
+				block.put(Primitives.toBoolean(iterator.next()) ? TRUE : FALSE);
+			break;
+		}
+		case BYTE_ARRAY: {
+			ByteBuffer block = out.block(length);
+			while (iterator.hasNext())
+				block.put(Primitives.toByte(iterator.next()));
+			break;
+		}
+		case CHAR_ARRAY: {
+			ByteBuffer block = out.block(length * 2);
+			while (iterator.hasNext())
+				block.putChar(Primitives.toChar(iterator.next()));
+			break;
+		}
+		case SHORT_ARRAY: {
+			ByteBuffer block = out.block(length * 2);
+			while (iterator.hasNext())
+				block.putShort(Primitives.toShort(iterator.next()));
+			break;
+		}
+		case INT_ARRAY: {
+			IntBuffer block = out.block(length * 4).asIntBuffer();
+			while (iterator.hasNext())
+				block.put(Primitives.toInt(iterator.next()));
+			break;
+		}
+		case LONG_ARRAY: {
+			LongBuffer block = out.block(length * 8).asLongBuffer();
+			while (iterator.hasNext())
+				block.put(Primitives.toLong(iterator.next()));
+			break;
+		}
+		case FLOAT_ARRAY: {
+			ByteBuffer block = out.block(length * 4);
+			while (iterator.hasNext())
+				block.putFloat(Primitives.toFloat(iterator.next()));
+			break;
+		}
+		case DOUBLE_ARRAY: {
+			DoubleBuffer block = out.block(length * 8).asDoubleBuffer();
+			while (iterator.hasNext())
+				block.put(Primitives.toDouble(iterator.next()));
+			break;
+		}
+		default:
+			while (iterator.hasNext())
+				writeValue(out, null, Primitives.coerce(iterator.next(), type));
+		}
+	}
+
+	/**
+	 * Writes a collection of serializeable objects as a tagged array
+	 * 
+	 * @param key
+	 *            encoded key, or <b>null</b> for the values of a map
+	 */
+	private static void writeObjects(BinaryData out, byte[] key,
+			Collection<?> values, Serializer<BinaryData> serializer) {
+		if (key == null)
+			out.writeByte(ARRAY);
+		else
+			out.writeKey(ARRAY, key);
+		out.writeVarint(values.size());
+
+		for (Object object : values) {
+			BinaryData data = object == null ? null : serializer
+					.trySerialize(object);
+
+			if (data == null) {
+				out.writeByte(NULL);
+			} else {
+				out.writeByte(OBJECT);
+				out.writeData(data);
+			}
+		}
+	}
+
+	/**
+	 * Writes the tag, size and keys of a map, to be followed by its values
+	 */
+	private static void writeKeys(BinaryData out, byte[] key, Map<?, ?> map) {
+		out.writeKey(MAP, key);
+		out.writeVarint(map.size());
+
+		for (Object name : map.keySet())
+			out.writeString(String.valueOf(name));
+	}
+
+	/**
+	 * Reads a collection written by {@link #writeElements}
+	 * 
+	 * @param tag
+	 *            tag of the collection, already read
+	 */
+	private static void readElements(BinaryData in, byte tag, Class<?> type,
+			Collection<Object> into) {
+		int length = in.readVarint();
+
+		if (tag == ARRAY) {
+			for (int i = 0; i < length; i++)
+				into.add(Primitives.coerce(readValue(in, in.readByte()), type));
+		} else if (tag == INT_ARRAY) {
+			IntBuffer block = in.view(length * 4).asIntBuffer();
+			for (int i = 0; i < length; i++)
+				into.add(Primitives.coerce(block.get(i), type));
+		} else if (tag == LONG_ARRAY) {
+			LongBuffer block = in.view(length * 8).asLongBuffer();
+			for (int i = 0; i < length; i++)
+				into.add(Primitives.coerce(block.get(i), type));
+		} else if (tag == DOUBLE_ARRAY) {
+			DoubleBuffer block = in.view(length * 8).asDoubleBuffer();
+			for (int i = 0; i < length; i++)
+				into.add(Primitives.coerce(block.get(i), type));
+		} else {
+			for (int i = 0; i < length; i++)
+				into.add(Primitives.coerce(readElement(in, tag), type));
+		}
+	}
+
+	/**
+	 * Reads a collection written by {@link #writeObjects}
+	 * 
+	 * @param tag
+	 *            tag of the collection, already read
+	 */
+	private static void readObjects(BinaryData in, byte tag,
+			Serializer<BinaryData> serializer, Class<?> type,
+			Collection<Object> into) {
+		if (tag != ARRAY)
+			throw new IllegalArgumentException("Not an object array, tag "
+					+ tag);
+
+		for (int i = in.readVarint(); i > 0; i--)
+			into.add(readObject(in, in.readByte(), serializer, type));
+	}
+
+	/**
+	 * Reads the size and keys of a map written by {@link #writeKeys}
+	 * 
+	 * @param tag
+	 *            tag of the map, already read
+	 * @param type
+	 *            boxed primitive type or String to convert the keys to
+	 */
+	private static List<Object> readKeys(BinaryData in, byte tag, Class<?> type) {
+		if (tag != MAP)
+			throw new IllegalArgumentException("Not a map, tag " + tag);
+
+		int size = in.readVarint();
+		List<Object> keys = new ArrayList<>(size);
+		for (int i = 0; i < size; i++)
+			keys.add(Primitives.coerce(in.readString(), type));
+		return keys;
+	}
+
+	private static Map<Object, Object> zip(List<Object> keys,
+			List<Object> values, Map<Object, Object> into) {
+		if (keys.size() != values.size())
+			throw new IllegalArgumentException(keys.size() + " keys but "
+					+ values.size() + " values");
+
+		for (int i = 0; i < keys.size(); i++)
+			into.put(keys.get(i), values.get(i));
+		return into;
+	}
+
+	private static Object readObject(BinaryData in, byte tag,
+			Serializer<BinaryData> serializer, Class<?> clazz) {
+		BinaryData data = readData(in, tag);
+		return data == null ? null : serializer.tryDeserialize(clazz, data);
+	}
+
+	/**
+	 * @return view of a nested object, or <b>null</b> for a null element
+	 */
+	private static BinaryData readData(BinaryData in, byte tag) {
+		if (tag == NULL)
+			return null;
+		if (tag != OBJECT)
+			throw new IllegalArgumentException("Not an object, tag " + tag);
+
+		return in.slice(in.readVarint());
+	}
+
+	/**
+	 * Writes a tagged value, choosing the tag from its class
+	 * 
+	 * @param key
+	 *            encoded key, or <b>null</b> for array elements
+	 */
+	private static void writeValue(BinaryData out, byte[] key, Object value) {
+		byte tag;
+
+		if (value == null)
+			tag = NULL;
+		else if (value instanceof Boolean)
+			tag = (Boolean) value ? TRUE : FALSE;
+		else if (value instanceof Byte)
+			tag = BYTE;
+		else if (value instanceof Character)
+			tag = CHAR;
+		else if (value instanceof Short)
+			tag = SHORT;
+		else if (value instanceof Integer)
+			tag = INT;
+		else if (value instanceof Long)
+			tag = LONG;
+		else if (value instanceof Float)
+			tag = FLOAT;
+		else if (value instanceof Double)
+			tag = DOUBLE;
+		else
+			tag = STRING;
+
+		if (key == null)
+			out.writeByte(tag);
+		else
+			out.writeKey(tag, key);
+
+		switch (tag) {
+		case BYTE:
+			out.writeByte((Byte) value);
+			break;
+		case CHAR:
+			out.writeVarint((Character) value);
+			break;
+		case SHORT:
+			out.writeVarint(zigzag((Short) value));
+			break;
+		case INT:
+			out.writeVarint(zigzag((Integer) value));
+			break;
+		case LONG:
+			out.writeVarlong(zigzag((Long) value));
+			break;
+		case FLOAT:
+			out.writeFloat((Float) value);
+			break;
+		case DOUBLE:
+			out.writeDouble((Double) value);
+			break;
+		case STRING:
+			out.writeString(value.toString());
+			break;
+		}
+	}
+
+	/**
+	 * Reads the payload of a scalar
+	 * 
+	 * @param tag
+	 *            tag of the value, already read
+	 * @return boxed value
+	 */
+	private static Object readValue(BinaryData in, byte tag) {
+		switch (tag) {
+		case NULL:
+			return null;
+		case FALSE:
+			return false;
+		case TRUE:
+			return true;
+		case BYTE:
+			return in.readByte();
+		case CHAR:
+			return (char) in.readVarint();
+		case SHORT:
+			return (short) unzigzag(in.readVarint());
+		case INT:
+			return unzigzag(in.readVarint());
+		case LONG:
+			return unzigzag(in.readVarlong());
+		case FLOAT:
+			return in.readFloat();
+		case DOUBLE:
+			return in.readDouble();
+		case STRING:
+			return in.readString();
+		default:
+			throw new IllegalArgumentException("Not a primitive, tag " + tag);
+		}
+	}
+
+	/**
+	 * Reads one element of a packed block
+	 * 
+	 * @param tag
+	 *            tag of the block
+	 * @return boxed element
+	 */
+	private static Object readElement(BinaryData in, byte tag) {
+		switch (tag) {
+		case BOOLEAN_ARRAY:
+			return in.readByte() == TRUE;
+		case BYTE_ARRAY:
+			return in.readByte();
+		case CHAR_ARRAY:
+			return in.view(2).getChar();
+		case SHORT_ARRAY:
+			return in.view(2).getShort();
+		case INT_ARRAY:
+			return in.view(4).getInt();
+		case LONG_ARRAY:
+			return in.view(8).getLong();
+		case FLOAT_ARRAY:
+			return in.readFloat();
+		case DOUBLE_ARRAY:
+			return in.readDouble();
+		default:
+			throw new IllegalArgumentException("Not an array, tag " + tag);
+		}
+	}
+
+	/**
+	 * Skips the payload of a value
+	 * 
+	 * @param tag
+	 *            tag of the value, already read
+	 */
+	static void skipPayload(BinaryData in, byte tag) {
+		switch (tag) {
+		case NULL:
+		case FALSE:
+		case TRUE:
+			break;
+		case BYTE:
+			in.skip(1);
+			break;
+		case CHAR:
+		case SHORT:
+		case INT:
+			in.readVarint();
+			break;
+		case LONG:
+			in.readVarlong();
+			break;
+		case FLOAT:
+			in.skip(4);
+			break;
+		case DOUBLE:
+			in.skip(8);
+			break;
+		case STRING:
+		case OBJECT:
+			in.skip(in.readVarint());
+			break;
+		case ARRAY:
+			for (int i = in.readVarint(); i > 0; i--)
+				skipPayload(in, in.readByte());
+			break;
+		case BOOLEAN_ARRAY:
+		case BYTE_ARRAY:
+			in.skip(in.readVarint());
+			break;
+		case CHAR_ARRAY:
+		case SHORT_ARRAY:
+			in.skip(in.readVarint() * 2);
+			break;
+		case INT_ARRAY:
+		case FLOAT_ARRAY:
+			in.skip(in.readVarint() * 4);
+			break;
+		case LONG_ARRAY:
+		case DOUBLE_ARRAY:
+			in.skip(in.readVarint() * 8);
+			break;
+		case MAP:
+			for (int i = in.readVarint(); i > 0; i--)
+				in.skip(in.readVarint());
+			skipPayload(in, in.readByte());
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown tag " + tag);
+		}
+	}
+
+	private static byte[] key(String key) {
+		byte[] bytes = KEYS.get(key);
+		if (bytes == null) {
+			bytes = key.getBytes(StandardCharsets.UTF_8);
+			if (KEYS.size() < 4096)
+				KEYS.putIfAbsent(key, bytes);
+		}
+		return bytes;
+	}
+
+	private static int zigzag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	private static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static int unzigzag(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+}
@@ -0,0 +1,489 @@
+package com.prettymuchabigdeal.serializer.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.prettymuchabigdeal.serializer.ClassDescriptor;
+import com.prettymuchabigdeal.serializer.FieldDescriptor;
+import com.prettymuchabigdeal.serializer.Primitives;
+import com.prettymuchabigdeal.serializer.Schema;
+import com.prettymuchabigdeal.serializer.SchemaRegistry;
+import com.prettymuchabigdeal.serializer.Serializable;
+import com.prettymuchabigdeal.serializer.SerializationReader;
+import com.prettymuchabigdeal.serializer.except.DifferentVersionException;
+
+/**
+ * Reads objects written by {@link BinaryStreamWriter}. When the fingerprint
+ * of an object matches the schema of the expected class, which is checked
+ * with a single compare, field ids are used as indices into
+ * {@link ClassDescriptor#getFields()} directly. Otherwise the schema the
+ * object was written with is looked up in a {@link SchemaRegistry}, and its
+ * fields are matched to the local fields by name and type, skipping those
+ * that no longer exist.
+ * 
+ */
+public class BinaryStreamReader implements SerializationReader {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final InputStream mIn;
+	private final SchemaRegistry mRegistry;
+	private final byte[] mBuffer = new byte[BUFFER_SIZE];
+	private int mPosition;
+	private int mLimit;
+
+	/**
+	 * Fields of the schema being read, by schema, when it is not the local one
+	 */
+	private final Map<Schema, FieldDescriptor[]> mMappings = new HashMap<>();
+
+	/**
+	 * Schema each object was written with, or <b>null</b> for arrays and maps,
+	 * by depth
+	 */
+	private Schema[] mSchemas = new Schema[16];
+
+	/**
+	 * Local field of each schema field, or <b>null</b> when the schema is the
+	 * local one, by depth
+	 */
+	private FieldDescriptor[][] mMapped = new FieldDescriptor[16][];
+
+	/**
+	 * Field read last in each object, by depth
+	 */
+	private FieldDescriptor[] mFields = new FieldDescriptor[16];
+
+	/**
+	 * Elements left in each array or map, by depth
+	 */
+	private int[] mRemaining = new int[16];
+
+	/**
+	 * Whether array elements are preceded by a presence byte, by depth
+	 */
+	private boolean[] mNullable = new boolean[16];
+	private int mDepth;
+
+	/**
+	 * @param stream
+	 *            input to read from
+	 * @param registry
+	 *            registry to resolve schemas other than the local ones from
+	 */
+	public BinaryStreamReader(InputStream stream, SchemaRegistry registry) {
+		mIn = stream;
+		mRegistry = registry;
+	}
+
+	/**
+	 * Creates a reader resolving schemas from
+	 * {@link SchemaRegistry#getDefault()}
+	 */
+	public BinaryStreamReader(InputStream stream) {
+		this(stream, SchemaRegistry.getDefault());
+	}
+
+	public BinaryStreamReader(byte[] bytes) {
+		this(new ByteArrayInputStream(bytes));
+	}
+
+	@Override
+	public void beginObject(ClassDescriptor descriptor) throws IOException,
+			DifferentVersionException {
+		long fingerprint = readFixedLong();
+		Schema local = descriptor.getSchema();
+
+		if (fingerprint == local.getFingerprint()) {
+			push(local, null);
+			return;
+		}
+
+		Schema schema = resolve(fingerprint);
+		if (!schema.getName().equals(local.getName()))
+			throw new IOException("Expected " + local.getName()
+					+ " but found " + schema.getName());
+
+		Serializable annotation = descriptor.getAnnotation();
+		if (annotation.includeVersion()
+				&& annotation.version() != schema.getVersion())
+			throw new DifferentVersionException(annotation.version(),
+					schema.getVersion());
+
+		push(schema, mapping(descriptor, schema));
+	}
+
+	@Override
+	public FieldDescriptor nextField(ClassDescriptor descriptor)
+			throws IOException {
+		List<Schema.Field> fields = mSchemas[mDepth].getFields();
+		FieldDescriptor[] mapped = mMapped[mDepth];
+
+		for (;;) {
+			int id = readVarint() - 1;
+
+			if (id < 0) {
+				mDepth--;
+				return null;
+			}
+			if (id >= fields.size())
+				throw new IOException("Unknown field id " + id + " of "
+						+ mSchemas[mDepth].getName());
+
+			FieldDescriptor field = mapped == null ? descriptor.getFields()
+					.get(id) : mapped[id];
+
+			if (field != null)
+				return mFields[mDepth] = field;
+
+			skipValue(fields.get(id));
+		}
+	}
+
+	@Override
+	public int beginArray() throws IOException {
+		FieldDescriptor field = mSchemas[mDepth] != null ? mFields[mDepth]
+				: null;
+		boolean nullable = field == null
+				|| !field.getComponentType().isPrimitive();
+		int length = readVarint();
+
+		push(null, null);
+		mRemaining[mDepth] = length;
+		mNullable[mDepth] = nullable;
+		return length;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (mRemaining[mDepth] == 0)
+			return false;
+
+		mRemaining[mDepth]--;
+		return true;
+	}
+
+	@Override
+	public void endArray() throws IOException {
+		if (mRemaining[mDepth] != 0)
+			throw new IOException(mRemaining[mDepth]
+					+ " array elements left unread");
+		mDepth--;
+	}
+
+	@Override
+	public int beginMap() throws IOException {
+		int size = readVarint();
+
+		push(null, null);
+		mRemaining[mDepth] = size;
+		// Values of maps are always boxed
+		mNullable[mDepth] = true;
+		return size;
+	}
+
+	@Override
+	public String nextKey() throws IOException {
+		if (mRemaining[mDepth] == 0) {
+			mDepth--;
+			return null;
+		}
+
+		mRemaining[mDepth]--;
+		return readString();
+	}
+
+	@Override
+	public boolean nextNull() throws IOException {
+		// Null fields are never written, only elements can be null
+		return mSchemas[mDepth] == null && mNullable[mDepth]
+				&& readByte() == 0;
+	}
+
+	@Override
+	public boolean readBoolean() throws IOException {
+		return readByte() != 0;
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		if (mPosition == mLimit)
+			fill(1);
+		return mBuffer[mPosition++];
+	}
+
+	@Override
+	public char readChar() throws IOException {
+		return (char) readVarint();
+	}
+
+	@Override
+	public short readShort() throws IOException {
+		return (short) readInt();
+	}
+
+	@Override
+	public int readInt() throws IOException {
+		int value = readVarint();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	@Override
+	public long readLong() throws IOException {
+		long value = readVarlong();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	@Override
+	public float readFloat() throws IOException {
+		return Float.intBitsToFloat(readFixedInt());
+	}
+
+	@Override
+	public double readDouble() throws IOException {
+		return Double.longBitsToDouble(readFixedLong());
+	}
+
+	@Override
+	public String readString() throws IOException {
+		int length = readVarint();
+
+		if (length > BUFFER_SIZE) {
+			byte[] bytes = new byte[length];
+			int read = mLimit - mPosition;
+			System.arraycopy(mBuffer, mPosition, bytes, 0, read);
+			mPosition = mLimit;
+
+			while (read < length) {
+				int count = mIn.read(bytes, read, length - read);
+				if (count < 0)
+					throw new EOFException();
+				read += count;
+			}
+
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		if (mLimit - mPosition < length)
+			fill(length);
+
+		String value = new String(mBuffer, mPosition, length,
+				StandardCharsets.UTF_8);
+		mPosition += length;
+		return value;
+	}
+
+	@Override
+	public Object readPrimitiveArray(Class<?> componentType)
+			throws IOException {
+		if (componentType == int.class) {
+			int[] values = new int[readVarint()];
+			for (int i = 0; i < values.length; i++)
+				values[i] = readInt();
+			return values;
+		} else if (componentType == long.class) {
+			long[] values = new long[readVarint()];
+			for (int i = 0; i < values.length; i++)
+				values[i] = readLong();
+			return values;
+		} else if (componentType == double.class) {
+			double[] values = new double[readVarint()];
+			for (int i = 0; i < values.length; i++)
+				values[i] = readDouble();
+			return values;
+		} else if (componentType == byte.class) {
+			byte[] values = new byte[readVarint()];
+			for (int i = 0; i < values.length; i++)
+				values[i] = readByte();
+			return values;
+		}
+
+		return SerializationReader.super.readPrimitiveArray(componentType);
+	}
+
+	private Schema resolve(long fingerprint) throws IOException {
+		Schema schema = mRegistry.get(fingerprint);
+		if (schema == null)
+			throw new IOException("Unknown schema "
+					+ Long.toHexString(fingerprint));
+		return schema;
+	}
+
+	/**
+	 * Matches the fields of a foreign schema to local fields by name and type
+	 */
+	private FieldDescriptor[] mapping(ClassDescriptor descriptor, Schema schema) {
+		FieldDescriptor[] mapped = mMappings.get(schema);
+
+		if (mapped == null) {
+			List<Schema.Field> fields = schema.getFields();
+			mapped = new FieldDescriptor[fields.size()];
+
+			for (int i = 0; i < mapped.length; i++) {
+				Schema.Field field = fields.get(i);
+				FieldDescriptor local = descriptor.getField(field.getName());
+
+				if (local != null
+						&& local.getTypeName().equals(field.getTypeName()))
+					mapped[i] = local;
+			}
+
+			mMappings.put(schema, mapped);
+		}
+
+		return mapped;
+	}
+
+	private void skipValue(Schema.Field field) throws IOException {
+		switch (field.getFieldType()) {
+		case PRIMITIVE:
+			skipScalar(field.getKind());
+			break;
+		case PRIMITVE_ARRAY:
+			for (int i = readVarint(); i > 0; i--)
+				if (!field.isNullable() || readByte() != 0)
+					skipScalar(field.getKind());
+			break;
+		case SERIALIZEABLE:
+			skipObject();
+			break;
+		case SERIALIZEABLE_ARRAY:
+		case SERIALIZEABLE_COLLECTION:
+			for (int i = readVarint(); i > 0; i--)
+				if (readByte() != 0)
+					skipObject();
+			break;
+		case PRIMITIVE_COLLECTION:
+			for (int i = readVarint(); i > 0; i--)
+				if (readByte() != 0)
+					skipScalar(field.getKind());
+			break;
+		case PRIMITIVE_MAP:
+			for (int i = readVarint(); i > 0; i--) {
+				readString();
+				if (readByte() != 0)
+					skipScalar(field.getKind());
+			}
+			break;
+		case SERIALIZEABLE_MAP:
+			for (int i = readVarint(); i > 0; i--) {
+				readString();
+				if (readByte() != 0)
+					skipObject();
+			}
+			break;
+		}
+	}
+
+	private void skipObject() throws IOException {
+		List<Schema.Field> fields = resolve(readFixedLong()).getFields();
+
+		for (int id = readVarint() - 1; id >= 0; id = readVarint() - 1)
+			skipValue(fields.get(id));
+	}
+
+	private void skipScalar(Primitives.Kind kind) throws IOException {
+		switch (kind) {
+		case BOOLEAN:
+		case BYTE:
+			readByte();
+			break;
+		case CHAR:
+		case SHORT:
+		case INT:
+			readVarint();
+			break;
+		case LONG:
+			readVarlong();
+			break;
+		case FLOAT:
+			readFixedInt();
+			break;
+		case DOUBLE:
+			readFixedLong();
+			break;
+		case OBJECT:
+			readString();
+			break;
+		}
+	}
+
+	private void push(Schema schema, FieldDescriptor[] mapped) {
+		if (++mDepth == mSchemas.length) {
+			int length = mDepth * 2;
+			mSchemas = Arrays.copyOf(mSchemas, length);
+			mMapped = Arrays.copyOf(mMapped, length);
+			mFields = Arrays.copyOf(mFields, length);
+			mRemaining = Arrays.copyOf(mRemaining, length);
+			mNullable = Arrays.copyOf(mNullable, length);
+		}
+		mSchemas[mDepth] = schema;
+		mMapped[mDepth] = mapped;
+		mFields[mDepth] = null;
+	}
+
+	private int readVarint() throws IOException {
+		int value = 0;
+		for (int shift = 0;; shift += 7) {
+			byte b = readByte();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0)
+				return value;
+		}
+	}
+
+	private long readVarlong() throws IOException {
+		long value = 0;
+		for (int shift = 0;; shift += 7) {
+			byte b = readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0)
+				return value;
+		}
+	}
+
+	private int readFixedInt() throws IOException {
+		if (mLimit - mPosition < 4)
+			fill(4);
+
+		int value = 0;
+		for (int i = 0; i < 4; i++)
+			value = (value << 8) | (mBuffer[mPosition++] & 0xFF);
+		return value;
+	}
+
+	private long readFixedLong() throws IOException {
+		if (mLimit - mPosition < 8)
+			fill(8);
+
+		long value = 0;
+		for (int i = 0; i < 8; i++)
+			value = (value << 8) | (mBuffer[mPosition++] & 0xFF);
+		return value;
+	}
+
+	/**
+	 * Reads until at least length bytes are buffered
+	 */
+	private void fill(int length) throws IOException {
+		int remaining = mLimit - mPosition;
+		System.arraycopy(mBuffer, mPosition, mBuffer, 0, remaining);
+		mPosition = 0;
+		mLimit = remaining;
+
+		while (mLimit < length) {
+			int count = mIn.read(mBuffer, mLimit, BUFFER_SIZE - mLimit);
+			if (count < 0)
+				throw new EOFException();
+			mLimit += count;
+		}
+	}
+
+}
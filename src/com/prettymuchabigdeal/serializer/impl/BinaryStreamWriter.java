@@ -0,0 +1,297 @@
+package com.prettymuchabigdeal.serializer.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.prettymuchabigdeal.serializer.ClassDescriptor;
+import com.prettymuchabigdeal.serializer.FieldDescriptor;
+import com.prettymuchabigdeal.serializer.Schema;
+import com.prettymuchabigdeal.serializer.SerializationWriter;
+
+/**
+ * Writes objects against their {@link Schema}. Each object starts with the 64
+ * bit fingerprint of its schema, followed by the numeric id of each present
+ * field and its untagged value, and ends with a zero. Field names and the
+ * version are never written, they are recovered from the schema by
+ * {@link BinaryStreamReader}.<br>
+ * <br>
+ * Ints, shorts, chars and longs are written as zigzag varints, floats and
+ * doubles as big endian, strings, arrays and maps prefixed with their length.
+ * Each entry of a map is its key as a string followed by its value. Elements
+ * of arrays and values of maps that may hold null are preceded by a presence
+ * byte, null fields are simply left out.
+ * 
+ */
+public class BinaryStreamWriter implements SerializationWriter {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final OutputStream mOut;
+	private final byte[] mBuffer = new byte[BUFFER_SIZE];
+	private int mCount;
+
+	/**
+	 * Field written last in each object, or <b>null</b> for arrays, by depth
+	 */
+	private FieldDescriptor[] mFields = new FieldDescriptor[16];
+
+	/**
+	 * Whether array elements are preceded by a presence byte, by depth
+	 */
+	private boolean[] mNullable = new boolean[16];
+	private int mDepth;
+
+	/**
+	 * Id of the field whose value is written next, or <code>-1</code>
+	 */
+	private int mPending = -1;
+
+	public BinaryStreamWriter(OutputStream stream) {
+		mOut = stream;
+	}
+
+	@Override
+	public void beginObject(ClassDescriptor descriptor) throws IOException {
+		beforeValue();
+		writeFixedLong(descriptor.getSchema().getFingerprint());
+		push(null, false);
+	}
+
+	@Override
+	public void field(FieldDescriptor field) throws IOException {
+		mFields[mDepth] = field;
+		mPending = field.getIndex();
+	}
+
+	@Override
+	public void endObject() throws IOException {
+		mPending = -1;
+		mDepth--;
+		writeVarint(0);
+	}
+
+	@Override
+	public void beginArray(int length) throws IOException {
+		FieldDescriptor field = mFields[mDepth];
+		boolean nullable = field == null
+				|| !field.getComponentType().isPrimitive();
+
+		beforeValue();
+		writeVarint(length);
+		push(null, nullable);
+	}
+
+	@Override
+	public void endArray() throws IOException {
+		mDepth--;
+	}
+
+	@Override
+	public void beginMap(int size) throws IOException {
+		beforeValue();
+		writeVarint(size);
+		// Values of maps are always boxed
+		push(null, true);
+	}
+
+	@Override
+	public void key(String key) throws IOException {
+		writeUTF(key);
+	}
+
+	@Override
+	public void endMap() throws IOException {
+		mDepth--;
+	}
+
+	@Override
+	public void writeNull() throws IOException {
+		if (mPending >= 0) {
+			// Absent fields are read as null
+			mPending = -1;
+		} else if (mNullable[mDepth]) {
+			ensure(1);
+			mBuffer[mCount++] = 0;
+		} else {
+			throw new IllegalStateException("Null in a primitive array");
+		}
+	}
+
+	@Override
+	public void writeBoolean(boolean value) throws IOException {
+		beforeValue();
+		ensure(1);
+		mBuffer[mCount++] = (byte) (value ? 1 : 0);
+	}
+
+	@Override
+	public void writeByte(byte value) throws IOException {
+		beforeValue();
+		ensure(1);
+		mBuffer[mCount++] = value;
+	}
+
+	@Override
+	public void writeChar(char value) throws IOException {
+		beforeValue();
+		writeVarint(value);
+	}
+
+	@Override
+	public void writeShort(short value) throws IOException {
+		beforeValue();
+		writeVarint((value << 1) ^ (value >> 31));
+	}
+
+	@Override
+	public void writeInt(int value) throws IOException {
+		beforeValue();
+		writeVarint((value << 1) ^ (value >> 31));
+	}
+
+	@Override
+	public void writeLong(long value) throws IOException {
+		beforeValue();
+		writeVarlong((value << 1) ^ (value >> 63));
+	}
+
+	@Override
+	public void writeFloat(float value) throws IOException {
+		beforeValue();
+		writeFixedInt(Float.floatToIntBits(value));
+	}
+
+	@Override
+	public void writeDouble(double value) throws IOException {
+		beforeValue();
+		writeFixedLong(Double.doubleToLongBits(value));
+	}
+
+	@Override
+	public void writeString(String value) throws IOException {
+		beforeValue();
+		writeUTF(value);
+	}
+
+	@Override
+	public void writePrimitiveArray(Object array) throws IOException {
+		if (array instanceof int[]) {
+			int[] values = (int[]) array;
+			beforeValue();
+			writeVarint(values.length);
+			for (int value : values)
+				writeVarint((value << 1) ^ (value >> 31));
+		} else if (array instanceof long[]) {
+			long[] values = (long[]) array;
+			beforeValue();
+			writeVarint(values.length);
+			for (long value : values)
+				writeVarlong((value << 1) ^ (value >> 63));
+		} else if (array instanceof double[]) {
+			double[] values = (double[]) array;
+			beforeValue();
+			writeVarint(values.length);
+			for (double value : values)
+				writeFixedLong(Double.doubleToLongBits(value));
+		} else if (array instanceof byte[]) {
+			byte[] values = (byte[]) array;
+			beforeValue();
+			writeVarint(values.length);
+			for (byte value : values) {
+				ensure(1);
+				mBuffer[mCount++] = value;
+			}
+		} else {
+			SerializationWriter.super.writePrimitiveArray(array);
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		flushBuffer();
+		mOut.flush();
+	}
+
+	/**
+	 * Writes the id of a pending field, or the presence byte of an array
+	 * element
+	 */
+	private void beforeValue() throws IOException {
+		if (mPending >= 0) {
+			writeVarint(mPending + 1);
+			mPending = -1;
+		} else if (mNullable[mDepth]) {
+			ensure(1);
+			mBuffer[mCount++] = 1;
+		}
+	}
+
+	private void push(FieldDescriptor field, boolean nullable) {
+		if (++mDepth == mFields.length) {
+			mFields = Arrays.copyOf(mFields, mDepth * 2);
+			mNullable = Arrays.copyOf(mNullable, mDepth * 2);
+		}
+		mFields[mDepth] = field;
+		mNullable[mDepth] = nullable;
+	}
+
+	/**
+	 * Writes a string prefixed with its length, without a presence byte
+	 */
+	private void writeUTF(String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarint(bytes.length);
+
+		if (bytes.length > BUFFER_SIZE) {
+			flushBuffer();
+			mOut.write(bytes);
+		} else {
+			ensure(bytes.length);
+			System.arraycopy(bytes, 0, mBuffer, mCount, bytes.length);
+			mCount += bytes.length;
+		}
+	}
+
+	private void writeVarint(int value) throws IOException {
+		ensure(5);
+		while ((value & ~0x7F) != 0) {
+			mBuffer[mCount++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		mBuffer[mCount++] = (byte) value;
+	}
+
+	private void writeVarlong(long value) throws IOException {
+		ensure(10);
+		while ((value & ~0x7FL) != 0) {
+			mBuffer[mCount++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		mBuffer[mCount++] = (byte) value;
+	}
+
+	private void writeFixedInt(int value) throws IOException {
+		ensure(4);
+		for (int shift = 24; shift >= 0; shift -= 8)
+			mBuffer[mCount++] = (byte) (value >>> shift);
+	}
+
+	private void writeFixedLong(long value) throws IOException {
+		ensure(8);
+		for (int shift = 56; shift >= 0; shift -= 8)
+			mBuffer[mCount++] = (byte) (value >>> shift);
+	}
+
+	private void ensure(int length) throws IOException {
+		if (mCount + length > BUFFER_SIZE)
+			flushBuffer();
+	}
+
+	private void flushBuffer() throws IOException {
+		mOut.write(mBuffer, 0, mCount);
+		mCount = 0;
+	}
+
+}
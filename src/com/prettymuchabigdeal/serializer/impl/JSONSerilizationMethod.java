@@ -1,11 +1,22 @@
 package com.prettymuchabigdeal.serializer.impl;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.json.JSONArray;
+import org.json.JSONByteTokener;
+import org.json.JSONByteWriter;
 import org.json.JSONObject;
 
+import com.prettymuchabigdeal.serializer.ClassDescriptor;
+import com.prettymuchabigdeal.serializer.Primitives;
 import com.prettymuchabigdeal.serializer.SerializationMethod;
 import com.prettymuchabigdeal.serializer.Serializer;
 
@@ -16,49 +27,174 @@ public class JSONSerilizationMethod implements SerializationMethod<JSONObject> {
 		return new JSONObject();
 	}
 
+	@Override
+	public JSONObject newData(ClassDescriptor descriptor) {
+		// One key per field, plus one for the version
+		return new JSONObject(descriptor.getFields().size() + 1);
+	}
+
 	@Override
 	public void storePrimitive(JSONObject out, String key, Object value) {
 		out.put(key, value);
 	}
 
+	@Override
+	public void storeBoolean(JSONObject out, String key, boolean value) {
+		out.put(key, value);
+	}
+
+	@Override
+	public void storeInt(JSONObject out, String key, int value) {
+		out.put(key, value);
+	}
+
+	@Override
+	public void storeLong(JSONObject out, String key, long value) {
+		out.put(key, value);
+	}
+
+	@Override
+	public void storeDouble(JSONObject out, String key, double value) {
+		out.put(key, value);
+	}
+
 	@Override
 	public void storeSerializeable(JSONObject out, String key, Object object,
 			Serializer<JSONObject> serializer) {
-		out.put(key, serializer.trySerialize(object));
+		out.put(key, object == null ? null : serializer.trySerialize(object));
 	}
 
 	@Override
 	public void storePrimitiveArray(JSONObject out, String key, Object array) {
+		if (array == null) {
+			out.remove(key);
+			return;
+		}
+
+		// int, long, double and boolean arrays are kept unboxed
+		out.put(key, new JSONArray(array));
+	}
+
+	@Override
+	public void storeSerializeableArray(JSONObject out, String key,
+			Object array, Serializer<JSONObject> serializer) {
+		if (array == null) {
+			out.remove(key);
+			return;
+		}
+
 		JSONArray jsonArray = new JSONArray();
 
-		for (int i = 0; i < Array.getLength(array); i++)
-			jsonArray.put(Array.get(array, i));
+		for (JSONObject object : serializer
+				.trySerializeElements((Object[]) array))
+			jsonArray.put(object == null ? JSONObject.NULL : object);
 
 		out.put(key, jsonArray);
 	}
 
 	@Override
-	public void storeSerializeableArray(JSONObject out, String key,
-			Object array, Serializer<JSONObject> serializer) {
+	public void storePrimitiveCollection(JSONObject out, String key,
+			Collection<?> collection, Class<?> elementType) {
+		// Unboxed unless it holds a null, as primitive arrays are
+		out.put(key, collection == null ? null : new JSONArray(Primitives
+				.toArray(collection, elementType)));
+	}
+
+	@Override
+	public void storeSerializeableCollection(JSONObject out, String key,
+			Collection<?> collection, Serializer<JSONObject> serializer) {
+		if (collection == null) {
+			out.remove(key);
+			return;
+		}
+
 		JSONArray jsonArray = new JSONArray();
 
-		for (int i = 0; i < Array.getLength(array); i++)
-			jsonArray.put(serializer.trySerialize(Array.get(array, i)));
+		for (Object element : collection)
+			jsonArray.put(element == null ? JSONObject.NULL : serializer
+					.trySerialize(element));
 
 		out.put(key, jsonArray);
 	}
 
+	@Override
+	public void storePrimitiveMap(JSONObject out, String key, Map<?, ?> map,
+			Class<?> valueType) {
+		if (map == null) {
+			out.remove(key);
+			return;
+		}
+
+		JSONObject object = new JSONObject(map.size());
+
+		for (Map.Entry<?, ?> entry : map.entrySet())
+			object.put(String.valueOf(entry.getKey()),
+					JSONObject.wrap(entry.getValue()));
+
+		out.put(key, object);
+	}
+
+	@Override
+	public void storeSerializeableMap(JSONObject out, String key,
+			Map<?, ?> map, Serializer<JSONObject> serializer) {
+		if (map == null) {
+			out.remove(key);
+			return;
+		}
+
+		JSONObject object = new JSONObject(map.size());
+
+		for (Map.Entry<?, ?> entry : map.entrySet()) {
+			Object value = entry.getValue();
+			object.put(String.valueOf(entry.getKey()),
+					value == null ? JSONObject.NULL : serializer
+							.trySerialize(value));
+		}
+
+		out.put(key, object);
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public Set<String> getKeys(JSONObject data) {
 		return data.keySet();
 	}
 
+	@Override
+	public boolean hasKey(JSONObject data, String key) {
+		return data.has(key);
+	}
+
+	@Override
+	public boolean preservesOrder() {
+		return true;
+	}
+
 	@Override
 	public Object loadPrimitive(JSONObject in, String key) {
 		return in.get(key);
 	}
 
+	@Override
+	public boolean loadBoolean(JSONObject in, String key) {
+		return in.getBoolean(key);
+	}
+
+	@Override
+	public int loadInt(JSONObject in, String key) {
+		return in.getInt(key);
+	}
+
+	@Override
+	public long loadLong(JSONObject in, String key) {
+		return in.getLong(key);
+	}
+
+	@Override
+	public double loadDouble(JSONObject in, String key) {
+		return in.getDouble(key);
+	}
+
 	@Override
 	public Object loadSerializeable(JSONObject in, String key,
 			Serializer<JSONObject> serializer, Class<?> clazz) {
@@ -68,10 +204,24 @@ public class JSONSerilizationMethod implements SerializationMethod<JSONObject> {
 	@Override
 	public Object loadPrimitiveArray(JSONObject in, String key, Class<?> clazz) {
 		JSONArray jsonArray = in.getJSONArray(key);
+
+		if (clazz == int.class)
+			return jsonArray.toIntArray();
+		if (clazz == long.class)
+			return jsonArray.toLongArray();
+		if (clazz == double.class)
+			return jsonArray.toDoubleArray();
+		if (clazz == boolean.class)
+			return jsonArray.toBooleanArray();
+
 		Object array = Array.newInstance(clazz, jsonArray.length());
 
-		for (int i = 0; i < jsonArray.length(); i++)
-			Array.set(array, i, jsonArray.get(i));
+		// Numbers come back as whatever type JSON parsed them to
+		for (int i = 0; i < jsonArray.length(); i++) {
+			Object element = jsonArray.get(i);
+			Array.set(array, i, clazz.isPrimitive() ? Primitives.coerce(
+					element, clazz) : value(element, clazz));
+		}
 
 		return array;
 	}
@@ -80,14 +230,125 @@ public class JSONSerilizationMethod implements SerializationMethod<JSONObject> {
 	public Object loadSerializeableArray(JSONObject in, String key,
 			Serializer<JSONObject> serializer, Class<?> clazz) {
 		JSONArray jsonArray = in.getJSONArray(key);
-		Object array = Array.newInstance(clazz, jsonArray.length());
+		List<JSONObject> objects = new ArrayList<>(jsonArray.length());
 
-		for (int i = 0; i < jsonArray.length(); i++) {
-			JSONObject object = jsonArray.getJSONObject(i);
-			Array.set(array, i, serializer.tryDeserialize(clazz, object));
-		}
-		
+		for (int i = 0; i < jsonArray.length(); i++)
+			objects.add(jsonArray.isNull(i) ? null : jsonArray.getJSONObject(i));
+
+		Object[] array = (Object[]) Array.newInstance(clazz, objects.size());
+		serializer.tryDeserializeElements(clazz, objects, array);
 		return array;
 	}
 
+	@Override
+	public Collection<Object> loadPrimitiveCollection(JSONObject in,
+			String key, Class<?> elementType, Collection<Object> into) {
+		JSONArray jsonArray = in.getJSONArray(key);
+
+		for (int i = 0; i < jsonArray.length(); i++)
+			into.add(value(jsonArray.opt(i), elementType));
+
+		return into;
+	}
+
+	@Override
+	public Collection<Object> loadSerializeableCollection(JSONObject in,
+			String key, Serializer<JSONObject> serializer,
+			Class<?> elementType, Collection<Object> into) {
+		JSONArray jsonArray = in.getJSONArray(key);
+
+		for (int i = 0; i < jsonArray.length(); i++)
+			into.add(jsonArray.isNull(i) ? null : serializer.tryDeserialize(
+					elementType, jsonArray.getJSONObject(i)));
+
+		return into;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public Map<Object, Object> loadPrimitiveMap(JSONObject in, String key,
+			Class<?> keyType, Class<?> valueType, Map<Object, Object> into) {
+		JSONObject object = in.getJSONObject(key);
+
+		for (String name : (Set<String>) object.keySet())
+			into.put(Primitives.coerce(name, keyType),
+					value(object.opt(name), valueType));
+
+		return into;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public Map<Object, Object> loadSerializeableMap(JSONObject in,
+			String key, Serializer<JSONObject> serializer, Class<?> keyType,
+			Class<?> valueType, Map<Object, Object> into) {
+		JSONObject object = in.getJSONObject(key);
+
+		for (String name : (Set<String>) object.keySet())
+			into.put(Primitives.coerce(name, keyType), object.isNull(name)
+					? null : serializer.tryDeserialize(valueType,
+							object.getJSONObject(name)));
+
+		return into;
+	}
+
+	/**
+	 * @param value
+	 *            an element of a JSONArray or JSONObject
+	 * @param type
+	 *            boxed primitive type or String to convert it to
+	 * @return value as type, or <b>null</b> for {@link JSONObject#NULL}
+	 */
+	private static Object value(Object value, Class<?> type) {
+		return JSONObject.NULL.equals(value) ? null : Primitives.coerce(
+				value, type);
+	}
+
+	/**
+	 * Encodes serialized data as UTF-8 JSON text, for sending over the wire
+	 * 
+	 * @param data
+	 *            serialized data
+	 * @return UTF-8 encoded JSON text
+	 */
+	public byte[] toBytes(JSONObject data) {
+		JSONByteWriter writer = new JSONByteWriter();
+		data.write(writer);
+		return writer.toByteArray();
+	}
+
+	/**
+	 * Writes serialized data to a stream as UTF-8 JSON text
+	 * 
+	 * @param data
+	 *            serialized data
+	 * @param stream
+	 *            stream to write to, flushed but not closed
+	 * @throws IOException
+	 *             if stream could not be written
+	 */
+	public void write(JSONObject data, OutputStream stream) throws IOException {
+		JSONByteWriter writer = new JSONByteWriter(stream);
+		data.write(writer);
+		writer.flush();
+	}
+
+	/**
+	 * @param bytes
+	 *            UTF-8 encoded JSON text
+	 * @return serialized data parsed from bytes
+	 */
+	public JSONObject fromBytes(byte[] bytes) {
+		return new JSONObject(new JSONByteTokener(bytes));
+	}
+
+	/**
+	 * @param stream
+	 *            UTF-8 encoded JSON text
+	 * @return serialized data parsed from stream
+	 */
+	public JSONObject read(InputStream stream) {
+		return new JSONObject(new JSONByteTokener(stream));
+	}
+
 }
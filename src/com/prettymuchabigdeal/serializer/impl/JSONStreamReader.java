@@ -0,0 +1,393 @@
+package com.prettymuchabigdeal.serializer.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.json.JSONByteTokener;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import com.prettymuchabigdeal.serializer.ClassDescriptor;
+import com.prettymuchabigdeal.serializer.FieldDescriptor;
+import com.prettymuchabigdeal.serializer.Primitives;
+import com.prettymuchabigdeal.serializer.Serializable;
+import com.prettymuchabigdeal.serializer.SerializationReader;
+import com.prettymuchabigdeal.serializer.Serializer;
+import com.prettymuchabigdeal.serializer.except.DifferentVersionException;
+
+/**
+ * Reads JSON text token by token from a {@link JSONTokener}, accepting the
+ * same text as {@link JSONObject#JSONObject(JSONTokener)} without building a
+ * {@link JSONObject} tree.
+ * 
+ */
+public class JSONStreamReader implements SerializationReader {
+
+	private final JSONTokener mTokener;
+
+	/**
+	 * Whether the current object or array has no members yet, by depth
+	 */
+	private boolean[] mFirst = new boolean[16];
+
+	/**
+	 * Whether the version of the current object has been read, by depth
+	 */
+	private boolean[] mVersioned = new boolean[16];
+	private int mDepth;
+
+	public JSONStreamReader(JSONTokener tokener) {
+		mTokener = tokener;
+	}
+
+	public JSONStreamReader(Reader reader) {
+		this(new JSONTokener(reader));
+	}
+
+	/**
+	 * @param stream
+	 *            UTF-8 encoded JSON text
+	 */
+	public JSONStreamReader(InputStream stream) {
+		this(new JSONByteTokener(stream));
+	}
+
+	/**
+	 * @param bytes
+	 *            UTF-8 encoded JSON text
+	 */
+	public JSONStreamReader(byte[] bytes) {
+		this(new JSONByteTokener(bytes));
+	}
+
+	/**
+	 * @param buffer
+	 *            UTF-8 encoded JSON text, from its position to its limit
+	 */
+	public JSONStreamReader(ByteBuffer buffer) {
+		this(new JSONByteTokener(buffer));
+	}
+
+	@Override
+	public void beginObject(ClassDescriptor descriptor) {
+		if (mTokener.nextClean() != '{')
+			throw mTokener.syntaxError("A JSONObject text must begin with '{'");
+		push();
+	}
+
+	@Override
+	public FieldDescriptor nextField(ClassDescriptor descriptor)
+			throws DifferentVersionException {
+		for (;;) {
+			char c = mTokener.nextClean();
+
+			if (c != '}' && !mFirst[mDepth]) {
+				if (c != ',' && c != ';')
+					throw mTokener.syntaxError("Expected a ',' or '}'");
+				c = mTokener.nextClean();
+			}
+
+			if (c == 0)
+				throw mTokener.syntaxError("A JSONObject text must end with '}'");
+
+			if (c == '}') {
+				endObject(descriptor);
+				return null;
+			}
+
+			mFirst[mDepth] = false;
+
+			mTokener.back();
+			String key = mTokener.nextKey();
+
+			if (mTokener.nextClean() != ':')
+				throw mTokener.syntaxError("Expected a ':' after a key");
+
+			if (Serializer.VERSION.equals(key)) {
+				readVersion(descriptor);
+				continue;
+			}
+
+			FieldDescriptor field = descriptor.getField(key);
+			if (field != null)
+				return field;
+
+			skipValue();
+		}
+	}
+
+	@Override
+	public int beginArray() {
+		if (mTokener.nextClean() != '[')
+			throw mTokener.syntaxError("A JSONArray text must start with '['");
+		push();
+		return -1;
+	}
+
+	@Override
+	public boolean hasNext() {
+		char c = mTokener.nextClean();
+
+		if (c != ']' && !mFirst[mDepth]) {
+			if (c != ',')
+				throw mTokener.syntaxError("Expected a ',' or ']'");
+			c = mTokener.nextClean();
+		}
+
+		mTokener.back();
+		if (c == ']')
+			return false;
+		if (c == 0)
+			throw mTokener.syntaxError("Expected a ',' or ']'");
+
+		mFirst[mDepth] = false;
+		return true;
+	}
+
+	@Override
+	public void endArray() {
+		if (mTokener.nextClean() != ']')
+			throw mTokener.syntaxError("Expected a ',' or ']'");
+		mDepth--;
+	}
+
+	@Override
+	public int beginMap() {
+		if (mTokener.nextClean() != '{')
+			throw mTokener.syntaxError("A JSONObject text must begin with '{'");
+		push();
+		return -1;
+	}
+
+	@Override
+	public String nextKey() {
+		char c = mTokener.nextClean();
+
+		if (c != '}' && !mFirst[mDepth]) {
+			if (c != ',' && c != ';')
+				throw mTokener.syntaxError("Expected a ',' or '}'");
+			c = mTokener.nextClean();
+		}
+
+		if (c == 0)
+			throw mTokener.syntaxError("A JSONObject text must end with '}'");
+
+		if (c == '}') {
+			mDepth--;
+			return null;
+		}
+
+		mFirst[mDepth] = false;
+
+		mTokener.back();
+		String key = mTokener.nextKey();
+
+		if (mTokener.nextClean() != ':')
+			throw mTokener.syntaxError("Expected a ':' after a key");
+
+		return key;
+	}
+
+	@Override
+	public boolean nextNull() {
+		char c = mTokener.nextClean();
+		mTokener.back();
+
+		if (c != 'n' && c != 'N')
+			return false;
+
+		Object value = mTokener.nextValue();
+		if (!JSONObject.NULL.equals(value))
+			throw mTokener.syntaxError("Unexpected value " + value);
+		return true;
+	}
+
+	@Override
+	public boolean readBoolean() {
+		return Primitives.toBoolean(nextScalar());
+	}
+
+	@Override
+	public byte readByte() {
+		return Primitives.toByte(nextScalar());
+	}
+
+	@Override
+	public char readChar() {
+		return Primitives.toChar(nextScalar());
+	}
+
+	@Override
+	public short readShort() {
+		return Primitives.toShort(nextScalar());
+	}
+
+	@Override
+	public int readInt() {
+		return Primitives.toInt(nextScalar());
+	}
+
+	@Override
+	public long readLong() {
+		return Primitives.toLong(nextScalar());
+	}
+
+	@Override
+	public float readFloat() {
+		return Primitives.toFloat(nextScalar());
+	}
+
+	@Override
+	public double readDouble() {
+		return Primitives.toDouble(nextScalar());
+	}
+
+	@Override
+	public String readString() {
+		return nextScalar().toString();
+	}
+
+	@Override
+	public Object readPrimitiveArray(Class<?> componentType)
+			throws IOException {
+		if (componentType == int.class) {
+			int[] array = new int[16];
+			int length = 0;
+
+			beginArray();
+			while (hasNext()) {
+				if (length == array.length)
+					array = Arrays.copyOf(array, length * 2);
+				array[length++] = readInt();
+			}
+			endArray();
+
+			return Arrays.copyOf(array, length);
+		} else if (componentType == long.class) {
+			long[] array = new long[16];
+			int length = 0;
+
+			beginArray();
+			while (hasNext()) {
+				if (length == array.length)
+					array = Arrays.copyOf(array, length * 2);
+				array[length++] = readLong();
+			}
+			endArray();
+
+			return Arrays.copyOf(array, length);
+		} else if (componentType == double.class) {
+			double[] array = new double[16];
+			int length = 0;
+
+			beginArray();
+			while (hasNext()) {
+				if (length == array.length)
+					array = Arrays.copyOf(array, length * 2);
+				array[length++] = readDouble();
+			}
+			endArray();
+
+			return Arrays.copyOf(array, length);
+		}
+
+		return SerializationReader.super.readPrimitiveArray(componentType);
+	}
+
+	/**
+	 * Reads the version member of the current object
+	 * 
+	 * @param descriptor
+	 *            descriptor of the class being read
+	 * @throws DifferentVersionException
+	 *             if it is not the version of the class
+	 */
+	private void readVersion(ClassDescriptor descriptor)
+			throws DifferentVersionException {
+		Serializable annotation = descriptor.getAnnotation();
+		int dVersion = Primitives.toInt(nextScalar());
+
+		if (annotation.includeVersion()) {
+			int cVersion = annotation.version();
+			if (cVersion != dVersion)
+				throw new DifferentVersionException(cVersion, dVersion);
+		}
+
+		mVersioned[mDepth] = true;
+	}
+
+	/**
+	 * Ends the current object, once its closing brace has been read
+	 */
+	private void endObject(ClassDescriptor descriptor) {
+		if (descriptor.getAnnotation().includeVersion() && !mVersioned[mDepth])
+			throw mTokener.syntaxError("JSONObject["
+					+ JSONObject.quote(Serializer.VERSION) + "] not found.");
+		mDepth--;
+	}
+
+	/**
+	 * @return the next string, number, boolean or null value
+	 */
+	private Object nextScalar() {
+		char c = mTokener.nextClean();
+
+		if (c == '"' || c == '\'')
+			return mTokener.nextString(c);
+
+		if (c == '{' || c == '[')
+			throw mTokener.syntaxError("Expected a value but found '" + c
+					+ "'");
+
+		mTokener.back();
+		return mTokener.nextValue();
+	}
+
+	/**
+	 * Skips the next value, including any objects and arrays it contains
+	 */
+	private void skipValue() {
+		int depth = 0;
+
+		do {
+			char c = mTokener.nextClean();
+			switch (c) {
+			case 0:
+				throw mTokener.syntaxError("Unexpected end of text");
+			case '"':
+			case '\'':
+				mTokener.nextString(c);
+				break;
+			case '{':
+			case '[':
+				depth++;
+				break;
+			case '}':
+			case ']':
+				depth--;
+				break;
+			case ',':
+			case ':':
+			case ';':
+				break;
+			default:
+				mTokener.back();
+				mTokener.nextValue();
+			}
+		} while (depth > 0);
+	}
+
+	private void push() {
+		mDepth++;
+		if (mDepth == mFirst.length) {
+			mFirst = Arrays.copyOf(mFirst, mDepth * 2);
+			mVersioned = Arrays.copyOf(mVersioned, mDepth * 2);
+		}
+		mFirst[mDepth] = true;
+		mVersioned[mDepth] = false;
+	}
+
+}
@@ -0,0 +1,265 @@
+package com.prettymuchabigdeal.serializer.impl;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.json.JSONByteWriter;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.prettymuchabigdeal.serializer.ClassDescriptor;
+import com.prettymuchabigdeal.serializer.FieldDescriptor;
+import com.prettymuchabigdeal.serializer.Serializable;
+import com.prettymuchabigdeal.serializer.SerializationWriter;
+import com.prettymuchabigdeal.serializer.Serializer;
+
+/**
+ * Writes JSON text directly to a {@link Writer}, {@link OutputStream} or
+ * {@link ByteBuffer}, producing the same text as
+ * {@link JSONSerilizationMethod} without building a {@link JSONObject} tree.
+ * Byte outputs are encoded as UTF-8.
+ * 
+ */
+public class JSONStreamWriter implements SerializationWriter {
+
+	/**
+	 * Output JSON text is written to
+	 */
+	private final Writer mOut;
+
+	/**
+	 * Same as {@link #mOut} when writing bytes, otherwise <b>null</b>
+	 */
+	private final JSONByteWriter mBytes;
+
+	/**
+	 * Whether the current object or array has no members yet, by depth
+	 */
+	private boolean[] mFirst = new boolean[16];
+	private int mDepth;
+
+	/**
+	 * Whether a field name was just written, so the next value needs no comma
+	 */
+	private boolean mAfterName;
+
+	public JSONStreamWriter(Writer writer) {
+		mOut = writer instanceof BufferedWriter
+				|| writer instanceof JSONByteWriter ? writer
+				: new BufferedWriter(writer);
+		mBytes = writer instanceof JSONByteWriter ? (JSONByteWriter) writer
+				: null;
+	}
+
+	public JSONStreamWriter(OutputStream stream) {
+		this(new JSONByteWriter(stream));
+	}
+
+	/**
+	 * @param buffer
+	 *            buffer to write into, a {@link BufferOverflowException} is
+	 *            thrown when it is full
+	 */
+	public JSONStreamWriter(ByteBuffer buffer) {
+		this(new JSONByteWriter(buffer));
+	}
+
+	@Override
+	public void beginObject(ClassDescriptor descriptor) throws IOException {
+		beforeValue();
+		mOut.write('{');
+		push();
+
+		Serializable annotation = descriptor.getAnnotation();
+		if (annotation.includeVersion()) {
+			name(Serializer.VERSION);
+			writeInt(annotation.version());
+		}
+	}
+
+	@Override
+	public void field(FieldDescriptor field) throws IOException {
+		name(field.getName());
+	}
+
+	@Override
+	public void endObject() throws IOException {
+		mDepth--;
+		mOut.write('}');
+	}
+
+	@Override
+	public void beginArray(int length) throws IOException {
+		beforeValue();
+		mOut.write('[');
+		push();
+	}
+
+	@Override
+	public void endArray() throws IOException {
+		mDepth--;
+		mOut.write(']');
+	}
+
+	@Override
+	public void beginMap(int size) throws IOException {
+		beforeValue();
+		mOut.write('{');
+		push();
+	}
+
+	@Override
+	public void key(String key) throws IOException {
+		name(key);
+	}
+
+	@Override
+	public void endMap() throws IOException {
+		mDepth--;
+		mOut.write('}');
+	}
+
+	@Override
+	public void writeNull() throws IOException {
+		beforeValue();
+		mOut.write("null");
+	}
+
+	@Override
+	public void writeBoolean(boolean value) throws IOException {
+		beforeValue();
+		mOut.write(value ? "true" : "false");
+	}
+
+	@Override
+	public void writeByte(byte value) throws IOException {
+		writeInt(value);
+	}
+
+	@Override
+	public void writeChar(char value) throws IOException {
+		writeString(String.valueOf(value));
+	}
+
+	@Override
+	public void writeShort(short value) throws IOException {
+		writeInt(value);
+	}
+
+	@Override
+	public void writeInt(int value) throws IOException {
+		beforeValue();
+		if (mBytes != null)
+			mBytes.writeLong(value);
+		else
+			mOut.write(Integer.toString(value));
+	}
+
+	@Override
+	public void writeLong(long value) throws IOException {
+		beforeValue();
+		if (mBytes != null)
+			mBytes.writeLong(value);
+		else
+			mOut.write(Long.toString(value));
+	}
+
+	@Override
+	public void writeFloat(float value) throws IOException {
+		beforeValue();
+		mOut.write(JSONObject.numberToString(value));
+	}
+
+	@Override
+	public void writeDouble(double value) throws IOException {
+		if (Double.isInfinite(value) || Double.isNaN(value))
+			throw new JSONException("JSON does not allow non-finite numbers.");
+
+		beforeValue();
+		mOut.write(JSONObject.doubleToString(value));
+	}
+
+	@Override
+	public void writeString(String value) throws IOException {
+		beforeValue();
+		JSONObject.quote(value, mOut);
+	}
+
+	@Override
+	public void writePrimitiveArray(Object array) throws IOException {
+		if (array instanceof int[]) {
+			int[] a = (int[]) array;
+			beginArray(a.length);
+			for (int i = 0; i < a.length; i++)
+				writeInt(a[i]);
+			endArray();
+		} else if (array instanceof long[]) {
+			long[] a = (long[]) array;
+			beginArray(a.length);
+			for (int i = 0; i < a.length; i++)
+				writeLong(a[i]);
+			endArray();
+		} else if (array instanceof double[]) {
+			double[] a = (double[]) array;
+			beginArray(a.length);
+			for (int i = 0; i < a.length; i++)
+				writeDouble(a[i]);
+			endArray();
+		} else if (array instanceof boolean[]) {
+			boolean[] a = (boolean[]) array;
+			beginArray(a.length);
+			for (int i = 0; i < a.length; i++)
+				writeBoolean(a[i]);
+			endArray();
+		} else {
+			SerializationWriter.super.writePrimitiveArray(array);
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		mOut.flush();
+	}
+
+	/**
+	 * Writes a member name of the current object
+	 */
+	private void name(String name) throws IOException {
+		if (!mFirst[mDepth])
+			mOut.write(',');
+		mFirst[mDepth] = false;
+
+		JSONObject.quote(name, mOut);
+		mOut.write(':');
+		mAfterName = true;
+	}
+
+	/**
+	 * Separates a value from the previous element of the current array
+	 */
+	private void beforeValue() throws IOException {
+		if (mAfterName) {
+			mAfterName = false;
+			return;
+		}
+
+		if (mDepth > 0) {
+			if (!mFirst[mDepth])
+				mOut.write(',');
+			mFirst[mDepth] = false;
+		}
+	}
+
+	private void push() {
+		mDepth++;
+		if (mDepth == mFirst.length)
+			mFirst = Arrays.copyOf(mFirst, mDepth * 2);
+		mFirst[mDepth] = true;
+	}
+
+}
@@ -0,0 +1,443 @@
+package com.prettymuchabigdeal.serializer.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+import com.prettymuchabigdeal.serializer.FieldType;
+import com.prettymuchabigdeal.serializer.Serializable;
+import com.prettymuchabigdeal.serializer.Serializable.Dedup;
+import com.prettymuchabigdeal.serializer.Serializable.Ignore;
+import com.prettymuchabigdeal.serializer.Serializable.Keep;
+import com.prettymuchabigdeal.serializer.SerializationCodec;
+
+/**
+ * Generates a {@link SerializationCodec} for every class annotated with
+ * {@link Serializable}, so that fields are read and written directly instead
+ * of through reflection.<br>
+ * <br>
+ * A codec is only generated when every field and the no argument constructor
+ * are visible from the class's package. Classes that do not qualify are
+ * reported with a note, and are serialized through reflection at runtime.
+ * 
+ */
+@SupportedAnnotationTypes("com.prettymuchabigdeal.serializer.Serializable")
+public class SerializableProcessor extends AbstractProcessor {
+
+	/**
+	 * Boxed object versions of primitives
+	 */
+	private static final Set<String> PRIMITIVE_OBJECTS = new HashSet<>(
+			Arrays.asList("java.lang.Boolean", "java.lang.Byte",
+					"java.lang.Character", "java.lang.Short",
+					"java.lang.Integer", "java.lang.Float", "java.lang.Long",
+					"java.lang.Double", "java.lang.String"));
+
+	private static final String PACKAGE = "com.prettymuchabigdeal.serializer.";
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations,
+			RoundEnvironment roundEnv) {
+
+		for (Element element : roundEnv
+				.getElementsAnnotatedWith(Serializable.class)) {
+
+			if (element.getKind() != ElementKind.CLASS)
+				continue;
+
+			TypeElement type = (TypeElement) element;
+			String reason = checkClass(type);
+
+			List<VariableElement> fields = new ArrayList<>();
+			if (reason == null)
+				reason = collectFields(type, type.getAnnotation(
+						Serializable.class).autoIgnore(), fields,
+						new HashSet<String>(), getPackage(type));
+
+			if (reason != null) {
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+						"No codec generated, " + reason, type);
+				continue;
+			}
+
+			try {
+				writeCodec(type, fields);
+			} catch (IOException e) {
+				processingEnv.getMessager().printMessage(
+						Diagnostic.Kind.ERROR,
+						"Could not write codec: " + e.getMessage(), type);
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Determines if a codec can construct instances of a class
+	 * 
+	 * @param type
+	 *            the annotated class
+	 * @return <b>null</b> if it can, otherwise the reason why not
+	 */
+	private String checkClass(TypeElement type) {
+		Set<Modifier> mod = type.getModifiers();
+
+		if (mod.contains(Modifier.ABSTRACT))
+			return "class is abstract";
+
+		if (type.getNestingKind().isNested() && !mod.contains(Modifier.STATIC))
+			return "inner class is not static";
+
+		if (!isVisible(type))
+			return "class is private";
+
+		for (ExecutableElement ctor : ElementFilter.constructorsIn(type
+				.getEnclosedElements())) {
+			if (ctor.getParameters().isEmpty()
+					&& !ctor.getModifiers().contains(Modifier.PRIVATE))
+				return null;
+		}
+
+		return "no visible constructor without arguments";
+	}
+
+	/**
+	 * Collects the fields of class and its superclasses in the same order as
+	 * <code>ClassDescriptor</code>
+	 * 
+	 * @return <b>null</b> if all fields are visible to the codec, otherwise
+	 *         the reason why not
+	 */
+	private String collectFields(TypeElement type, boolean ignore,
+			List<VariableElement> out, Set<String> names, String pkg) {
+
+		TypeMirror superclass = type.getSuperclass();
+		if (superclass.getKind() == TypeKind.DECLARED) {
+			String reason = collectFields((TypeElement) ((DeclaredType) superclass)
+					.asElement(), ignore, out, names, pkg);
+			if (reason != null)
+				return reason;
+		}
+
+		for (VariableElement field : ElementFilter.fieldsIn(type
+				.getEnclosedElements())) {
+			Set<Modifier> mod = field.getModifiers();
+
+			boolean add = true;
+
+			add &= !mod.contains(Modifier.STATIC);
+			add &= !mod.contains(Modifier.FINAL);
+			add &= !mod.contains(Modifier.TRANSIENT);
+
+			if (ignore)
+				add &= field.getAnnotation(Keep.class) != null;
+			else
+				add &= field.getAnnotation(Ignore.class) == null;
+
+			if (!add || !names.add(field.getSimpleName().toString()))
+				continue;
+
+			if (mod.contains(Modifier.PRIVATE))
+				return "field " + field.getSimpleName() + " is private";
+
+			if (!mod.contains(Modifier.PUBLIC) && !pkg.equals(getPackage(type)))
+				return "field " + field.getSimpleName()
+						+ " is not visible from " + pkg;
+
+			if (!isVisible(field.asType()))
+				return "type of field " + field.getSimpleName()
+						+ " is not visible";
+
+			if (isContainer(field.asType()))
+				return "field " + field.getSimpleName()
+						+ " is a collection or map";
+
+			out.add(field);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Writes the source of the codec for a class
+	 * 
+	 * @param type
+	 *            the annotated class
+	 * @param fields
+	 *            the fields to serialize
+	 */
+	private void writeCodec(TypeElement type, List<VariableElement> fields)
+			throws IOException {
+
+		String pkg = getPackage(type);
+		String binaryName = processingEnv.getElementUtils()
+				.getBinaryName(type).toString();
+		String codecName = binaryName.substring(binaryName.lastIndexOf('.') + 1)
+				+ SerializationCodec.SUFFIX;
+		String className = type.getQualifiedName().toString();
+
+		JavaFileObject file = processingEnv.getFiler().createSourceFile(
+				binaryName + SerializationCodec.SUFFIX, type);
+
+		try (PrintWriter w = new PrintWriter(file.openWriter())) {
+
+			if (!pkg.isEmpty())
+				w.println("package " + pkg + ";");
+			w.println();
+			w.println("/**");
+			w.println(" * Generated by SerializableProcessor, do not edit");
+			w.println(" */");
+			w.println("public final class " + codecName + " implements "
+					+ PACKAGE + "SerializationCodec<" + className + "> {");
+			w.println();
+
+			w.println("\t@Override");
+			w.println("\tpublic " + className + " newInstance() {");
+			w.println("\t\treturn new " + className + "();");
+			w.println("\t}");
+			w.println();
+
+			w.println("\t@Override");
+			w.println("\tpublic <Data> void write(" + className
+					+ " object, Data out, " + PACKAGE
+					+ "SerializationMethod<Data> method, " + PACKAGE
+					+ "Serializer<Data> serializer) throws Exception {");
+			for (VariableElement field : fields)
+				writeStore(w, field);
+			w.println("\t}");
+			w.println();
+
+			w.println("\t@Override");
+			w.println("\tpublic <Data> void read(" + className
+					+ " object, Data in, " + PACKAGE
+					+ "SerializationMethod<Data> method, " + PACKAGE
+					+ "Serializer<Data> serializer) throws Exception {");
+			for (VariableElement field : fields)
+				writeLoad(w, field);
+			w.println("\t}");
+			w.println();
+
+			w.println("}");
+		}
+	}
+
+	private void writeStore(PrintWriter w, VariableElement field) {
+		String name = field.getSimpleName().toString();
+		String value = "object." + name;
+		String key = "\"" + name + "\"";
+
+		switch (getFieldType(field.asType())) {
+		case PRIMITIVE:
+			w.println("\t\tmethod.store" + typedName(field.asType())
+					+ "(out, " + key + ", " + value + ");");
+			break;
+		case PRIMITVE_ARRAY:
+			w.println("\t\tmethod.storePrimitiveArray(out, " + key + ", "
+					+ value + ");");
+			break;
+		case SERIALIZEABLE:
+			w.println("\t\tmethod.storeSerializeable(out, " + key + ", "
+					+ value + ", serializer);");
+			break;
+		case SERIALIZEABLE_ARRAY:
+			w.println("\t\tmethod.storeSerializeableArray(out, " + key + ", "
+					+ value + ", serializer);");
+			break;
+		}
+	}
+
+	private void writeLoad(PrintWriter w, VariableElement field) {
+		String name = field.getSimpleName().toString();
+		TypeMirror type = erasure(field.asType());
+		String key = "\"" + name + "\"";
+		String load = null;
+
+		switch (getFieldType(type)) {
+		case PRIMITIVE:
+			load = loadPrimitive(type, key);
+			break;
+		case PRIMITVE_ARRAY:
+			load = "(" + type + ") method.loadPrimitiveArray(in, " + key
+					+ ", " + ((ArrayType) type).getComponentType() + ".class)";
+			break;
+		case SERIALIZEABLE:
+			load = "(" + type + ") method.loadSerializeable(in, " + key
+					+ ", serializer, " + type + ".class)";
+			break;
+		case SERIALIZEABLE_ARRAY:
+			load = "(" + type + ") method.loadSerializeableArray(in, " + key
+					+ ", serializer, " + ((ArrayType) type).getComponentType()
+					+ ".class)";
+			break;
+		}
+
+		if (isDeduplicated(field, type)) {
+			String intern = type.toString().equals("java.lang.String") ? "intern"
+					: "internAll";
+			load = "serializer.getStringPool()." + intern + "(" + load + ")";
+		}
+
+		w.println("\t\tif (method.hasKey(in, " + key + "))");
+		w.println("\t\t\tobject." + name + " = " + load + ";");
+	}
+
+	/**
+	 * @param field
+	 *            a serializeable field
+	 * @param type
+	 *            erasure of the type of field
+	 * @return <b>true</b> if field is a String or String[] marked with
+	 *         {@link Dedup} itself or through its class
+	 */
+	private boolean isDeduplicated(VariableElement field, TypeMirror type) {
+		String name = type.toString();
+		if (!name.equals("java.lang.String")
+				&& !name.equals("java.lang.String[]"))
+			return false;
+
+		return field.getAnnotation(Dedup.class) != null
+				|| field.getEnclosingElement().getAnnotation(Dedup.class) != null;
+	}
+
+	/**
+	 * @param type
+	 *            a primitive, boxed primitive or String type
+	 * @param key
+	 *            quoted key of the field
+	 * @return expression loading the value of key as type
+	 */
+	private String loadPrimitive(TypeMirror type, String key) {
+		String load = "method.loadPrimitive(in, " + key + ")";
+
+		if (type.getKind().isPrimitive())
+			return "method.load" + typedName(type) + "(in, " + key + ")";
+
+		return "(" + type + ") " + PACKAGE + "Primitives.coerce(" + load
+				+ ", " + type + ".class)";
+	}
+
+	/**
+	 * @param type
+	 *            type of a primitive field
+	 * @return suffix of the typed store and load overloads for type, such as
+	 *         <code>Int</code>, or <code>Primitive</code> for boxed types
+	 */
+	private String typedName(TypeMirror type) {
+		if (!type.getKind().isPrimitive())
+			return "Primitive";
+
+		String kind = type.toString();
+		return Character.toUpperCase(kind.charAt(0)) + kind.substring(1);
+	}
+
+	/**
+	 * Gets the Serialization specific type of a field's type, mirroring
+	 * <code>ClassDescriptor</code>
+	 */
+	private FieldType getFieldType(TypeMirror type) {
+		if (type.getKind() == TypeKind.ARRAY) {
+
+			if (isPrimitive(((ArrayType) type).getComponentType()))
+				return FieldType.PRIMITVE_ARRAY;
+			else
+				return FieldType.SERIALIZEABLE_ARRAY;
+
+		} else {
+
+			if (isPrimitive(type))
+				return FieldType.PRIMITIVE;
+			else
+				return FieldType.SERIALIZEABLE;
+		}
+	}
+
+	private boolean isPrimitive(TypeMirror type) {
+		if (type.getKind().isPrimitive())
+			return true;
+
+		return type.getKind() == TypeKind.DECLARED
+				&& PRIMITIVE_OBJECTS.contains(erasure(type).toString());
+	}
+
+	/**
+	 * @return <b>true</b> if the type is a <code>Collection</code> or
+	 *         <code>Map</code>, whose element types are only resolved at
+	 *         runtime
+	 */
+	private boolean isContainer(TypeMirror type) {
+		if (type.getKind() != TypeKind.DECLARED)
+			return false;
+
+		for (String name : new String[] { "java.util.Collection",
+				"java.util.Map" }) {
+			TypeMirror container = processingEnv.getElementUtils()
+					.getTypeElement(name).asType();
+			if (processingEnv.getTypeUtils().isAssignable(erasure(type),
+					erasure(container)))
+				return true;
+		}
+		return false;
+	}
+
+	private TypeMirror erasure(TypeMirror type) {
+		return processingEnv.getTypeUtils().erasure(type);
+	}
+
+	/**
+	 * @return <b>false</b> if the type, or a class it is nested in, is private
+	 */
+	private boolean isVisible(TypeMirror type) {
+		if (type.getKind() == TypeKind.ARRAY)
+			return isVisible(((ArrayType) type).getComponentType());
+
+		if (type.getKind() == TypeKind.DECLARED)
+			return isVisible(((DeclaredType) type).asElement());
+
+		return type.getKind().isPrimitive();
+	}
+
+	private boolean isVisible(Element element) {
+		for (Element e = element; e != null
+				&& e.getKind() != ElementKind.PACKAGE; e = e
+				.getEnclosingElement()) {
+			if (e.getModifiers().contains(Modifier.PRIVATE))
+				return false;
+		}
+		return true;
+	}
+
+	private String getPackage(Element element) {
+		PackageElement pkg = processingEnv.getElementUtils().getPackageOf(
+				element);
+		return pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+	}
+
+}
@@ -81,9 +81,17 @@ import java.util.Map;
 public class JSONArray {
 
 	/**
-	 * The arrayList where the JSONArray's properties are kept.
+	 * The arrayList where the JSONArray's properties are kept, or null while
+	 * they are kept in primitives.
 	 */
-	private final ArrayList myArrayList;
+	private ArrayList myArrayList;
+
+	/**
+	 * An int[], long[], double[] or boolean[] holding the properties without
+	 * boxing them, or null. Moved into myArrayList the first time the array is
+	 * changed.
+	 */
+	private Object primitives;
 
 	/**
 	 * Construct an empty JSONArray.
@@ -162,14 +170,24 @@ public class JSONArray {
 	}
 
 	/**
-	 * Construct a JSONArray from an array
+	 * Construct a JSONArray from an array. Arrays of int, long, double and
+	 * boolean are copied as they are and only boxed if the JSONArray is
+	 * changed.
 	 * 
 	 * @throws JSONException
 	 *             If not an array.
 	 */
 	public JSONArray(Object array) throws JSONException {
-		this();
-		if (array.getClass().isArray()) {
+		if (array instanceof int[]) {
+			this.primitives = ((int[]) array).clone();
+		} else if (array instanceof long[]) {
+			this.primitives = ((long[]) array).clone();
+		} else if (array instanceof double[]) {
+			this.primitives = ((double[]) array).clone();
+		} else if (array instanceof boolean[]) {
+			this.primitives = ((boolean[]) array).clone();
+		} else if (array.getClass().isArray()) {
+			this.myArrayList = new ArrayList();
 			int length = Array.getLength(array);
 			for (int i = 0; i < length; i += 1) {
 				this.put(JSONObject.wrap(Array.get(array, i)));
@@ -364,7 +382,7 @@ public class JSONArray {
 			if (i > 0) {
 				sb.append(separator);
 			}
-			sb.append(JSONObject.valueToString(this.myArrayList.get(i)));
+			sb.append(JSONObject.valueToString(this.opt(i)));
 		}
 		return sb.toString();
 	}
@@ -375,6 +393,9 @@ public class JSONArray {
 	 * @return The length (or size).
 	 */
 	public int length() {
+		if (this.primitives != null) {
+			return Array.getLength(this.primitives);
+		}
 		return this.myArrayList.size();
 	}
 
@@ -386,8 +407,22 @@ public class JSONArray {
 	 * @return An object value, or null if there is no object at that index.
 	 */
 	public Object opt(int index) {
-		return (index < 0 || index >= this.length()) ? null : this.myArrayList
-				.get(index);
+		if (index < 0 || index >= this.length()) {
+			return null;
+		}
+		if (this.primitives instanceof int[]) {
+			return Integer.valueOf(((int[]) this.primitives)[index]);
+		}
+		if (this.primitives instanceof long[]) {
+			return Long.valueOf(((long[]) this.primitives)[index]);
+		}
+		if (this.primitives instanceof double[]) {
+			return Double.valueOf(((double[]) this.primitives)[index]);
+		}
+		if (this.primitives instanceof boolean[]) {
+			return Boolean.valueOf(((boolean[]) this.primitives)[index]);
+		}
+		return this.myArrayList.get(index);
 	}
 
 	/**
@@ -662,7 +697,7 @@ public class JSONArray {
 	 * @return this.
 	 */
 	public JSONArray put(Object value) {
-		this.myArrayList.add(value);
+		this.list().add(value);
 		return this;
 	}
 
@@ -795,7 +830,7 @@ public class JSONArray {
 			throw new JSONException("JSONArray[" + index + "] not found.");
 		}
 		if (index < this.length()) {
-			this.myArrayList.set(index, value);
+			this.list().set(index, value);
 		} else {
 			while (index != this.length()) {
 				this.put(JSONObject.NULL);
@@ -815,7 +850,7 @@ public class JSONArray {
 	 */
 	public Object remove(int index) {
 		Object o = this.opt(index);
-		this.myArrayList.remove(index);
+		this.list().remove(index);
 		return o;
 	}
 
@@ -842,6 +877,78 @@ public class JSONArray {
 		return jo;
 	}
 
+	/**
+	 * Produce an int array of the values of this JSONArray.
+	 * 
+	 * @return A new array holding the values as ints.
+	 * @throws JSONException
+	 *             If a value cannot be converted to an int.
+	 */
+	public int[] toIntArray() throws JSONException {
+		if (this.primitives instanceof int[]) {
+			return ((int[]) this.primitives).clone();
+		}
+		int[] array = new int[this.length()];
+		for (int i = 0; i < array.length; i += 1) {
+			array[i] = this.getInt(i);
+		}
+		return array;
+	}
+
+	/**
+	 * Produce a long array of the values of this JSONArray.
+	 * 
+	 * @return A new array holding the values as longs.
+	 * @throws JSONException
+	 *             If a value cannot be converted to a long.
+	 */
+	public long[] toLongArray() throws JSONException {
+		if (this.primitives instanceof long[]) {
+			return ((long[]) this.primitives).clone();
+		}
+		long[] array = new long[this.length()];
+		for (int i = 0; i < array.length; i += 1) {
+			array[i] = this.getLong(i);
+		}
+		return array;
+	}
+
+	/**
+	 * Produce a double array of the values of this JSONArray.
+	 * 
+	 * @return A new array holding the values as doubles.
+	 * @throws JSONException
+	 *             If a value cannot be converted to a double.
+	 */
+	public double[] toDoubleArray() throws JSONException {
+		if (this.primitives instanceof double[]) {
+			return ((double[]) this.primitives).clone();
+		}
+		double[] array = new double[this.length()];
+		for (int i = 0; i < array.length; i += 1) {
+			array[i] = this.getDouble(i);
+		}
+		return array;
+	}
+
+	/**
+	 * Produce a boolean array of the values of this JSONArray.
+	 * 
+	 * @return A new array holding the values as booleans.
+	 * @throws JSONException
+	 *             If a value cannot be converted to a boolean.
+	 */
+	public boolean[] toBooleanArray() throws JSONException {
+		if (this.primitives instanceof boolean[]) {
+			return ((boolean[]) this.primitives).clone();
+		}
+		boolean[] array = new boolean[this.length()];
+		for (int i = 0; i < array.length; i += 1) {
+			array[i] = this.getBoolean(i);
+		}
+		return array;
+	}
+
 	/**
 	 * Make a JSON text of this JSONArray. For compactness, no unnecessary
 	 * whitespace is added. If it is not possible to produce a syntactically
@@ -913,8 +1020,10 @@ public class JSONArray {
 			int length = this.length();
 			writer.write('[');
 
-			if (length == 1) {
-				JSONObject.writeValue(writer, this.myArrayList.get(0),
+			if (this.primitives != null && indentFactor == 0) {
+				this.writePrimitives(writer);
+			} else if (length == 1) {
+				JSONObject.writeValue(writer, this.opt(0),
 						indentFactor, indent);
 			} else if (length != 0) {
 				final int newindent = indent + indentFactor;
@@ -927,7 +1036,7 @@ public class JSONArray {
 						writer.write('\n');
 					}
 					JSONObject.indent(writer, newindent);
-					JSONObject.writeValue(writer, this.myArrayList.get(i),
+					JSONObject.writeValue(writer, this.opt(i),
 							indentFactor, newindent);
 					commanate = true;
 				}
@@ -942,4 +1051,85 @@ public class JSONArray {
 			throw new JSONException(e);
 		}
 	}
+
+	/**
+	 * Get the arrayList, first boxing the primitives into it if they are still
+	 * held unboxed.
+	 * 
+	 * @return The arrayList.
+	 */
+	private ArrayList list() {
+		if (this.primitives != null) {
+			int length = this.length();
+			ArrayList list = new ArrayList(length);
+			for (int i = 0; i < length; i += 1) {
+				list.add(this.opt(i));
+			}
+			this.myArrayList = list;
+			this.primitives = null;
+		}
+		return this.myArrayList;
+	}
+
+	/**
+	 * Write the unboxed values separated by commas, without whitespace.
+	 * 
+	 * @param writer
+	 *            The writer.
+	 * @throws JSONException
+	 *             If a double is not finite.
+	 * @throws IOException
+	 */
+	private void writePrimitives(Writer writer) throws JSONException,
+			IOException {
+		JSONByteWriter bytes = null;
+		if (writer instanceof JSONByteWriter) {
+			bytes = (JSONByteWriter) writer;
+		}
+
+		if (this.primitives instanceof int[]) {
+			int[] array = (int[]) this.primitives;
+			for (int i = 0; i < array.length; i += 1) {
+				if (i > 0) {
+					writer.write(',');
+				}
+				if (bytes != null) {
+					bytes.writeLong(array[i]);
+				} else {
+					writer.write(Integer.toString(array[i]));
+				}
+			}
+		} else if (this.primitives instanceof long[]) {
+			long[] array = (long[]) this.primitives;
+			for (int i = 0; i < array.length; i += 1) {
+				if (i > 0) {
+					writer.write(',');
+				}
+				if (bytes != null) {
+					bytes.writeLong(array[i]);
+				} else {
+					writer.write(Long.toString(array[i]));
+				}
+			}
+		} else if (this.primitives instanceof double[]) {
+			double[] array = (double[]) this.primitives;
+			for (int i = 0; i < array.length; i += 1) {
+				if (i > 0) {
+					writer.write(',');
+				}
+				if (Double.isInfinite(array[i]) || Double.isNaN(array[i])) {
+					JSONObject.testValidity(Double.valueOf(array[i]));
+				}
+				writer.write(JSONNumber.format(array[i]));
+			}
+		} else {
+			boolean[] array = (boolean[]) this.primitives;
+			for (int i = 0; i < array.length; i += 1) {
+				if (i > 0) {
+					writer.write(',');
+				}
+				writer.write(array[i] ? "true" : "false");
+			}
+		}
+	}
 }
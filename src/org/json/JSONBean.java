@@ -0,0 +1,130 @@
+package org.json;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+
+/**
+ * The getters of a class as seen by JSONObject(Object bean), found once per
+ * class and kept for as long as the class is. Each getter has its key
+ * already derived from its name and a method handle taking the bean as an
+ * Object and returning an Object.
+ */
+final class JSONBean {
+
+    private static final MethodType GETTER =
+            MethodType.methodType(Object.class, Object.class);
+
+    private static final ClassValue<JSONBean> BEANS =
+            new ClassValue<JSONBean>() {
+                protected JSONBean computeValue(Class<?> type) {
+                    return new JSONBean(type);
+                }
+            };
+
+    /**
+     * Keys of the getters, in the order of the class's methods.
+     */
+    final String[] keys;
+
+    /**
+     * Getters, by the index of their key.
+     */
+    final MethodHandle[] getters;
+
+    /**
+     * Whether the class belongs to the JDK, so that wrap() turns its
+     * instances into strings.
+     */
+    final boolean system;
+
+
+    private JSONBean(Class<?> klass) {
+        ClassLoader loader = klass.getClassLoader();
+        Package pkg = klass.getPackage();
+        String pkgName = pkg != null ? pkg.getName() : "";
+        this.system = loader == null || pkgName.startsWith("java.") ||
+                pkgName.startsWith("javax.");
+
+// If klass is a System class then set includeSuperClass to false.
+
+        boolean includeSuperClass = loader != null;
+
+        Method[] methods = includeSuperClass ? klass.getMethods() : klass
+                .getDeclaredMethods();
+        ArrayList<String> keys = new ArrayList<String>(methods.length);
+        ArrayList<MethodHandle> getters =
+                new ArrayList<MethodHandle>(methods.length);
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        for (int i = 0; i < methods.length; i += 1) {
+            Method method = methods[i];
+            String key = key(method);
+            if (key != null) {
+                try {
+                    MethodHandle getter = lookup.unreflect(method);
+                    if (Modifier.isStatic(method.getModifiers())) {
+                        getter = MethodHandles.dropArguments(getter, 0,
+                                Object.class);
+                    }
+                    getters.add(getter.asType(GETTER));
+                    keys.add(key);
+                } catch (IllegalAccessException ignore) {
+                }
+            }
+        }
+        this.keys = keys.toArray(new String[keys.size()]);
+        this.getters = getters.toArray(new MethodHandle[getters.size()]);
+    }
+
+
+    /**
+     * Get the getters of a class.
+     *
+     * @param klass The class of a bean.
+     * @return The cached description of the class.
+     */
+    static JSONBean forClass(Class<?> klass) {
+        return BEANS.get(klass);
+    }
+
+
+    /**
+     * Derive the key of a getter: getFoo and isFoo give foo, getURL gives
+     * URL.
+     *
+     * @param method A method of the bean's class.
+     * @return The key, or null if the method is not a getter.
+     */
+    private static String key(Method method) {
+        if (!Modifier.isPublic(method.getModifiers()) ||
+                method.getParameterTypes().length != 0 ||
+                method.getReturnType() == void.class) {
+            return null;
+        }
+        String name = method.getName();
+        String key;
+        if (name.startsWith("get")) {
+            if ("getClass".equals(name) || "getDeclaringClass".equals(name)) {
+                return null;
+            }
+            key = name.substring(3);
+        } else if (name.startsWith("is")) {
+            key = name.substring(2);
+        } else {
+            return null;
+        }
+        if (key.length() == 0 || !Character.isUpperCase(key.charAt(0))) {
+            return null;
+        }
+        if (key.length() == 1) {
+            return key.toLowerCase();
+        }
+        if (!Character.isUpperCase(key.charAt(1))) {
+            return key.substring(0, 1).toLowerCase() + key.substring(1);
+        }
+        return key;
+    }
+}
@@ -0,0 +1,221 @@
+package org.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A JSONByteTokener parses UTF-8 encoded JSON text straight from a byte[],
+ * a heap or direct ByteBuffer, or an InputStream, without a Reader or a
+ * CharsetDecoder in between. Runs of ASCII bytes are widened to chars in a
+ * tight loop, only multibyte sequences take the slow path. Malformed
+ * sequences are replaced with U+FFFD, as InputStreamReader does.
+ */
+public class JSONByteTokener extends JSONTokener {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private byte[]      bytes;
+    private int         pos;
+    private int         lim;
+    private InputStream stream;
+    private ByteBuffer  source;
+
+    /**
+     * Low surrogate of a pair whose high surrogate filled the last read.
+     */
+    private char        pendingLow;
+
+
+    /**
+     * Construct a JSONByteTokener from a byte array.
+     *
+     * @param bytes  UTF-8 encoded JSON text.
+     */
+    public JSONByteTokener(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+
+    /**
+     * Construct a JSONByteTokener from part of a byte array.
+     *
+     * @param bytes  UTF-8 encoded JSON text.
+     * @param offset Index of the first byte of the text.
+     * @param length Number of bytes in the text.
+     */
+    public JSONByteTokener(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.pos = offset;
+        this.lim = offset + length;
+    }
+
+
+    /**
+     * Construct a JSONByteTokener from the remaining bytes of a buffer. The
+     * position of the buffer is advanced as bytes are consumed.
+     *
+     * @param buffer UTF-8 encoded JSON text.
+     */
+    public JSONByteTokener(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            this.bytes = buffer.array();
+            this.pos = buffer.arrayOffset() + buffer.position();
+            this.lim = buffer.arrayOffset() + buffer.limit();
+            buffer.position(buffer.limit());
+        } else {
+            this.bytes = new byte[BUFFER_SIZE];
+            this.source = buffer;
+        }
+    }
+
+
+    /**
+     * Construct a JSONByteTokener from an InputStream.
+     *
+     * @param stream UTF-8 encoded JSON text.
+     */
+    public JSONByteTokener(InputStream stream) {
+        this.bytes = new byte[BUFFER_SIZE];
+        this.stream = stream;
+    }
+
+
+    protected int read(char[] cbuf, int off, int len) throws IOException {
+        int count = 0;
+        if (this.pendingLow != 0) {
+            cbuf[off] = this.pendingLow;
+            this.pendingLow = 0;
+            count = 1;
+        }
+
+        while (count < len) {
+            byte[] b = this.bytes;
+            int p = this.pos;
+            int end = Math.min(this.lim, p + (len - count));
+            int o = off + count;
+
+            while (p < end && b[p] >= 0) {
+                cbuf[o++] = (char) b[p++];
+            }
+            count += p - this.pos;
+            this.pos = p;
+
+            if (count == len) {
+                break;
+            }
+            if (p == this.lim) {
+                if (count > 0) {
+                    break;
+                }
+                if (!this.refill(1)) {
+                    return -1;
+                }
+                continue;
+            }
+
+            int c = this.decode();
+            if (c < 0x10000) {
+                cbuf[off + count++] = (char) c;
+            } else {
+                cbuf[off + count++] = Character.highSurrogate(c);
+                if (count == len) {
+                    this.pendingLow = Character.lowSurrogate(c);
+                    break;
+                }
+                cbuf[off + count++] = Character.lowSurrogate(c);
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     * Decode the multibyte sequence at the current position.
+     *
+     * @return The code point, or U+FFFD if the sequence is malformed.
+     */
+    private int decode() throws IOException {
+        int lead = this.bytes[this.pos] & 0xFF;
+        int need;
+        int min;
+        int c;
+
+        if (lead >= 0xC2 && lead <= 0xDF) {
+            need = 2;
+            min = 0x80;
+            c = lead & 0x1F;
+        } else if (lead >= 0xE0 && lead <= 0xEF) {
+            need = 3;
+            min = 0x800;
+            c = lead & 0x0F;
+        } else if (lead >= 0xF0 && lead <= 0xF4) {
+            need = 4;
+            min = 0x10000;
+            c = lead & 0x07;
+        } else {
+            this.pos += 1;
+            return 0xFFFD;
+        }
+
+        if (this.lim - this.pos < need) {
+            this.refill(need);
+        }
+
+        int p = this.pos + 1;
+        int end = Math.min(this.pos + need, this.lim);
+        for (; p < end; p += 1) {
+            int b = this.bytes[p];
+            if ((b & 0xC0) != 0x80) {
+                break;
+            }
+            c = (c << 6) | (b & 0x3F);
+        }
+
+        if (p - this.pos != need || c < min || c > 0x10FFFF ||
+                (c >= 0xD800 && c <= 0xDFFF)) {
+            this.pos = Math.max(p, this.pos + 1);
+            return 0xFFFD;
+        }
+        this.pos = p;
+        return c;
+    }
+
+
+    /**
+     * Move the unread bytes to the front of the buffer and read more after
+     * them, until at least count bytes are unread or the source ends.
+     *
+     * @return true if at least count bytes are unread.
+     */
+    private boolean refill(int count) throws IOException {
+        if (this.stream == null && this.source == null) {
+            return this.lim - this.pos >= count;
+        }
+
+        int remaining = this.lim - this.pos;
+        System.arraycopy(this.bytes, this.pos, this.bytes, 0, remaining);
+        this.pos = 0;
+        this.lim = remaining;
+
+        while (this.lim < count) {
+            int n;
+            if (this.stream != null) {
+                n = this.stream.read(this.bytes, this.lim,
+                        this.bytes.length - this.lim);
+            } else {
+                n = Math.min(this.source.remaining(),
+                        this.bytes.length - this.lim);
+                this.source.get(this.bytes, this.lim, n);
+                if (n == 0) {
+                    n = -1;
+                }
+            }
+            if (n < 0) {
+                return false;
+            }
+            this.lim += n;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,391 @@
+package org.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A JSONByteWriter encodes JSON text as UTF-8 straight into a growable
+ * byte[], a ByteBuffer, or an OutputStream behind an internal buffer. It is
+ * a Writer, so it can be given to any of the write methods, and those of
+ * JSONObject and JSONArray recognize it to write keys, strings and integers
+ * without building intermediate Strings.
+ * <p>
+ * Unpaired surrogates are written as '?', as OutputStreamWriter does. A
+ * ByteBuffer that runs out of room throws a BufferOverflowException.
+ */
+public class JSONByteWriter extends Writer {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final byte[] DIGITS = {
+        '0', '1', '2', '3', '4', '5', '6', '7', '8', '9'
+    };
+
+    private static final byte[] HEX = {
+        '0', '1', '2', '3', '4', '5', '6', '7',
+        '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+    };
+
+    private byte[]       buf;
+    private int          count;
+    private OutputStream stream;
+    private ByteBuffer   target;
+
+    /**
+     * High surrogate left over from the previous write, or 0.
+     */
+    private char         pending;
+
+
+    /**
+     * Construct a JSONByteWriter writing into a growable byte array.
+     */
+    public JSONByteWriter() {
+        this(256);
+    }
+
+
+    /**
+     * Construct a JSONByteWriter writing into a growable byte array.
+     *
+     * @param capacity Initial capacity of the array.
+     */
+    public JSONByteWriter(int capacity) {
+        this.buf = new byte[Math.max(capacity, 16)];
+    }
+
+
+    /**
+     * Construct a JSONByteWriter writing to an OutputStream. Bytes are
+     * buffered until the buffer is full or the writer is flushed.
+     *
+     * @param stream The stream to write to.
+     */
+    public JSONByteWriter(OutputStream stream) {
+        this.buf = new byte[BUFFER_SIZE];
+        this.stream = stream;
+    }
+
+
+    /**
+     * Construct a JSONByteWriter writing into a ByteBuffer, from its
+     * position. Bytes are buffered until the buffer is full or the writer
+     * is flushed.
+     *
+     * @param buffer The buffer to write into.
+     */
+    public JSONByteWriter(ByteBuffer buffer) {
+        this.buf = new byte[BUFFER_SIZE];
+        this.target = buffer;
+    }
+
+
+    /**
+     * Get the number of bytes written into the array. For stream and
+     * buffer targets this is the number of bytes not yet flushed.
+     *
+     * @return The number of bytes.
+     */
+    public int size() {
+        return this.count;
+    }
+
+
+    /**
+     * Get a copy of the bytes written into the array.
+     *
+     * @return The UTF-8 encoded text.
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(this.buf, this.count);
+    }
+
+
+    /**
+     * Discard the bytes written into the array, keeping its capacity.
+     */
+    public void reset() {
+        this.count = 0;
+        this.pending = 0;
+    }
+
+
+    /**
+     * Write a string as a quoted JSON string, escaping it the same way as
+     * {@link JSONObject#quote(String, Writer)}.
+     *
+     * @param string The string to quote, or null for "".
+     * @throws IOException If the stream could not be written.
+     */
+    public void writeQuoted(String string) throws IOException {
+        if (string == null) {
+            string = "";
+        }
+
+        int len = string.length();
+        this.ensure(2);
+        this.buf[this.count++] = '"';
+
+        char b;
+        char c = 0;
+        for (int i = 0; i < len; i += 1) {
+            b = c;
+            c = string.charAt(i);
+
+            if (c >= ' ' && c < 0x80 && c != '"' && c != '\\' && c != '/') {
+                this.ensure(1);
+                this.buf[this.count++] = (byte) c;
+                continue;
+            }
+
+            switch (c) {
+            case '\\':
+            case '"':
+                this.writeAscii('\\', c);
+                break;
+            case '/':
+                if (b == '<') {
+                    this.writeAscii('\\', c);
+                } else {
+                    this.writeAscii(c);
+                }
+                break;
+            case '\b':
+                this.writeAscii('\\', 'b');
+                break;
+            case '\t':
+                this.writeAscii('\\', 't');
+                break;
+            case '\n':
+                this.writeAscii('\\', 'n');
+                break;
+            case '\f':
+                this.writeAscii('\\', 'f');
+                break;
+            case '\r':
+                this.writeAscii('\\', 'r');
+                break;
+            default:
+                if (c < ' ' || (c >= '\u0080' && c < '\u00a0')
+                        || (c >= '\u2000' && c < '\u2100')) {
+                    this.ensure(6);
+                    this.buf[this.count++] = '\\';
+                    this.buf[this.count++] = 'u';
+                    this.buf[this.count++] = HEX[(c >> 12) & 0xF];
+                    this.buf[this.count++] = HEX[(c >> 8) & 0xF];
+                    this.buf[this.count++] = HEX[(c >> 4) & 0xF];
+                    this.buf[this.count++] = HEX[c & 0xF];
+                } else if (Character.isHighSurrogate(c) && i + 1 < len
+                        && Character.isLowSurrogate(string.charAt(i + 1))) {
+                    i += 1;
+                    this.encode(Character.toCodePoint(c, string.charAt(i)));
+                    c = string.charAt(i);
+                } else {
+                    this.encode(c);
+                }
+            }
+        }
+
+        this.ensure(1);
+        this.buf[this.count++] = '"';
+    }
+
+
+    /**
+     * Write the decimal digits of a long.
+     *
+     * @param value The value to write.
+     * @throws IOException If the stream could not be written.
+     */
+    public void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            this.write("-9223372036854775808");
+            return;
+        }
+
+        this.ensure(20);
+        if (value < 0) {
+            this.buf[this.count++] = '-';
+            value = -value;
+        }
+
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits += 1;
+        }
+
+        int end = this.count + digits;
+        for (int i = end - 1; i >= this.count; i -= 1) {
+            this.buf[i] = DIGITS[(int) (value % 10)];
+            value /= 10;
+        }
+        this.count = end;
+    }
+
+
+    /**
+     * Write a number the same way as {@link JSONObject#numberToString}.
+     *
+     * @param number The number to write.
+     * @throws JSONException If the number is not finite.
+     * @throws IOException If the stream could not be written.
+     */
+    public void writeNumber(Number number) throws IOException {
+        if (number instanceof Integer || number instanceof Long
+                || number instanceof Short || number instanceof Byte) {
+            this.writeLong(number.longValue());
+        } else {
+            this.write(JSONObject.numberToString(number));
+        }
+    }
+
+
+    public void write(int c) throws IOException {
+        if (c < 0x80 && this.pending == 0) {
+            this.ensure(1);
+            this.buf[this.count++] = (byte) c;
+        } else {
+            this.write(new char[] { (char) c }, 0, 1);
+        }
+    }
+
+
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        int end = off + len;
+        for (int i = off; i < end; i += 1) {
+            char c = cbuf[i];
+            if (c < 0x80 && this.pending == 0) {
+                this.ensure(1);
+                this.buf[this.count++] = (byte) c;
+            } else {
+                this.encodeChar(c);
+            }
+        }
+    }
+
+
+    public void write(String str, int off, int len) throws IOException {
+        int end = off + len;
+        for (int i = off; i < end; i += 1) {
+            char c = str.charAt(i);
+            if (c < 0x80 && this.pending == 0) {
+                this.ensure(1);
+                this.buf[this.count++] = (byte) c;
+            } else {
+                this.encodeChar(c);
+            }
+        }
+    }
+
+
+    /**
+     * Write the buffered bytes to the stream or buffer, if there is one.
+     */
+    public void flush() throws IOException {
+        this.drain();
+        if (this.stream != null) {
+            this.stream.flush();
+        }
+    }
+
+
+    public void close() throws IOException {
+        this.flush();
+        if (this.stream != null) {
+            this.stream.close();
+        }
+    }
+
+
+    private void writeAscii(char c) throws IOException {
+        this.ensure(1);
+        this.buf[this.count++] = (byte) c;
+    }
+
+
+    private void writeAscii(char c1, char c2) throws IOException {
+        this.ensure(2);
+        this.buf[this.count++] = (byte) c1;
+        this.buf[this.count++] = (byte) c2;
+    }
+
+
+    /**
+     * Encode a char of a write, pairing surrogates across writes.
+     */
+    private void encodeChar(char c) throws IOException {
+        if (this.pending != 0) {
+            char high = this.pending;
+            this.pending = 0;
+            if (Character.isLowSurrogate(c)) {
+                this.encode(Character.toCodePoint(high, c));
+                return;
+            }
+            this.encode('?');
+        }
+        if (Character.isHighSurrogate(c)) {
+            this.pending = c;
+        } else {
+            this.encode(c);
+        }
+    }
+
+
+    /**
+     * Encode a code point, writing '?' for an unpaired surrogate.
+     */
+    private void encode(int c) throws IOException {
+        this.ensure(4);
+        byte[] b = this.buf;
+        if (c < 0x80) {
+            b[this.count++] = (byte) c;
+        } else if (c < 0x800) {
+            b[this.count++] = (byte) (0xC0 | (c >> 6));
+            b[this.count++] = (byte) (0x80 | (c & 0x3F));
+        } else if (c >= 0xD800 && c <= 0xDFFF) {
+            b[this.count++] = '?';
+        } else if (c < 0x10000) {
+            b[this.count++] = (byte) (0xE0 | (c >> 12));
+            b[this.count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            b[this.count++] = (byte) (0x80 | (c & 0x3F));
+        } else {
+            b[this.count++] = (byte) (0xF0 | (c >> 18));
+            b[this.count++] = (byte) (0x80 | ((c >> 12) & 0x3F));
+            b[this.count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            b[this.count++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+
+    /**
+     * Make room for at least n more bytes, draining or growing the buffer.
+     */
+    private void ensure(int n) throws IOException {
+        if (this.count + n <= this.buf.length) {
+            return;
+        }
+        if (this.stream != null || this.target != null) {
+            this.drain();
+        } else {
+            this.buf = Arrays.copyOf(this.buf,
+                    Math.max(this.buf.length * 2, this.count + n));
+        }
+    }
+
+
+    private void drain() throws IOException {
+        if (this.count == 0) {
+            return;
+        }
+        if (this.stream != null) {
+            this.stream.write(this.buf, 0, this.count);
+            this.count = 0;
+        } else if (this.target != null) {
+            this.target.put(this.buf, 0, this.count);
+            this.count = 0;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package org.json;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded table of the keys met while parsing, so that a key repeated
+ * across the objects of a document, or across documents, is kept as a single
+ * String. Keys are matched on their characters before a String is made for
+ * them. The table holds a fixed number of slots picked by the hash of a key;
+ * a new key takes over its slot from whichever key held it before. Keys
+ * longer than {@link #MAX_LENGTH} are never kept. A table may be shared by
+ * any number of threads.
+ */
+public final class JSONKeyTable {
+
+    /**
+     * Longest key kept in a table.
+     */
+    public static final int MAX_LENGTH = 64;
+
+    private static final int DEFAULT_SIZE = 1024;
+
+    private static final JSONKeyTable SHARED = new JSONKeyTable();
+
+    private final int mask;
+
+    private final AtomicReferenceArray<String> table;
+
+
+    /**
+     * Construct a table with the default number of slots.
+     */
+    public JSONKeyTable() {
+        this(DEFAULT_SIZE);
+    }
+
+
+    /**
+     * Construct a table.
+     *
+     * @param size The number of slots, rounded up to a power of two.
+     */
+    public JSONKeyTable(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Size must be positive: " +
+                    size);
+        }
+        int capacity = Integer.highestOneBit(size);
+        if (capacity < size) {
+            capacity <<= 1;
+        }
+        this.mask = capacity - 1;
+        this.table = new AtomicReferenceArray<String>(capacity);
+    }
+
+
+    /**
+     * Get the table used by a JSONTokener unless it is given another one.
+     *
+     * @return The shared table.
+     */
+    public static JSONKeyTable getShared() {
+        return SHARED;
+    }
+
+
+    /**
+     * Get the key spelled by a run of characters.
+     *
+     * @param chars  Buffer holding the key.
+     * @param offset Index of the first character.
+     * @param length Number of characters.
+     * @return The String already in the table for these characters, or a
+     *         new one.
+     */
+    public String intern(char[] chars, int offset, int length) {
+        if (length > MAX_LENGTH) {
+            return new String(chars, offset, length);
+        }
+        int hash = 0;
+        for (int i = 0; i < length; i += 1) {
+            hash = 31 * hash + chars[offset + i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & this.mask;
+        String key = this.table.get(slot);
+        if (key != null && key.hashCode() == hash && key.length() == length) {
+            int i = 0;
+            while (i < length && key.charAt(i) == chars[offset + i]) {
+                i += 1;
+            }
+            if (i == length) {
+                return key;
+            }
+        }
+        key = new String(chars, offset, length);
+        this.table.lazySet(slot, key);
+        return key;
+    }
+
+
+    /**
+     * Get the canonical instance of a key.
+     *
+     * @param key A key.
+     * @return The equal String already in the table, or key itself.
+     */
+    public String intern(String key) {
+        if (key.length() > MAX_LENGTH) {
+            return key;
+        }
+        int hash = key.hashCode();
+        int slot = (hash ^ (hash >>> 16)) & this.mask;
+        String existing = this.table.get(slot);
+        if (existing != null && existing.equals(key)) {
+            return existing;
+        }
+        this.table.lazySet(slot, key);
+        return key;
+    }
+
+
+    /**
+     * Remove every key from the table.
+     */
+    public void clear() {
+        for (int i = 0; i <= this.mask; i += 1) {
+            this.table.set(i, null);
+        }
+    }
+}
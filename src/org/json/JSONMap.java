@@ -0,0 +1,398 @@
+package org.json;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The map behind a JSONObject. Keys and values sit side by side in one array
+ * in the order they were first put, so iteration follows the JSON text or the
+ * order of the puts. Small objects are searched by scanning that array; once
+ * an object outgrows the scan an open-addressed table of entry numbers with
+ * linear probing is built over it. Removed entries leave a gap that is closed
+ * the next time the array has to grow.
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+final class JSONMap extends AbstractMap {
+
+    /**
+     * Largest size searched by scanning instead of through the table.
+     */
+    private static final int SCAN_LIMIT = 8;
+
+    /**
+     * Marks the key of a removed entry.
+     */
+    private static final Object REMOVED = new Object();
+
+    /**
+     * Keys at even and values at odd positions, in insertion order.
+     */
+    private Object[] entries;
+
+    /**
+     * Number of entries used, including removed ones.
+     */
+    private int used;
+
+    /**
+     * Number of live entries.
+     */
+    private int size;
+
+    /**
+     * Entry number plus one of each slot, 0 for an empty slot, or null while
+     * the map is small enough to be scanned.
+     */
+    private int[] table;
+
+    /**
+     * Incremented on every structural change, checked by the iterators.
+     */
+    private int modCount;
+
+    /**
+     * Construct an empty map.
+     */
+    JSONMap() {
+        this(SCAN_LIMIT);
+    }
+
+    /**
+     * Construct an empty map that holds the given number of entries without
+     * growing.
+     *
+     * @param expectedSize The number of entries expected.
+     */
+    JSONMap(int expectedSize) {
+        this.entries = new Object[Math.max(expectedSize, 1) * 2];
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean containsKey(Object key) {
+        return this.indexOf(key) >= 0;
+    }
+
+    public Object get(Object key) {
+        int index = this.indexOf(key);
+        return index < 0 ? null : this.entries[index * 2 + 1];
+    }
+
+    public Object put(Object key, Object value) {
+        int index = this.indexOf(key);
+        if (index >= 0) {
+            Object old = this.entries[index * 2 + 1];
+            this.entries[index * 2 + 1] = value;
+            return old;
+        }
+        if (this.used * 2 == this.entries.length) {
+            this.resize();
+        }
+        index = this.used;
+        this.entries[index * 2] = key;
+        this.entries[index * 2 + 1] = value;
+        this.used += 1;
+        this.size += 1;
+        this.modCount += 1;
+        if (this.table != null) {
+            if (this.used * 2 > this.table.length) {
+                this.rehash();
+            } else {
+                this.insert(key, index);
+            }
+        } else if (this.used > SCAN_LIMIT) {
+            this.rehash();
+        }
+        return null;
+    }
+
+    public Object remove(Object key) {
+        int index = this.indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        return this.removeAt(index);
+    }
+
+    public void clear() {
+        for (int i = 0; i < this.used * 2; i += 1) {
+            this.entries[i] = null;
+        }
+        this.used = 0;
+        this.size = 0;
+        this.table = null;
+        this.modCount += 1;
+    }
+
+    public Set entrySet() {
+        return new EntrySet(false);
+    }
+
+    public Set keySet() {
+        return new EntrySet(true);
+    }
+
+    private static int hash(Object key) {
+        int h = key == null ? 0 : key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean same(Object a, Object b) {
+        return a == b || (a != null && a.equals(b));
+    }
+
+    /**
+     * Find the entry number of a key.
+     *
+     * @param key The key to look for.
+     * @return The entry number, or -1 if the key is absent.
+     */
+    private int indexOf(Object key) {
+        Object[] entries = this.entries;
+        if (this.table == null) {
+            for (int i = 0; i < this.used; i += 1) {
+                if (same(entries[i * 2], key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        int[] table = this.table;
+        int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        while (table[slot] != 0) {
+            int index = table[slot] - 1;
+            if (same(entries[index * 2], key)) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insert(Object key, int index) {
+        int[] table = this.table;
+        int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = index + 1;
+    }
+
+    /**
+     * Take an entry out of the table, moving later members of its chain back
+     * into the slot it frees so that linear probing still finds them.
+     *
+     * @param index The entry number, whose key is still in place.
+     */
+    private void unlink(int index) {
+        int[] table = this.table;
+        int mask = table.length - 1;
+        int gap = hash(this.entries[index * 2]) & mask;
+        while (table[gap] != index + 1) {
+            gap = (gap + 1) & mask;
+        }
+        int slot = (gap + 1) & mask;
+        while (table[slot] != 0) {
+            int home = hash(this.entries[(table[slot] - 1) * 2]) & mask;
+            // Move it unless its home lies between the gap and the slot
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                table[gap] = table[slot];
+                gap = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[gap] = 0;
+    }
+
+    private Object removeAt(int index) {
+        if (this.table != null) {
+            this.unlink(index);
+        }
+        Object old = this.entries[index * 2 + 1];
+        this.entries[index * 2] = REMOVED;
+        this.entries[index * 2 + 1] = null;
+        this.size -= 1;
+        this.modCount += 1;
+        return old;
+    }
+
+    /**
+     * Make room for one more entry, closing the gaps left by removals if that
+     * frees at least a quarter of the array and doubling it otherwise.
+     */
+    private void resize() {
+        Object[] old = this.entries;
+        Object[] entries = this.size * 4 <= this.used * 3
+                ? new Object[old.length]
+                : new Object[old.length * 2];
+        int count = 0;
+        for (int i = 0; i < this.used; i += 1) {
+            if (old[i * 2] != REMOVED) {
+                entries[count * 2] = old[i * 2];
+                entries[count * 2 + 1] = old[i * 2 + 1];
+                count += 1;
+            }
+        }
+        this.entries = entries;
+        this.used = count;
+        if (this.table != null) {
+            this.rehash();
+        }
+    }
+
+    /**
+     * Rebuild the table at a load factor of at most one half.
+     */
+    private void rehash() {
+        int capacity = Integer.highestOneBit(Math.max(this.used, SCAN_LIMIT)) * 4;
+        this.table = new int[capacity];
+        for (int i = 0; i < this.used; i += 1) {
+            Object key = this.entries[i * 2];
+            if (key != REMOVED) {
+                this.insert(key, i);
+            }
+        }
+    }
+
+    /**
+     * The keys or the entries of the map, in insertion order.
+     */
+    private final class EntrySet extends AbstractSet {
+        private final boolean keys;
+
+        EntrySet(boolean keys) {
+            this.keys = keys;
+        }
+
+        public int size() {
+            return JSONMap.this.size;
+        }
+
+        public boolean contains(Object o) {
+            if (this.keys) {
+                return JSONMap.this.containsKey(o);
+            }
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry e = (Map.Entry) o;
+            int index = JSONMap.this.indexOf(e.getKey());
+            return index >= 0
+                    && same(JSONMap.this.entries[index * 2 + 1], e.getValue());
+        }
+
+        public Iterator iterator() {
+            return new EntryIterator(this.keys);
+        }
+
+        public void clear() {
+            JSONMap.this.clear();
+        }
+    }
+
+    private final class EntryIterator implements Iterator {
+        private final boolean keys;
+        private int expectedModCount = JSONMap.this.modCount;
+        private int next;
+        private int last = -1;
+
+        EntryIterator(boolean keys) {
+            this.keys = keys;
+            this.advance();
+        }
+
+        private void advance() {
+            Object[] entries = JSONMap.this.entries;
+            while (this.next < JSONMap.this.used
+                    && entries[this.next * 2] == REMOVED) {
+                this.next += 1;
+            }
+        }
+
+        public boolean hasNext() {
+            return this.next < JSONMap.this.used;
+        }
+
+        public Object next() {
+            if (JSONMap.this.modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (this.next >= JSONMap.this.used) {
+                throw new NoSuchElementException();
+            }
+            this.last = this.next;
+            this.next += 1;
+            this.advance();
+            return this.keys
+                    ? JSONMap.this.entries[this.last * 2]
+                    : new Entry(this.last);
+        }
+
+        public void remove() {
+            if (this.last < 0) {
+                throw new IllegalStateException();
+            }
+            if (JSONMap.this.modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            // Entry numbers stay put, the gap is only closed by a later put
+            JSONMap.this.removeAt(this.last);
+            this.last = -1;
+            this.expectedModCount = JSONMap.this.modCount;
+        }
+    }
+
+    /**
+     * An entry that reads and writes through to the map.
+     */
+    private final class Entry implements Map.Entry {
+        private final int index;
+
+        Entry(int index) {
+            this.index = index;
+        }
+
+        public Object getKey() {
+            return JSONMap.this.entries[this.index * 2];
+        }
+
+        public Object getValue() {
+            return JSONMap.this.entries[this.index * 2 + 1];
+        }
+
+        public Object setValue(Object value) {
+            Object old = JSONMap.this.entries[this.index * 2 + 1];
+            JSONMap.this.entries[this.index * 2 + 1] = value;
+            return old;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry e = (Map.Entry) o;
+            return same(this.getKey(), e.getKey())
+                    && same(this.getValue(), e.getValue());
+        }
+
+        public int hashCode() {
+            Object key = this.getKey();
+            Object value = this.getValue();
+            return (key == null ? 0 : key.hashCode())
+                    ^ (value == null ? 0 : value.hashCode());
+        }
+
+        public String toString() {
+            return this.getKey() + "=" + this.getValue();
+        }
+    }
+}
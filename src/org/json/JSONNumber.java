@@ -0,0 +1,297 @@
+package org.json;
+
+/**
+ * Parses and formats the numbers of JSON text. Parsing is a single pass over
+ * the text, formatting produces the shortest decimal that reads back as the
+ * same double. Both keep the rules of JSONObject.stringToValue and
+ * JSONObject.numberToString: integers that would not print back the same,
+ * such as -0 and 007, stay strings, and only doubles between 10^-3 and 10^7
+ * are written without an exponent.
+ */
+final class JSONNumber {
+
+    /**
+     * Powers of ten that are exact doubles.
+     */
+    private static final double[] POWERS = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Largest long every smaller magnitude of which is an exact double.
+     */
+    private static final long MAX_EXACT = 1L << 53;
+
+    private JSONNumber() {
+    }
+
+
+    /**
+     * Convert text starting with a digit or '-' into a number.
+     *
+     * @param string Text of the number.
+     * @return An Integer, Long or Double, or null if the text should be
+     *         kept as a string.
+     */
+    static Number parse(String string) {
+        int len = string.length();
+        boolean negative = string.charAt(0) == '-';
+        int start = negative ? 1 : 0;
+        int i = start;
+
+        // Accumulate negatively, as Long.parseLong does, to reach MIN_VALUE
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long value = 0;
+        boolean overflow = false;
+        while (i < len) {
+            int digit = string.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            if (value < limit / 10 || value * 10 < limit + digit) {
+                overflow = true;
+            } else {
+                value = value * 10 - digit;
+            }
+            i += 1;
+        }
+
+        if (i == len) {
+            int digits = len - start;
+            if (digits == 0 || overflow
+                    || (digits > 1 && string.charAt(start) == '0')
+                    || (negative && value == 0)) {
+                return null;
+            }
+            long l = negative ? value : -value;
+            if (l == (int) l) {
+                return Integer.valueOf((int) l);
+            }
+            return Long.valueOf(l);
+        }
+
+        Double d = parseDecimal(string, negative, start);
+        if (d == null) {
+            d = parseFallback(string);
+        }
+        return d;
+    }
+
+
+    /**
+     * Parse -?digits(.digits*)?([eE][+-]?digits)? exactly, when the
+     * significand and the power of ten are both exact doubles.
+     *
+     * @return The value, or null if the text has another form or needs
+     *         correct rounding.
+     */
+    private static Double parseDecimal(String string, boolean negative,
+            int start) {
+        int len = string.length();
+        int i = start;
+        long significand = 0;
+        int digits = 0;
+        int exponent = 0;
+
+        while (i < len && string.charAt(i) >= '0' && string.charAt(i) <= '9') {
+            if (digits < 18) {
+                significand = significand * 10 + (string.charAt(i) - '0');
+                if (significand != 0) {
+                    digits += 1;
+                }
+            } else {
+                return null;
+            }
+            i += 1;
+        }
+        if (i == start) {
+            return null;
+        }
+
+        if (i < len && string.charAt(i) == '.') {
+            i += 1;
+            while (i < len && string.charAt(i) >= '0'
+                    && string.charAt(i) <= '9') {
+                if (digits >= 18) {
+                    return null;
+                }
+                significand = significand * 10 + (string.charAt(i) - '0');
+                if (significand != 0) {
+                    digits += 1;
+                }
+                exponent -= 1;
+                i += 1;
+            }
+        }
+
+        if (i < len && (string.charAt(i) == 'e' || string.charAt(i) == 'E')) {
+            i += 1;
+            boolean negativeExponent = false;
+            if (i < len && (string.charAt(i) == '+' || string.charAt(i) == '-')) {
+                negativeExponent = string.charAt(i) == '-';
+                i += 1;
+            }
+            int expStart = i;
+            int exp = 0;
+            while (i < len && string.charAt(i) >= '0'
+                    && string.charAt(i) <= '9') {
+                if (i - expStart >= 4) {
+                    return null;
+                }
+                exp = exp * 10 + (string.charAt(i) - '0');
+                i += 1;
+            }
+            if (i == expStart) {
+                return null;
+            }
+            exponent += negativeExponent ? -exp : exp;
+        }
+
+        if (i != len) {
+            return null;
+        }
+
+        double d;
+        if (significand == 0) {
+            d = 0;
+        } else if (significand < MAX_EXACT && exponent >= 0
+                && exponent < POWERS.length) {
+            d = significand * POWERS[exponent];
+        } else if (significand < MAX_EXACT && exponent < 0
+                && -exponent < POWERS.length) {
+            d = significand / POWERS[-exponent];
+        } else {
+            return null;
+        }
+        if (Double.isInfinite(d)) {
+            return null;
+        }
+        return Double.valueOf(negative ? -d : d);
+    }
+
+
+    /**
+     * Parse text the way stringToValue always has, for the forms and
+     * magnitudes parseDecimal does not handle.
+     */
+    private static Double parseFallback(String string) {
+        if (string.indexOf('.') < 0 && string.indexOf('e') < 0
+                && string.indexOf('E') < 0) {
+            return null;
+        }
+        try {
+            Double d = Double.valueOf(string);
+            if (!d.isInfinite() && !d.isNaN()) {
+                return d;
+            }
+        } catch (NumberFormatException ignore) {
+        }
+        return null;
+    }
+
+
+    /**
+     * Format a finite double as the shortest decimal that reads back as the
+     * same double. Doubles between 10^-3 and 10^7 are written without an
+     * exponent or trailing zeros, others as Double.toString does.
+     *
+     * @param d A finite double.
+     * @return The text of the double.
+     */
+    static String format(double d) {
+        if (d == 0) {
+            return 1 / d < 0 ? "-0" : "0";
+        }
+
+        double abs = Math.abs(d);
+        if (abs < 1e-3 || abs >= 1e7) {
+            return Double.toString(d);
+        }
+
+        long whole = (long) d;
+        if (whole == d) {
+            return Long.toString(whole);
+        }
+
+        for (int scale = 1; scale < POWERS.length; scale += 1) {
+            double power = POWERS[scale];
+            long scaled = Math.round(abs * power);
+            if (scaled >= MAX_EXACT) {
+                break;
+            }
+
+            // The product may have been rounded, so try its neighbours too
+            if (scaled / power == abs) {
+                return plain(d < 0, scaled, scale);
+            }
+            if ((scaled - 1) / power == abs) {
+                return plain(d < 0, scaled - 1, scale);
+            }
+            if ((scaled + 1) / power == abs) {
+                return plain(d < 0, scaled + 1, scale);
+            }
+        }
+
+        return trim(Double.toString(d));
+    }
+
+
+    /**
+     * Format a float as numberToString always has.
+     */
+    static String format(float f) {
+        return trim(Float.toString(f));
+    }
+
+
+    /**
+     * Write significand * 10^-scale without an exponent.
+     */
+    private static String plain(boolean negative, long significand,
+            int scale) {
+        char[] digits = Long.toString(significand).toCharArray();
+        int point = digits.length - scale;
+        int end = digits.length;
+        while (end > Math.max(point, 0) && digits[end - 1] == '0') {
+            end -= 1;
+        }
+
+        StringBuilder sb = new StringBuilder(end + 4 + Math.max(-point, 0));
+        if (negative) {
+            sb.append('-');
+        }
+        if (point <= 0) {
+            sb.append("0.");
+            for (int i = point; i < 0; i += 1) {
+                sb.append('0');
+            }
+            sb.append(digits, 0, end);
+        } else {
+            sb.append(digits, 0, point);
+            if (end > point) {
+                sb.append('.').append(digits, point, end - point);
+            }
+        }
+        return sb.toString();
+    }
+
+
+    /**
+     * Shave off trailing zeros and decimal point, if possible.
+     */
+    static String trim(String string) {
+        if (string.indexOf('.') > 0 && string.indexOf('e') < 0
+                && string.indexOf('E') < 0) {
+            int end = string.length();
+            while (string.charAt(end - 1) == '0') {
+                end -= 1;
+            }
+            if (string.charAt(end - 1) == '.') {
+                end -= 1;
+            }
+            return string.substring(0, end);
+        }
+        return string;
+    }
+}
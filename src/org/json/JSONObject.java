@@ -27,12 +27,10 @@ package org.json;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.util.Collection;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
@@ -134,7 +132,8 @@ public class JSONObject {
     }
 
     /**
-     * The map where the JSONObject's properties are kept.
+     * The map where the JSONObject's properties are kept, in the order they
+     * were first put.
      */
     private final Map map;
 
@@ -146,11 +145,43 @@ public class JSONObject {
      */
     public static final Object NULL = new Null();
 
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Escape sequences of the ASCII characters quote must always escape.
+     * '/' is only escaped after '<', and is left out.
+     */
+    private static final String[] ESCAPES = new String[0x80];
+
+    static {
+        for (char c = 0; c < ' '; c += 1) {
+            ESCAPES[c] = unicodeEscape(c);
+        }
+        ESCAPES['\b'] = "\\b";
+        ESCAPES['\t'] = "\\t";
+        ESCAPES['\n'] = "\\n";
+        ESCAPES['\f'] = "\\f";
+        ESCAPES['\r'] = "\\r";
+        ESCAPES['"'] = "\\\"";
+        ESCAPES['\\'] = "\\\\";
+    }
+
     /**
      * Construct an empty JSONObject.
      */
     public JSONObject() {
-        this.map = new HashMap();
+        this.map = new JSONMap();
+    }
+
+    /**
+     * Construct an empty JSONObject that holds the given number of keys
+     * without growing.
+     *
+     * @param expectedSize
+     *            The number of keys the object is expected to hold.
+     */
+    public JSONObject(int expectedSize) {
+        this.map = new JSONMap(expectedSize);
     }
 
     /**
@@ -168,7 +199,7 @@ public class JSONObject {
      *                duplicated.
      */
     public JSONObject(JSONObject jo, String[] names) {
-        this();
+        this(names.length);
         for (int i = 0; i < names.length; i += 1) {
             try {
                 this.putOnce(names[i], jo.opt(names[i]));
@@ -203,7 +234,7 @@ public class JSONObject {
                 return;
             default:
                 x.back();
-                key = x.nextValue().toString();
+                key = x.nextKey();
             }
 
 // The key is followed by ':'.
@@ -241,7 +272,7 @@ public class JSONObject {
      * @throws JSONException
      */
     public JSONObject(Map map) {
-        this.map = new HashMap();
+        this.map = new JSONMap(map == null ? 0 : map.size());
         if (map != null) {
             Iterator i = map.entrySet().iterator();
             while (i.hasNext()) {
@@ -440,20 +471,7 @@ public class JSONObject {
         if (Double.isInfinite(d) || Double.isNaN(d)) {
             return "null";
         }
-
-// Shave off trailing zeros and decimal point, if possible.
-
-        String string = Double.toString(d);
-        if (string.indexOf('.') > 0 && string.indexOf('e') < 0
-                && string.indexOf('E') < 0) {
-            while (string.endsWith("0")) {
-                string = string.substring(0, string.length() - 1);
-            }
-            if (string.endsWith(".")) {
-                string = string.substring(0, string.length() - 1);
-            }
-        }
-        return string;
+        return JSONNumber.format(d);
     }
 
     /**
@@ -771,19 +789,19 @@ public class JSONObject {
         }
         testValidity(number);
 
+        if (number instanceof Integer || number instanceof Long) {
+            return number.toString();
+        }
+        if (number instanceof Double) {
+            return JSONNumber.format(number.doubleValue());
+        }
+        if (number instanceof Float) {
+            return JSONNumber.format(number.floatValue());
+        }
+
 // Shave off trailing zeros and decimal point, if possible.
 
-        String string = number.toString();
-        if (string.indexOf('.') > 0 && string.indexOf('e') < 0
-                && string.indexOf('E') < 0) {
-            while (string.endsWith("0")) {
-                string = string.substring(0, string.length() - 1);
-            }
-            if (string.endsWith(".")) {
-                string = string.substring(0, string.length() - 1);
-            }
-        }
-        return string;
+        return JSONNumber.trim(number.toString());
     }
 
     /**
@@ -979,47 +997,20 @@ public class JSONObject {
     }
 
     private void populateMap(Object bean) {
-        Class klass = bean.getClass();
-
-// If klass is a System class then set includeSuperClass to false.
-
-        boolean includeSuperClass = klass.getClassLoader() != null;
-
-        Method[] methods = includeSuperClass ? klass.getMethods() : klass
-                .getDeclaredMethods();
-        for (int i = 0; i < methods.length; i += 1) {
+        JSONBean described = JSONBean.forClass(bean.getClass());
+        String[] keys = described.keys;
+        MethodHandle[] getters = described.getters;
+        for (int i = 0; i < keys.length; i += 1) {
+            Object result;
             try {
-                Method method = methods[i];
-                if (Modifier.isPublic(method.getModifiers())) {
-                    String name = method.getName();
-                    String key = "";
-                    if (name.startsWith("get")) {
-                        if ("getClass".equals(name)
-                                || "getDeclaringClass".equals(name)) {
-                            key = "";
-                        } else {
-                            key = name.substring(3);
-                        }
-                    } else if (name.startsWith("is")) {
-                        key = name.substring(2);
-                    }
-                    if (key.length() > 0
-                            && Character.isUpperCase(key.charAt(0))
-                            && method.getParameterTypes().length == 0) {
-                        if (key.length() == 1) {
-                            key = key.toLowerCase();
-                        } else if (!Character.isUpperCase(key.charAt(1))) {
-                            key = key.substring(0, 1).toLowerCase()
-                                    + key.substring(1);
-                        }
-
-                        Object result = method.invoke(bean, (Object[]) null);
-                        if (result != null) {
-                            this.map.put(key, wrap(result));
-                        }
-                    }
-                }
-            } catch (Exception ignore) {
+                result = getters[i].invokeExact(bean);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable ignore) {
+                continue;
+            }
+            if (result != null) {
+                this.map.put(keys[i], wrap(result));
             }
         }
     }
@@ -1068,7 +1059,7 @@ public class JSONObject {
      *             If the key is null or if the number is invalid.
      */
     public JSONObject put(String key, double value) throws JSONException {
-        this.put(key, new Double(value));
+        this.put(key, Double.valueOf(value));
         return this;
     }
 
@@ -1084,7 +1075,7 @@ public class JSONObject {
      *             If the key is null.
      */
     public JSONObject put(String key, int value) throws JSONException {
-        this.put(key, new Integer(value));
+        this.put(key, Integer.valueOf(value));
         return this;
     }
 
@@ -1100,7 +1091,7 @@ public class JSONObject {
      *             If the key is null.
      */
     public JSONObject put(String key, long value) throws JSONException {
-        this.put(key, new Long(value));
+        this.put(key, Long.valueOf(value));
         return this;
     }
 
@@ -1200,76 +1191,100 @@ public class JSONObject {
      * @return A String correctly formatted for insertion in a JSON text.
      */
     public static String quote(String string) {
-        StringWriter sw = new StringWriter();
-        synchronized (sw.getBuffer()) {
-            try {
-                return quote(string, sw).toString();
-            } catch (IOException ignored) {
-                // will never happen - we are writing to a string writer
-                return "";
-            }
+        if (string == null || string.length() == 0) {
+            return "\"\"";
         }
+
+        int len = string.length();
+        int i = escapeIndex(string, 0);
+        if (i == len) {
+            return new StringBuilder(len + 2).append('"').append(string)
+                    .append('"').toString();
+        }
+
+        StringBuilder sb = new StringBuilder(len + 16);
+        sb.append('"');
+        int start = 0;
+        while (i < len) {
+            sb.append(string, start, i);
+            sb.append(escape(string.charAt(i)));
+            start = i + 1;
+            i = escapeIndex(string, start);
+        }
+        sb.append(string, start, len);
+        sb.append('"');
+        return sb.toString();
     }
 
     public static Writer quote(String string, Writer w) throws IOException {
+        if (w instanceof JSONByteWriter) {
+            ((JSONByteWriter) w).writeQuoted(string);
+            return w;
+        }
         if (string == null || string.length() == 0) {
             w.write("\"\"");
             return w;
         }
 
-        char b;
-        char c = 0;
-        String hhhh;
-        int i;
         int len = string.length();
+        int start = 0;
+        int i = escapeIndex(string, 0);
 
         w.write('"');
-        for (i = 0; i < len; i += 1) {
-            b = c;
-            c = string.charAt(i);
-            switch (c) {
-            case '\\':
-            case '"':
-                w.write('\\');
-                w.write(c);
-                break;
-            case '/':
-                if (b == '<') {
-                    w.write('\\');
-                }
-                w.write(c);
-                break;
-            case '\b':
-                w.write("\\b");
-                break;
-            case '\t':
-                w.write("\\t");
-                break;
-            case '\n':
-                w.write("\\n");
-                break;
-            case '\f':
-                w.write("\\f");
-                break;
-            case '\r':
-                w.write("\\r");
-                break;
-            default:
-                if (c < ' ' || (c >= '\u0080' && c < '\u00a0')
-                        || (c >= '\u2000' && c < '\u2100')) {
-                    w.write("\\u");
-                    hhhh = Integer.toHexString(c);
-                    w.write("0000", 0, 4 - hhhh.length());
-                    w.write(hhhh);
-                } else {
-                    w.write(c);
-                }
-            }
+        while (i < len) {
+            w.write(string, start, i - start);
+            w.write(escape(string.charAt(i)));
+            start = i + 1;
+            i = escapeIndex(string, start);
         }
+        w.write(string, start, len - start);
         w.write('"');
         return w;
     }
 
+    /**
+     * Find the next character of a string that quote must escape.
+     *
+     * @param string
+     *            The string being quoted.
+     * @param from
+     *            The index to start looking at.
+     * @return The index of the character, or the length of the string if
+     *         the rest can be copied as is.
+     */
+    private static int escapeIndex(String string, int from) {
+        int len = string.length();
+        char b = from > 0 ? string.charAt(from - 1) : 0;
+        for (int i = from; i < len; i += 1) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                if (ESCAPES[c] != null || (c == '/' && b == '<')) {
+                    return i;
+                }
+            } else if (c < '\u00a0' || (c >= '\u2000' && c < '\u2100')) {
+                return i;
+            }
+            b = c;
+        }
+        return len;
+    }
+
+    /**
+     * Get the escape sequence of a character found by escapeIndex.
+     */
+    private static String escape(char c) {
+        if (c == '/') {
+            return "\\/";
+        }
+        return c < 0x80 ? ESCAPES[c] : unicodeEscape(c);
+    }
+
+    private static String unicodeEscape(char c) {
+        return new String(new char[] { '\\', 'u', HEX_DIGITS[(c >> 12) & 0xF],
+                HEX_DIGITS[(c >> 8) & 0xF], HEX_DIGITS[(c >> 4) & 0xF],
+                HEX_DIGITS[c & 0xF] });
+    }
+
     /**
      * Remove a name and its value, if present.
      *
@@ -1291,19 +1306,9 @@ public class JSONObject {
      * @return A simple JSON value.
      */
     public static Object stringToValue(String string) {
-        Double d;
         if (string.equals("")) {
             return string;
         }
-        if (string.equalsIgnoreCase("true")) {
-            return Boolean.TRUE;
-        }
-        if (string.equalsIgnoreCase("false")) {
-            return Boolean.FALSE;
-        }
-        if (string.equalsIgnoreCase("null")) {
-            return JSONObject.NULL;
-        }
 
         /*
          * If it might be a number, try converting it. If a number cannot be
@@ -1312,25 +1317,18 @@ public class JSONObject {
 
         char b = string.charAt(0);
         if ((b >= '0' && b <= '9') || b == '-') {
-            try {
-                if (string.indexOf('.') > -1 || string.indexOf('e') > -1
-                        || string.indexOf('E') > -1) {
-                    d = Double.valueOf(string);
-                    if (!d.isInfinite() && !d.isNaN()) {
-                        return d;
-                    }
-                } else {
-                    Long myLong = new Long(string);
-                    if (string.equals(myLong.toString())) {
-                        if (myLong.longValue() == myLong.intValue()) {
-                            return new Integer(myLong.intValue());
-                        } else {
-                            return myLong;
-                        }
-                    }
-                }
-            } catch (Exception ignore) {
-            }
+            Number number = JSONNumber.parse(string);
+            return number != null ? number : string;
+        }
+
+        if (string.equalsIgnoreCase("true")) {
+            return Boolean.TRUE;
+        }
+        if (string.equalsIgnoreCase("false")) {
+            return Boolean.FALSE;
+        }
+        if (string.equalsIgnoreCase("null")) {
+            return JSONObject.NULL;
         }
         return string;
     }
@@ -1517,12 +1515,7 @@ public class JSONObject {
             if (object instanceof Map) {
                 return new JSONObject((Map) object);
             }
-            Package objectPackage = object.getClass().getPackage();
-            String objectPackageName = objectPackage != null ? objectPackage
-                    .getName() : "";
-            if (objectPackageName.startsWith("java.")
-                    || objectPackageName.startsWith("javax.")
-                    || object.getClass().getClassLoader() == null) {
+            if (JSONBean.forClass(object.getClass()).system) {
                 return object.toString();
             }
             return new JSONObject(object);
@@ -1533,7 +1526,9 @@ public class JSONObject {
 
     /**
      * Write the contents of the JSONObject as JSON text to a writer. For
-     * compactness, no whitespace is added.
+     * compactness, no whitespace is added. Given a {@link JSONByteWriter},
+     * the text is encoded as UTF-8 without intermediate Strings for keys,
+     * strings and integers.
      * <p>
      * Warning: This method assumes that the data structure is acyclical.
      *
@@ -1560,7 +1555,11 @@ public class JSONObject {
         } else if (value.getClass().isArray()) {
             new JSONArray(value).write(writer, indentFactor, indent);
         } else if (value instanceof Number) {
-            writer.write(numberToString((Number) value));
+            if (writer instanceof JSONByteWriter) {
+                ((JSONByteWriter) writer).writeNumber((Number) value);
+            } else {
+                writer.write(numberToString((Number) value));
+            }
         } else if (value instanceof Boolean) {
             writer.write(value.toString());
         } else if (value instanceof JSONString) {
@@ -1602,7 +1601,7 @@ public class JSONObject {
 
             if (length == 1) {
                 Object key = keys.next();
-                writer.write(quote(key.toString()));
+                quote(key.toString(), writer);
                 writer.write(':');
                 if (indentFactor > 0) {
                     writer.write(' ');
@@ -1619,7 +1618,7 @@ public class JSONObject {
                         writer.write('\n');
                     }
                     indent(writer, newindent);
-                    writer.write(quote(key.toString()));
+                    quote(key.toString(), writer);
                     writer.write(':');
                     if (indentFactor > 0) {
                         writer.write(' ');
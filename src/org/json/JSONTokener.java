@@ -1,11 +1,10 @@
 package org.json;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
-import java.io.StringReader;
+import java.util.Arrays;
 
 /*
 Copyright (c) 2002 JSON.org
@@ -35,18 +34,50 @@ SOFTWARE.
  * A JSONTokener takes a source string and extracts characters and tokens from
  * it. It is used by the JSONObject and JSONArray constructors to parse
  * JSON source strings.
+ * <p>
+ * Characters are read in blocks into an internal window, and strings,
+ * numbers and whitespace are scanned from the window in tight loops. The
+ * line and character reported by {@link #syntaxError(String)} are only
+ * computed when they are asked for.
  * @author JSON.org
  * @version 2012-02-16
  */
 public class JSONTokener {
 
-    private long    character;
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Characters that end an unquoted value, by character.
+     */
+    private static final boolean[] DELIMITERS = new boolean[128];
+
+    static {
+        String delimiters = ",:]}/\\\"[{;=#";
+        for (int i = 0; i < delimiters.length(); i += 1) {
+            DELIMITERS[delimiters.charAt(i)] = true;
+        }
+    }
+
+    private char[]  buffer;
     private boolean eof;
-    private long    index;
-    private long    line;
-    private char    previous;
+    private boolean exhausted;
+    private int     limit;
+    private int     mark = -1;
+    private long    offset;
+    private int     position;
     private Reader  reader;
-    private boolean usePrevious;
+
+    /**
+     * Table of the keys returned by {@link #nextKey()}, or null.
+     */
+    private JSONKeyTable keys = JSONKeyTable.getShared();
+
+    /**
+     * Position of buffer[0], folded forward when the window moves.
+     */
+    private long    baseCharacter = 1;
+    private long    baseLine = 1;
+    private char    basePrevious;
 
 
     /**
@@ -55,15 +86,8 @@ public class JSONTokener {
      * @param reader     A reader.
      */
     public JSONTokener(Reader reader) {
-        this.reader = reader.markSupported()
-            ? reader
-            : new BufferedReader(reader);
-        this.eof = false;
-        this.usePrevious = false;
-        this.previous = 0;
-        this.index = 0;
-        this.character = 1;
-        this.line = 1;
+        this.reader = reader;
+        this.buffer = new char[BUFFER_SIZE];
     }
 
 
@@ -81,7 +105,34 @@ public class JSONTokener {
      * @param s     A source string.
      */
     public JSONTokener(String s) {
-        this(new StringReader(s));
+        this.buffer = s.toCharArray();
+        this.limit = this.buffer.length;
+        this.exhausted = true;
+    }
+
+
+    /**
+     * Construct a JSONTokener for a subclass that supplies its characters
+     * by overriding {@link #read(char[], int, int)}.
+     */
+    protected JSONTokener() {
+        this.buffer = new char[BUFFER_SIZE];
+    }
+
+
+    /**
+     * Read characters from the source into the window. The default
+     * implementation reads from the Reader given to the constructor.
+     *
+     * @param cbuf   Destination buffer.
+     * @param off    Offset at which to start storing characters.
+     * @param len    Maximum number of characters to read.
+     * @return       The number of characters read, or -1 at the end of the
+     *               source.
+     * @throws IOException If the source could not be read.
+     */
+    protected int read(char[] cbuf, int off, int len) throws IOException {
+        return this.reader == null ? -1 : this.reader.read(cbuf, off, len);
     }
 
 
@@ -91,12 +142,10 @@ public class JSONTokener {
      * the next number or identifier.
      */
     public void back() throws JSONException {
-        if (this.usePrevious || this.index <= 0) {
+        if (this.position <= 0) {
             throw new JSONException("Stepping back two steps is not supported");
         }
-        this.index -= 1;
-        this.character -= 1;
-        this.usePrevious = true;
+        this.position -= 1;
         this.eof = false;
     }
 
@@ -121,7 +170,7 @@ public class JSONTokener {
     }
 
     public boolean end() {
-        return this.eof && !this.usePrevious;
+        return this.eof;
     }
 
 
@@ -146,34 +195,16 @@ public class JSONTokener {
      * @return The next character, or 0 if past the end of the source string.
      */
     public char next() throws JSONException {
-        int c;
-        if (this.usePrevious) {
-            this.usePrevious = false;
-            c = this.previous;
-        } else {
-            try {
-                c = this.reader.read();
-            } catch (IOException exception) {
-                throw new JSONException(exception);
-            }
-
-            if (c <= 0) { // End of stream
+        if (this.position < this.limit || this.fill()) {
+            char c = this.buffer[this.position++];
+            if (c == 0) {
                 this.eof = true;
-                c = 0;
             }
+            return c;
         }
-        this.index += 1;
-        if (this.previous == '\r') {
-            this.line += 1;
-            this.character = c == '\n' ? 0 : 1;
-        } else if (c == '\n') {
-            this.line += 1;
-            this.character = 0;
-        } else {
-            this.character += 1;
-        }
-        this.previous = (char) c;
-        return this.previous;
+        this.eof = true;
+        this.position = this.limit + 1;
+        return 0;
     }
 
 
@@ -212,11 +243,15 @@ public class JSONTokener {
          int pos = 0;
 
          while (pos < n) {
-             chars[pos] = this.next();
-             if (this.end()) {
+             if (this.position >= this.limit && !this.fill()) {
+                 this.eof = true;
+                 this.position = this.limit + 1;
                  throw this.syntaxError("Substring bounds error");
              }
-             pos += 1;
+             int count = Math.min(n - pos, this.limit - this.position);
+             System.arraycopy(this.buffer, this.position, chars, pos, count);
+             this.position += count;
+             pos += count;
          }
          return new String(chars);
      }
@@ -229,9 +264,22 @@ public class JSONTokener {
      */
     public char nextClean() throws JSONException {
         for (;;) {
-            char c = this.next();
-            if (c == 0 || c > ' ') {
-                return c;
+            char[] buf = this.buffer;
+            int end = this.limit;
+            int i = this.position;
+            while (i < end) {
+                char c = buf[i++];
+                if (c > ' ' || c == 0) {
+                    this.position = i;
+                    if (c == 0) {
+                        this.eof = true;
+                    }
+                    return c;
+                }
+            }
+            this.position = i;
+            if (!this.fill()) {
+                return this.next();
             }
         }
     }
@@ -249,51 +297,94 @@ public class JSONTokener {
      * @throws JSONException Unterminated string.
      */
     public String nextString(char quote) throws JSONException {
-        char c;
-        StringBuffer sb = new StringBuffer();
+        return this.nextString(quote, null);
+    }
+
+
+    /**
+     * Return the characters up to the next close quote character, taking
+     * them from the key table if one is given.
+     */
+    private String nextString(char quote, JSONKeyTable table)
+            throws JSONException {
+        StringBuilder sb = null;
         for (;;) {
+            char[] buf = this.buffer;
+            int end = this.limit;
+            int start = this.position;
+            int i = start;
+            char c = 0;
+            while (i < end) {
+                c = buf[i];
+                if (c == quote || c == '\\' || c == '\n' || c == '\r' ||
+                        c == 0) {
+                    break;
+                }
+                i += 1;
+            }
+
+            if (i == end) {
+                if (sb == null) {
+                    sb = new StringBuilder(Math.max(16, (i - start) * 2));
+                }
+                sb.append(buf, start, i - start);
+                this.position = i;
+                if (!this.fill()) {
+                    this.next();
+                    throw this.syntaxError("Unterminated string");
+                }
+                continue;
+            }
+
+            this.position = i + 1;
+            if (c == quote) {
+                if (sb == null) {
+                    return table == null
+                        ? new String(buf, start, i - start)
+                        : table.intern(buf, start, i - start);
+                }
+                sb.append(buf, start, i - start);
+                return table == null
+                    ? sb.toString()
+                    : table.intern(sb.toString());
+            }
+            if (c != '\\') {
+                throw this.syntaxError("Unterminated string");
+            }
+
+            if (sb == null) {
+                sb = new StringBuilder(Math.max(16, (i - start) * 2));
+            }
+            sb.append(buf, start, i - start);
+
             c = this.next();
             switch (c) {
-            case 0:
-            case '\n':
-            case '\r':
-                throw this.syntaxError("Unterminated string");
+            case 'b':
+                sb.append('\b');
+                break;
+            case 't':
+                sb.append('\t');
+                break;
+            case 'n':
+                sb.append('\n');
+                break;
+            case 'f':
+                sb.append('\f');
+                break;
+            case 'r':
+                sb.append('\r');
+                break;
+            case 'u':
+                sb.append((char)Integer.parseInt(this.next(4), 16));
+                break;
+            case '"':
+            case '\'':
             case '\\':
-                c = this.next();
-                switch (c) {
-                case 'b':
-                    sb.append('\b');
-                    break;
-                case 't':
-                    sb.append('\t');
-                    break;
-                case 'n':
-                    sb.append('\n');
-                    break;
-                case 'f':
-                    sb.append('\f');
-                    break;
-                case 'r':
-                    sb.append('\r');
-                    break;
-                case 'u':
-                    sb.append((char)Integer.parseInt(this.next(4), 16));
-                    break;
-                case '"':
-                case '\'':
-                case '\\':
-                case '/':
-                    sb.append(c);
-                    break;
-                default:
-                    throw this.syntaxError("Illegal escape.");
-                }
+            case '/':
+                sb.append(c);
                 break;
             default:
-                if (c == quote) {
-                    return sb.toString();
-                }
-                sb.append(c);
+                throw this.syntaxError("Illegal escape.");
             }
         }
     }
@@ -306,7 +397,7 @@ public class JSONTokener {
      * @return   A string.
      */
     public String nextTo(char delimiter) throws JSONException {
-        StringBuffer sb = new StringBuffer();
+        StringBuilder sb = new StringBuilder();
         for (;;) {
             char c = this.next();
             if (c == delimiter || c == 0 || c == '\n' || c == '\r') {
@@ -328,7 +419,7 @@ public class JSONTokener {
      */
     public String nextTo(String delimiters) throws JSONException {
         char c;
-        StringBuffer sb = new StringBuffer();
+        StringBuilder sb = new StringBuilder();
         for (;;) {
             c = this.next();
             if (delimiters.indexOf(c) >= 0 || c == 0 ||
@@ -343,6 +434,46 @@ public class JSONTokener {
     }
 
 
+    /**
+     * Get the next key of an object. A quoted key is looked up in the key
+     * table by its characters, so a key seen before is returned as the same
+     * String. Any other key is read as a value and converted to a string.
+     *
+     * @return The key.
+     * @throws JSONException If syntax error.
+     */
+    public String nextKey() throws JSONException {
+        char c = this.nextClean();
+        if (c == '"' || c == '\'') {
+            return this.nextString(c, this.keys);
+        }
+        this.back();
+        String key = this.nextValue().toString();
+        return this.keys == null ? key : this.keys.intern(key);
+    }
+
+
+    /**
+     * Get the table that keys are looked up in.
+     *
+     * @return The key table, or null if keys are not looked up.
+     */
+    public JSONKeyTable getKeyTable() {
+        return this.keys;
+    }
+
+
+    /**
+     * Set the table that keys are looked up in. A new tokener uses
+     * {@link JSONKeyTable#getShared()}.
+     *
+     * @param keys The key table, or null to make a new String for each key.
+     */
+    public void setKeyTable(JSONKeyTable keys) {
+        this.keys = keys;
+    }
+
+
     /**
      * Get the next value. The value can be a Boolean, Double, Integer,
      * JSONArray, JSONObject, Long, or String, or the JSONObject.NULL object.
@@ -352,7 +483,6 @@ public class JSONTokener {
      */
     public Object nextValue() throws JSONException {
         char c = this.nextClean();
-        String string;
 
         switch (c) {
             case '"':
@@ -375,14 +505,8 @@ public class JSONTokener {
          * formatting character.
          */
 
-        StringBuffer sb = new StringBuffer();
-        while (c >= ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0) {
-            sb.append(c);
-            c = this.next();
-        }
         this.back();
-
-        string = sb.toString().trim();
+        String string = this.nextUnquoted().trim();
         if ("".equals(string)) {
             throw this.syntaxError("Missing value");
         }
@@ -390,6 +514,45 @@ public class JSONTokener {
     }
 
 
+    /**
+     * Scan unquoted text up to, but not including, the next formatting
+     * character or the end of the text.
+     *
+     * @return The text, untrimmed.
+     */
+    private String nextUnquoted() throws JSONException {
+        StringBuilder sb = null;
+        for (;;) {
+            char[] buf = this.buffer;
+            int end = this.limit;
+            int start = this.position;
+            int i = start;
+            while (i < end) {
+                char c = buf[i];
+                if (c < ' ' || (c < 128 && DELIMITERS[c])) {
+                    break;
+                }
+                i += 1;
+            }
+            this.position = i;
+
+            if (i < end) {
+                if (sb == null) {
+                    return new String(buf, start, i - start);
+                }
+                return sb.append(buf, start, i - start).toString();
+            }
+            if (sb == null) {
+                sb = new StringBuilder();
+            }
+            sb.append(buf, start, i - start);
+            if (!this.fill()) {
+                return sb.toString();
+            }
+        }
+    }
+
+
     /**
      * Skip characters until the next character is the requested character.
      * If the requested character is not found, no characters are skipped.
@@ -399,30 +562,103 @@ public class JSONTokener {
      */
     public char skipTo(char to) throws JSONException {
         char c;
-        try {
-            long startIndex = this.index;
-            long startCharacter = this.character;
-            long startLine = this.line;
-            this.reader.mark(1000000);
-            do {
-                c = this.next();
-                if (c == 0) {
-                    this.reader.reset();
-                    this.index = startIndex;
-                    this.character = startCharacter;
-                    this.line = startLine;
-                    return c;
-                }
-            } while (c != to);
-        } catch (IOException exc) {
-            throw new JSONException(exc);
-        }
+        this.mark = this.position;
+        do {
+            c = this.next();
+            if (c == 0) {
+                this.position = this.mark;
+                this.mark = -1;
+                this.eof = false;
+                return c;
+            }
+        } while (c != to);
 
+        this.mark = -1;
         this.back();
         return c;
     }
 
 
+    /**
+     * Move the window forward and read more characters into it. The
+     * character before the current position, and everything from a mark
+     * set by skipTo, is kept.
+     *
+     * @return true if at least one more character is available.
+     */
+    private boolean fill() throws JSONException {
+        if (this.exhausted) {
+            return false;
+        }
+
+        if (this.limit == this.buffer.length) {
+            int keep = Math.max(this.position - 1, 0);
+            if (this.mark >= 0 && this.mark < keep) {
+                keep = this.mark;
+            }
+            if (keep > 0) {
+                this.advance(keep);
+                System.arraycopy(this.buffer, keep, this.buffer, 0,
+                        this.limit - keep);
+                this.limit -= keep;
+                this.position -= keep;
+                this.offset += keep;
+                if (this.mark >= 0) {
+                    this.mark -= keep;
+                }
+            } else {
+                this.buffer = Arrays.copyOf(this.buffer,
+                        Math.max(BUFFER_SIZE, this.buffer.length * 2));
+            }
+        }
+
+        int count;
+        try {
+            count = this.read(this.buffer, this.limit,
+                    this.buffer.length - this.limit);
+        } catch (IOException exception) {
+            throw new JSONException(exception);
+        }
+
+        if (count <= 0) {
+            this.exhausted = true;
+            return false;
+        }
+        this.limit += count;
+        return true;
+    }
+
+
+    /**
+     * Fold the line and character of the first count characters of the
+     * window into the base position, before they are discarded.
+     */
+    private void advance(int count) {
+        long line = this.baseLine;
+        long character = this.baseCharacter;
+        char previous = this.basePrevious;
+        char[] buf = this.buffer;
+
+        for (int i = 0; i < count; i += 1) {
+            char c = buf[i];
+            if (previous == '\r') {
+                line += 1;
+                character = c == '\n' ? 0 : 1;
+            } else if (c == '\n') {
+                line += 1;
+                character = 0;
+            } else {
+                character += 1;
+            }
+            previous = c;
+        }
+
+        this.baseLine = line;
+        this.baseCharacter = character;
+        this.basePrevious = previous;
+    }
+
+
     /**
      * Make a JSONException to signal a syntax error.
      *
@@ -440,7 +676,26 @@ public class JSONTokener {
      * @return " at {index} [character {character} line {line}]"
      */
     public String toString() {
-        return " at " + this.index + " [character " + this.character + " line " +
-            this.line + "]";
+        long line = this.baseLine;
+        long character = this.baseCharacter;
+        char previous = this.basePrevious;
+        char[] buf = this.buffer;
+
+        for (int i = 0; i < this.position; i += 1) {
+            char c = i < this.limit ? buf[i] : 0;
+            if (previous == '\r') {
+                line += 1;
+                character = c == '\n' ? 0 : 1;
+            } else if (c == '\n') {
+                line += 1;
+                character = 0;
+            } else {
+                character += 1;
+            }
+            previous = c;
+        }
+
+        return " at " + (this.offset + this.position) + " [character " +
+            character + " line " + line + "]";
     }
 }
@@ -0,0 +1,366 @@
+package com.prettymuchabigdeal.serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.json.JSONObject;
+
+import com.prettymuchabigdeal.serializer.impl.BinaryData;
+import com.prettymuchabigdeal.serializer.impl.BinarySerializationMethod;
+import com.prettymuchabigdeal.serializer.impl.BinaryStreamReader;
+import com.prettymuchabigdeal.serializer.impl.BinaryStreamWriter;
+import com.prettymuchabigdeal.serializer.impl.JSONSerilizationMethod;
+import com.prettymuchabigdeal.serializer.impl.JSONStreamReader;
+import com.prettymuchabigdeal.serializer.impl.JSONStreamWriter;
+
+/**
+ * Round trips sample objects through every way data can travel: JSON and
+ * binary Data trees, both as they are and through text or bytes, JSON and
+ * binary streams, and the default methods of {@link SerializationMethod}. Each loaded object must match the original field by field.
+ * Run with the library on the class path, exits with status 1 if a check
+ * fails:
+ *
+ * <pre>
+ * java com.prettymuchabigdeal.serializer.RoundTripTest
+ * </pre>
+ *
+ */
+public class RoundTripTest {
+
+	@Serializable
+	public static class PrimitiveFields {
+		public boolean flag = true;
+		public byte b = -7;
+		public char c = 'Z';
+		public short s = -300;
+		public int i = 123456;
+		public long l = -9876543210L;
+		public float f = 1.5f;
+		public double d = -2.25;
+		public Integer boxed = 42;
+		public Long absent;
+		public String text = "h\u00e9llo \"world\"\n";
+		public String empty = "";
+	}
+
+	@Serializable
+	public static class ArrayFields {
+		public int[] ints = { 1, -2, Integer.MAX_VALUE, Integer.MIN_VALUE };
+		public long[] longs = { 0, Long.MAX_VALUE, -1 };
+		public double[] doubles = { 0.5, -1e300 };
+		public boolean[] booleans = { true, false, true };
+		public int[] none = {};
+		public String[] strings = { "a", "b" };
+		public short[] shorts = { -1, Short.MAX_VALUE };
+		public float[] floats = { 0.5f, -3.25f };
+		public byte[] bytes = { -128, 0, 127 };
+		public char[] chars = { 'a', '\u00e9', '"' };
+		public Long[] boxedLongs = { 1L, Long.MIN_VALUE };
+		public Integer[] boxedInts = { 7, -7 };
+		public Double[] boxedDoubles = { 0.25 };
+	}
+
+	@Serializable
+	public static class Nested {
+		public String name = "outer";
+		public PrimitiveFields primitives = new PrimitiveFields();
+		public ArrayFields arrays = new ArrayFields();
+		public Nested child;
+		public Nested[] children;
+	}
+
+	@Serializable
+	public static class NullFields {
+		public int[] ints;
+		public double[] doubles;
+		public String[] strings;
+		public Long[] longs;
+		public NullFields child;
+		public NullFields[] children;
+		public String[] stringsWithNull = { "a", null, "c" };
+		public Long[] longsWithNull = { null, 2L };
+		public NullFields[] childrenWithNull = { null };
+	}
+
+	@Serializable
+	public static class MapFields {
+		public Map<String, Integer> counts = new LinkedHashMap<>();
+		public Map<Integer, String> names = new HashMap<>();
+		public Map<String, Long> withNull = new HashMap<>();
+		public Map<String, PrimitiveFields> children = new LinkedHashMap<>();
+		public Map<String, Double> empty = new HashMap<>();
+		public Map<String, String> absent;
+
+		public MapFields() {
+			counts.put("one", 1);
+			counts.put("two", 2);
+			names.put(-1, "minus one");
+			names.put(7, "seven");
+			withNull.put("none", null);
+			children.put("first", new PrimitiveFields());
+			children.put("second", null);
+		}
+	}
+
+	/**
+	 * Implements only the methods every {@link SerializationMethod} has to,
+	 * by delegating to {@link JSONSerilizationMethod}, so that the defaults
+	 * of the others are what gets checked
+	 */
+	private static class MinimalMethod implements
+			SerializationMethod<JSONObject> {
+
+		private final JSONSerilizationMethod mJson = new JSONSerilizationMethod();
+
+		public JSONObject newData() {
+			return mJson.newData();
+		}
+
+		public void storePrimitive(JSONObject out, String key, Object value) {
+			mJson.storePrimitive(out, key, value);
+		}
+
+		public void storeSerializeable(JSONObject out, String key,
+				Object object, Serializer<JSONObject> serializer) {
+			mJson.storeSerializeable(out, key, object, serializer);
+		}
+
+		public void storePrimitiveArray(JSONObject out, String key,
+				Object array) {
+			mJson.storePrimitiveArray(out, key, array);
+		}
+
+		public void storeSerializeableArray(JSONObject out, String key,
+				Object array, Serializer<JSONObject> serializer) {
+			mJson.storeSerializeableArray(out, key, array, serializer);
+		}
+
+		public Set<String> getKeys(JSONObject data) {
+			return mJson.getKeys(data);
+		}
+
+		public Object loadPrimitive(JSONObject in, String key) {
+			return mJson.loadPrimitive(in, key);
+		}
+
+		public Object loadSerializeable(JSONObject in, String key,
+				Serializer<JSONObject> serializer, Class<?> clazz) {
+			return mJson.loadSerializeable(in, key, serializer, clazz);
+		}
+
+		public Object loadPrimitiveArray(JSONObject in, String key,
+				Class<?> clazz) {
+			return mJson.loadPrimitiveArray(in, key, clazz);
+		}
+
+		public Object loadSerializeableArray(JSONObject in, String key,
+				Serializer<JSONObject> serializer, Class<?> clazz) {
+			return mJson.loadSerializeableArray(in, key, serializer, clazz);
+		}
+	}
+
+	private static int sFailures;
+
+	public static void main(String[] args) throws Exception {
+		Nested nested = new Nested();
+		nested.child = new Nested();
+		nested.child.name = "inner";
+		nested.children = new Nested[] { new Nested(), null };
+
+		check("primitives", new PrimitiveFields());
+		check("arrays", new ArrayFields());
+		check("nested", nested);
+		check("nulls", new NullFields());
+		check("maps", new MapFields());
+
+		if (sFailures > 0) {
+			System.out.println(sFailures + " checks failed");
+			System.exit(1);
+		}
+		System.out.println("all checks passed");
+	}
+
+	/**
+	 * Round trips an object through every path and compares the results
+	 */
+	private static void check(String name, Object object) {
+		Class<?> clazz = object.getClass();
+
+		for (String path : new String[] { "json", "json text", "json stream",
+				"json minimal", "binary", "binary bytes", "binary direct",
+				"binary stream" }) {
+			try {
+				Object loaded = roundTrip(path, clazz, object);
+				String difference = compare(object, loaded, clazz
+						.getSimpleName());
+
+				if (difference == null) {
+					System.out.println("pass " + name + " (" + path + ")");
+				} else {
+					sFailures++;
+					System.out.println("FAIL " + name + " (" + path + "): "
+							+ difference);
+				}
+			} catch (Exception e) {
+				sFailures++;
+				System.out.println("FAIL " + name + " (" + path + "): " + e);
+			}
+		}
+	}
+
+	private static Object roundTrip(String path, Class<?> clazz, Object object)
+			throws Exception {
+		switch (path) {
+		case "json": {
+			Serializer<JSONObject> serializer = json();
+			return serializer.deserialize(clazz, serializer.serialize(object));
+		}
+		case "json text": {
+			Serializer<JSONObject> serializer = json();
+			String text = serializer.serialize(object).toString();
+			return serializer.deserialize(clazz, new JSONObject(text));
+		}
+		case "json stream": {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			json().serialize(object, new JSONStreamWriter(bytes));
+			return json().deserialize(clazz,
+					new JSONStreamReader(bytes.toByteArray()));
+		}
+		case "json minimal": {
+			Serializer<JSONObject> serializer = new Serializer<>(
+					new MinimalMethod());
+			String text = serializer.serialize(object).toString();
+			return serializer.deserialize(clazz, new JSONObject(text));
+		}
+		case "binary": {
+			Serializer<BinaryData> serializer = binary(false);
+			return serializer.deserialize(clazz, serializer.serialize(object));
+		}
+		case "binary bytes": {
+			Serializer<BinaryData> serializer = binary(false);
+			byte[] bytes = serializer.serialize(object).toByteArray();
+			return serializer.deserialize(clazz, BinaryData.wrap(bytes));
+		}
+		case "binary direct": {
+			Serializer<BinaryData> serializer = binary(true);
+			return serializer.deserialize(clazz, BinaryData.wrap(serializer
+					.serialize(object).toByteBuffer()));
+		}
+		case "binary stream": {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			binary(false).serialize(object, new BinaryStreamWriter(bytes));
+			return binary(false).deserialize(clazz,
+					new BinaryStreamReader(bytes.toByteArray()));
+		}
+		}
+		throw new IllegalArgumentException(path);
+	}
+
+	private static Serializer<JSONObject> json() {
+		return new Serializer<>(new JSONSerilizationMethod());
+	}
+
+	private static Serializer<BinaryData> binary(boolean direct) {
+		return new Serializer<>(new BinarySerializationMethod(direct));
+	}
+
+	/**
+	 * @return description of the first difference between expected and
+	 *         actual, or <b>null</b> if they match
+	 */
+	private static String compare(Object expected, Object actual, String path)
+			throws IllegalAccessException {
+		if (expected == null || actual == null)
+			return expected == actual ? null : path + ": expected "
+					+ expected + " but was " + actual;
+
+		Class<?> clazz = expected.getClass();
+
+		if (clazz.isArray()) {
+			if (actual.getClass() != clazz)
+				return path + ": expected " + clazz.getSimpleName()
+						+ " but was " + actual.getClass().getSimpleName();
+			if (Array.getLength(expected) != Array.getLength(actual))
+				return path + ": expected length " + Array.getLength(expected)
+						+ " but was " + Array.getLength(actual);
+			for (int i = 0; i < Array.getLength(expected); i++) {
+				String difference = compare(Array.get(expected, i),
+						Array.get(actual, i), path + "[" + i + "]");
+				if (difference != null)
+					return difference;
+			}
+			return null;
+		}
+
+		if (expected instanceof Collection) {
+			if (!(actual instanceof Collection)
+					|| ((Collection<?>) expected).size() != ((Collection<?>) actual)
+							.size())
+				return path + ": expected " + expected + " but was " + actual;
+			Iterator<?> iterator = ((Collection<?>) actual).iterator();
+			int i = 0;
+			for (Object element : (Collection<?>) expected) {
+				String difference = compare(element, iterator.next(), path
+						+ "[" + i++ + "]");
+				if (difference != null)
+					return difference;
+			}
+			return null;
+		}
+
+		if (expected instanceof Map) {
+			if (!(actual instanceof Map)
+					|| ((Map<?, ?>) expected).size() != ((Map<?, ?>) actual)
+							.size())
+				return path + ": expected " + expected + " but was " + actual;
+			Map<?, ?> map = (Map<?, ?>) actual;
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) expected).entrySet()) {
+				if (!map.containsKey(entry.getKey()))
+					return path + ": missing key " + entry.getKey();
+				String difference = compare(entry.getValue(),
+						map.get(entry.getKey()), path + "[" + entry.getKey()
+								+ "]");
+				if (difference != null)
+					return difference;
+			}
+			return null;
+		}
+
+		if (clazz.getAnnotation(Serializable.class) == null)
+			return Objects.equals(expected, actual) ? null : path
+					+ ": expected " + expected + " but was " + actual;
+
+		for (Field field : fields(clazz)) {
+			String difference = compare(field.get(expected),
+					field.get(actual), path + "." + field.getName());
+			if (difference != null)
+				return difference;
+		}
+		return null;
+	}
+
+	private static List<Field> fields(Class<?> clazz) {
+		List<Field> fields = new ArrayList<>();
+		for (Field field : clazz.getDeclaredFields()) {
+			int modifiers = field.getModifiers();
+			if (!Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers)
+					&& !Modifier.isTransient(modifiers)) {
+				field.setAccessible(true);
+				fields.add(field);
+			}
+		}
+		return fields;
+	}
+
+}